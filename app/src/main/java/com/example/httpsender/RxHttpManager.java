@@ -39,7 +39,7 @@ public class RxHttpManager {
         File file = new File(context.getExternalCacheDir(), "RxHttpCookie");
         SSLParams sslParams = HttpsUtils.getSslSocketFactory();
         OkHttpClient client = new OkHttpClient.Builder()
-            .cookieJar(new CookieStore(file))
+            .cookieJar(new CookieStore(file).warmUp())
             .connectTimeout(10, TimeUnit.SECONDS)
             .readTimeout(10, TimeUnit.SECONDS)
             .writeTimeout(10, TimeUnit.SECONDS)
@@ -35,6 +35,7 @@ fun getObservableClass(): Map<String, String> {
         import okhttp3.Response;
         import rxhttp.wrapper.BodyParamFactory;
         import rxhttp.wrapper.CallFactory;
+        import rxhttp.wrapper.cache.NegativeCache;
         import rxhttp.wrapper.callback.ProgressCallback;
         import rxhttp.wrapper.entity.OkResponse;
         import rxhttp.wrapper.entity.Progress;
@@ -164,7 +165,7 @@ fun getObservableClass(): Map<String, String> {
                 @Override
                 public void onResponse(@NotNull Call call, @NotNull Response response) {
                     try {
-                        T t = Objects.requireNonNull(parser.onParse(response), "The onParse function returned a null value.");
+                        T t = Objects.requireNonNull(NegativeCache.parse(parser, response), "The onParse function returned a null value.");
                         if (!disposed) {
                             downstream.onNext(t);
                         }
@@ -213,7 +214,7 @@ fun getObservableClass(): Map<String, String> {
                     try {
                         call = callFactory.newCall();
                         Response response = call.execute();
-                        T t = Objects.requireNonNull(parser.onParse(response), "The onParse function returned a null value.");
+                        T t = Objects.requireNonNull(NegativeCache.parse(parser, response), "The onParse function returned a null value.");
                         if (!disposed) {
                             downstream.onNext(t);
                         }
@@ -30,6 +30,7 @@ class BaseRxHttpGenerator(
 
         val parser = ClassName.get("rxhttp.wrapper.parse", "Parser")
         val parserT = parser.parameterizedBy(t)
+        val negativeCacheName = ClassName.get("rxhttp.wrapper.cache", "NegativeCache")
         val smartParser = parser.peerClass("SmartParser")
         val streamParser = parser.peerClass("StreamParser")
 
@@ -186,7 +187,7 @@ class BaseRxHttpGenerator(
             .addTypeVariable(t)
             .addException(IOException::class.java)
             .addParameter(parserT, "parser")
-            .addStatement("return parser.onParse(execute())")
+            .addStatement("return \$T.parse(parser, execute())", negativeCacheName)
             .returns(t)
             .build()
             .apply { methodList.add(this) }
@@ -35,7 +35,10 @@ class ClassHelper(private val isAndroidPlatform: Boolean) {
             filer, "RxHttpAbstractBodyParam", """
                 package $rxHttpPackage;
                 
+                import org.jetbrains.annotations.Nullable;
+
                 import rxhttp.wrapper.BodyParamFactory;
+                import rxhttp.wrapper.entity.RequestCompression;
                 import rxhttp.wrapper.param.AbstractBodyParam;
 
                 /**
@@ -51,6 +54,15 @@ class ClassHelper(private val isAndroidPlatform: Boolean) {
                     RxHttpAbstractBodyParam(P param) {
                         super(param);
                     }
+
+                    /**
+                     * Compress the request body, e.g. RequestCompression.gzip(), null to send it as is
+                     */
+                    @SuppressWarnings("unchecked")
+                    public R setCompression(@Nullable RequestCompression compression) {
+                        param.setCompression(compression);
+                        return (R) this;
+                    }
                 }
             """.trimIndent()
         )
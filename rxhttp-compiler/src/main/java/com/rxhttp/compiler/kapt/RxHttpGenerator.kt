@@ -45,18 +45,14 @@ class RxHttpGenerator {
         val cacheControlName = okHttpClient.peerClass("CacheControl")
         val callName = okHttpClient.peerClass("Call")
 
-        val timeUnitName = ClassName.get("java.util.concurrent", "TimeUnit")
-
         val rxHttpPluginsName = ClassName.get("rxhttp", "RxHttpPlugins")
         val converterName = ClassName.get("rxhttp.wrapper.callback", "IConverter")
-        val logUtilName = ClassName.get("rxhttp.wrapper.utils", "LogUtil")
-        val logInterceptor = ClassName.get("rxhttp.wrapper.intercept", "LogInterceptor")
-        val cacheInterceptorName = logInterceptor.peerClass("CacheInterceptor")
-        val rangeInterceptor = logInterceptor.peerClass("RangeInterceptor")
         val cacheModeName = ClassName.get("rxhttp.wrapper.cache", "CacheMode")
         val cacheStrategyName = cacheModeName.peerClass("CacheStrategy")
         val downloadOffSizeName = ClassName.get("rxhttp.wrapper.entity", "DownloadOffSize")
         val outputStreamFactory = converterName.peerClass("OutputStreamFactory")
+        val singleFlightCallName = ClassName.get("rxhttp.wrapper", "SingleFlightCall")
+        val derivedClientsName = singleFlightCallName.peerClass("DerivedClients")
 
         val t = TypeVariableName.get("T")
         val wildcard = TypeVariableName.get("?")
@@ -123,6 +119,22 @@ class RxHttpGenerator {
             .build()
             .apply { methodList.add(this) }
 
+        MethodSpec.methodBuilder("setSingleFlight")
+            .addJavadoc(
+                """
+                Coalesce identical in-flight requests, requests with the same client, method, cache key, headers
+                and body share one network call, and each caller parses the buffered response with its own parser.
+                Don't enable it for downloads.
+                """.trimIndent()
+            )
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(TypeName.BOOLEAN, "enabled")
+            .addStatement("singleFlight = enabled")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .apply { methodList.add(this) }
+
         val methodMap = LinkedHashMap<String, String>()
         methodMap["get"] = "RxHttpNoBodyParam"
         methodMap["head"] = "RxHttpNoBodyParam"
@@ -639,12 +651,10 @@ class RxHttpGenerator {
                 """
             param.tag(type, tag);
             if (type == ${'$'}T.class) {
-                okClient = okClient.newBuilder()
-                    .addInterceptor(new ${'$'}T())
-                    .build();
+                rangeEnabled = true;
             }
             return self();
-            """.trimIndent(), outputStreamFactory, rangeInterceptor
+            """.trimIndent(), outputStreamFactory
             )
             .returns(typeVariableR)
             .build()
@@ -684,6 +694,33 @@ class RxHttpGenerator {
             .build()
             .apply { methodList.add(this) }
 
+        MethodSpec.methodBuilder("setCacheStaleTime")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(TypeName.LONG, "cacheStaleTime")
+            .addStatement("param.setCacheStaleTime(cacheStaleTime)")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .apply { methodList.add(this) }
+
+        MethodSpec.methodBuilder("addCacheTag")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(string, "cacheTag")
+            .addStatement("param.addCacheTag(cacheTag)")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .apply { methodList.add(this) }
+
+        MethodSpec.methodBuilder("setNegativeCacheTime")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(TypeName.LONG, "negativeCacheTime")
+            .addStatement("param.setNegativeCacheTime(negativeCacheTime)")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .apply { methodList.add(this) }
+
         MethodSpec.methodBuilder("setCacheMode")
             .addModifiers(Modifier.PUBLIC)
             .addParameter(cacheModeName, "cacheMode")
@@ -701,8 +738,10 @@ class RxHttpGenerator {
                 """
                 Request request = buildRequest();
                 OkHttpClient okClient = getOkHttpClient();
-                return okClient.newCall(request);
-                """.trimIndent()
+                Call call = okClient.newCall(request);
+                if (!singleFlight) return call;
+                return new ${'$'}T(okClient, getCacheStrategy().getCacheKey(), call);
+                """.trimIndent(), singleFlightCallName
             )
             .returns(callName)
             .build()
@@ -728,43 +767,12 @@ class RxHttpGenerator {
             .addCode(
                 """
                 if (realOkClient != null) return realOkClient;
-                final OkHttpClient okClient = this.okClient;
-                OkHttpClient.Builder builder = null;
-                
-                if (${'$'}T.isDebug()) {
-                    builder = okClient.newBuilder();
-                    builder.addInterceptor(new ${'$'}T(okClient));
-                }
-                
-                if (connectTimeoutMillis != 0L) {
-                    if (builder == null) builder = okClient.newBuilder();
-                    builder.connectTimeout(connectTimeoutMillis, ${'$'}T.MILLISECONDS);
-                }
-                
-                if (readTimeoutMillis != 0L) {
-                    if (builder == null) builder = okClient.newBuilder();
-                    builder.readTimeout(readTimeoutMillis, ${'$'}T.MILLISECONDS);
-                }
-
-                if (writeTimeoutMillis != 0L) {
-                   if (builder == null) builder = okClient.newBuilder();
-                   builder.writeTimeout(writeTimeoutMillis, ${'$'}T.MILLISECONDS);
-                }
-                
-                if (param.getCacheMode() != CacheMode.ONLY_NETWORK) {                      
-                    if (builder == null) builder = okClient.newBuilder();              
-                    builder.addInterceptor(new ${'$'}T(getCacheStrategy()));
-                }
-                                                                                        
-                realOkClient = builder != null ? builder.build() : okClient;
+                boolean cache = param.getCacheMode() != CacheMode.ONLY_NETWORK || param.getNegativeCacheTime() > 0;
+                realOkClient = ${'$'}T.get(okClient, connectTimeoutMillis, readTimeoutMillis,
+                    writeTimeoutMillis, rangeEnabled, cache);
                 return realOkClient;
                 """.trimIndent(),
-                logUtilName,
-                logInterceptor,
-                timeUnitName,
-                timeUnitName,
-                timeUnitName,
-                cacheInterceptorName
+                derivedClientsName
             )
             .returns(okHttpClient)
             .build()
@@ -914,6 +922,8 @@ class RxHttpGenerator {
             .addField(TypeName.LONG, "connectTimeoutMillis", Modifier.PRIVATE)
             .addField(TypeName.LONG, "readTimeoutMillis", Modifier.PRIVATE)
             .addField(TypeName.LONG, "writeTimeoutMillis", Modifier.PRIVATE)
+            .addField(TypeName.BOOLEAN, "singleFlight", Modifier.PRIVATE)
+            .addField(TypeName.BOOLEAN, "rangeEnabled", Modifier.PRIVATE)
             .addField(okHttpClient, "realOkClient", Modifier.PRIVATE)
             .addField(okHttpClientSpec)
             .addField(converterSpec)
@@ -40,6 +40,7 @@ class BaseRxHttpGenerator(
 
         val parser = ClassName("rxhttp.wrapper.parse", "Parser")
         val parserTName = parser.parameterizedBy("T")
+        val negativeCacheName = ClassName("rxhttp.wrapper.cache", "NegativeCache")
         val smartParser = parser.peerClass("SmartParser")
         val streamParser = parser.peerClass("StreamParser")
         val rxJavaPlugins = ClassName.bestGuess(getClassPath("RxJavaPlugins"))
@@ -162,7 +163,7 @@ class BaseRxHttpGenerator(
             .addTypeVariable(t)
             .throws(IOException::class)
             .addParameter("parser", parserTName)
-            .addStatement("return parser.onParse(execute())")
+            .addStatement("return %T.parse(parser, execute())", negativeCacheName)
             .returns(t)
             .build()
             .let { methodList.add(it) }
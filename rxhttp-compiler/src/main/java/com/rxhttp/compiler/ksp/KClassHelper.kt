@@ -32,6 +32,7 @@ class KClassHelper(
                 package $rxHttpPackage
                 
                 import rxhttp.wrapper.BodyParamFactory
+                import rxhttp.wrapper.entity.RequestCompression
                 import rxhttp.wrapper.param.AbstractBodyParam
 
                 /**
@@ -46,6 +47,14 @@ class KClassHelper(
                     param: P
                 ) : RxHttp<P, R>(param), BodyParamFactory {
 
+                    /**
+                     * Compress the request body, e.g. RequestCompression.gzip(), null to send it as is
+                     */
+                    @Suppress("UNCHECKED_CAST")
+                    fun setCompression(compression: RequestCompression?): R {
+                        param.setCompression(compression)
+                        return this as R
+                    }
                 }
             """.trimIndent()
         )
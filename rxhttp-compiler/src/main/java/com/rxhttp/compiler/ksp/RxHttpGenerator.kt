@@ -57,18 +57,14 @@ class RxHttpGenerator(
         val cacheControlName = okHttpClient.peerClass("CacheControl")
         val callName = okHttpClient.peerClass("Call")
 
-        val timeUnitName = ClassName("java.util.concurrent", "TimeUnit")
-
         val rxHttpPluginsName = ClassName("rxhttp", "RxHttpPlugins")
         val converterName = ClassName("rxhttp.wrapper.callback", "IConverter")
-        val logUtilName = ClassName("rxhttp.wrapper.utils", "LogUtil")
-        val logInterceptor = ClassName("rxhttp.wrapper.intercept", "LogInterceptor")
-        val cacheInterceptorName = logInterceptor.peerClass("CacheInterceptor")
-        val rangeInterceptor = logInterceptor.peerClass("RangeInterceptor")
         val cacheModeName = ClassName("rxhttp.wrapper.cache", "CacheMode")
         val cacheStrategyName = cacheModeName.peerClass("CacheStrategy")
         val downloadOffSizeName = ClassName("rxhttp.wrapper.entity", "DownloadOffSize")
         val outputStreamFactory = converterName.peerClass("OutputStreamFactory")
+        val singleFlightCallName = ClassName("rxhttp.wrapper", "SingleFlightCall")
+        val derivedClientsName = singleFlightCallName.peerClass("DerivedClients")
 
         val t = TypeVariableName("T")
         val className = Class::class.asClassName()
@@ -108,6 +104,18 @@ class RxHttpGenerator(
             .build()
             .let { propertySpecs.add(it) }
 
+        PropertySpec.builder("singleFlight", BOOLEAN, KModifier.PRIVATE)
+            .initializer("false")
+            .mutable(true)
+            .build()
+            .let { propertySpecs.add(it) }
+
+        PropertySpec.builder("rangeEnabled", BOOLEAN, KModifier.PRIVATE)
+            .initializer("false")
+            .mutable(true)
+            .build()
+            .let { propertySpecs.add(it) }
+
         PropertySpec.builder("converter", converterName, KModifier.PRIVATE)
             .mutable(true)
             .initializer("%T.getConverter()", rxHttpPluginsName)
@@ -186,43 +194,12 @@ class RxHttpGenerator(
             .addCode(
                 """
                 if (_okHttpClient != null) return _okHttpClient!!
-                val okClient = this.okClient
-                var builder: OkHttpClient.Builder? = null
-                
-                if (%T.isDebug()) {
-                    val b = builder ?: okClient.newBuilder().also { builder = it }
-                    b.addInterceptor(%T(okClient))
-                }
-                
-                if (connectTimeoutMillis != 0L) {
-                    val b = builder ?: okClient.newBuilder().also { builder = it }
-                    b.connectTimeout(connectTimeoutMillis, %T.MILLISECONDS)
-                }
-                
-                if (readTimeoutMillis != 0L) {
-                    val b = builder ?: okClient.newBuilder().also { builder = it }
-                    b.readTimeout(readTimeoutMillis, %T.MILLISECONDS)
-                }
-
-                if (writeTimeoutMillis != 0L) {
-                    val b = builder ?: okClient.newBuilder().also { builder = it }
-                    b.writeTimeout(writeTimeoutMillis, %T.MILLISECONDS)
-                }
-                
-                if (param.cacheMode != CacheMode.ONLY_NETWORK) {
-                    val b = builder ?: okClient.newBuilder().also { builder = it }
-                    b.addInterceptor(%T(cacheStrategy))
-                }
-
-                _okHttpClient = builder?.build() ?: okClient
+                val cache = param.cacheMode != CacheMode.ONLY_NETWORK || param.negativeCacheTime > 0
+                _okHttpClient = %T.get(okClient, connectTimeoutMillis, readTimeoutMillis,
+                    writeTimeoutMillis, rangeEnabled, cache)
                 return _okHttpClient!!
                 """.trimIndent(),
-                logUtilName,
-                logInterceptor,
-                timeUnitName,
-                timeUnitName,
-                timeUnitName,
-                cacheInterceptorName
+                derivedClientsName
             )
             .build()
 
@@ -263,6 +240,21 @@ class RxHttpGenerator(
             .build()
             .let { methodList.add(it) }
 
+        FunSpec.builder("setSingleFlight")
+            .addKdoc(
+                """
+                Coalesce identical in-flight requests, requests with the same client, method, cache key, headers
+                and body share one network call, and each caller parses the buffered response with its own parser.
+                Don't enable it for downloads.
+                """.trimIndent()
+            )
+            .addParameter("enabled", BOOLEAN)
+            .addStatement("singleFlight = enabled")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .let { methodList.add(it) }
+
         val methodMap = LinkedHashMap<String, String>()
         methodMap["get"] = "RxHttpNoBodyParam"
         methodMap["head"] = "RxHttpNoBodyParam"
@@ -666,12 +658,10 @@ class RxHttpGenerator(
                 """
             param.tag(type, tag)
             if (type === %T::class.java) {
-                okClient = okClient.newBuilder()
-                    .addInterceptor(%T())
-                    .build()
+                rangeEnabled = true
             }
             return self()
-            """.trimIndent(), outputStreamFactory, rangeInterceptor
+            """.trimIndent(), outputStreamFactory
             )
             .returns(typeVariableR)
             .build()
@@ -701,6 +691,30 @@ class RxHttpGenerator(
             .build()
             .let { methodList.add(it) }
 
+        FunSpec.builder("setCacheStaleTime")
+            .addParameter("cacheStaleTime", LONG)
+            .addStatement("param.cacheStaleTime = cacheStaleTime")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .let { methodList.add(it) }
+
+        FunSpec.builder("addCacheTag")
+            .addParameter("cacheTag", STRING)
+            .addStatement("param.addCacheTag(cacheTag)")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .let { methodList.add(it) }
+
+        FunSpec.builder("setNegativeCacheTime")
+            .addParameter("negativeCacheTime", LONG)
+            .addStatement("param.setNegativeCacheTime(negativeCacheTime)")
+            .addStatement("return self()")
+            .returns(typeVariableR)
+            .build()
+            .let { methodList.add(it) }
+
         FunSpec.builder("setCacheMode")
             .addParameter("cacheMode", cacheModeName)
             .addStatement("param.cacheMode = cacheMode")
@@ -714,8 +728,11 @@ class RxHttpGenerator(
             .addCode(
                 """
                 val request = buildRequest()
-                return okHttpClient.newCall(request)
-                """.trimIndent()
+                val okClient = okHttpClient
+                val call = okClient.newCall(request)
+                if (!singleFlight) return call
+                return %T(okClient, cacheStrategy.cacheKey, call)
+                """.trimIndent(), singleFlightCallName
             )
             .returns(callName)
             .build()
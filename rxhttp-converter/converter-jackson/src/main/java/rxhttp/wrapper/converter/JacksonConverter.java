@@ -1,5 +1,6 @@
 package rxhttp.wrapper.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -15,6 +16,7 @@ import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.callback.JsonConverter;
+import rxhttp.wrapper.entity.StreamingRequestBody;
 
 /**
  * User: ljx
@@ -68,12 +70,11 @@ public class JacksonConverter implements JsonConverter {
         }
     }
 
-    @SuppressWarnings("deprecation")
     @Override
     public <T> RequestBody convert(T value) throws IOException {
         JavaType javaType = mapper.getTypeFactory().constructType(value.getClass());
-        ObjectWriter writer = mapper.writerFor(javaType);
-        byte[] bytes = writer.writeValueAsBytes(value);
-        return RequestBody.create(contentType, bytes);
+        //The sink belongs to the request, it must not be closed by jackson
+        ObjectWriter writer = mapper.writerFor(javaType).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return StreamingRequestBody.create(contentType, sink -> writer.writeValue(sink.outputStream(), value));
     }
 }
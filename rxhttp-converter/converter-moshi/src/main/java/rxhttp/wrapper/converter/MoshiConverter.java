@@ -21,6 +21,7 @@ import okio.BufferedSource;
 import okio.ByteString;
 import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.callback.JsonConverter;
+import rxhttp.wrapper.entity.StreamingRequestBody;
 
 /**
  * User: ljx
@@ -149,7 +150,7 @@ public class MoshiConverter implements JsonConverter {
         }
     }
 
-    @SuppressWarnings({"unchecked", "deprecation"})
+    @SuppressWarnings("unchecked")
     @Override
     public <T> RequestBody convert(T value) throws IOException {
         Class<T> clazz;
@@ -170,9 +171,12 @@ public class MoshiConverter implements JsonConverter {
         if (serializeNulls) {
             adapter = adapter.serializeNulls();
         }
-        Buffer buffer = new Buffer();
-        JsonWriter writer = JsonWriter.of(buffer);
-        adapter.toJson(writer, value);
-        return RequestBody.create(contentType, buffer.readByteString());
+        JsonAdapter<T> finalAdapter = adapter;
+        //Serialized while the request is being sent
+        return StreamingRequestBody.create(contentType, sink -> {
+            JsonWriter writer = JsonWriter.of(sink);
+            finalAdapter.toJson(writer, value);
+            writer.flush();
+        });
     }
 }
\ No newline at end of file
@@ -6,20 +6,27 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 import okhttp3.Call;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import rxhttp.wrapper.CallFactory;
+import rxhttp.wrapper.Prefetcher;
 import rxhttp.wrapper.cache.CacheManager;
 import rxhttp.wrapper.cache.CacheMode;
 import rxhttp.wrapper.cache.CacheStrategy;
 import rxhttp.wrapper.cache.InternalCache;
+import rxhttp.wrapper.cache.MemoryCache;
+import rxhttp.wrapper.cache.ParsedCache;
+import rxhttp.wrapper.callback.CompressionListener;
 import rxhttp.wrapper.callback.Consumer;
 import rxhttp.wrapper.callback.IConverter;
 import rxhttp.wrapper.callback.Function;
 import rxhttp.wrapper.converter.GsonConverter;
+import rxhttp.wrapper.entity.RequestCompression;
 import rxhttp.wrapper.param.Param;
 import rxhttp.wrapper.utils.LogUtil;
 
@@ -41,7 +48,13 @@ public class RxHttpPlugins {
     private List<String> excludeCacheKeys = Collections.emptyList();
 
     private InternalCache cache;
+    private CacheManager cacheManager;
+    private ParsedCache parsedCache;
+    private Prefetcher prefetcher;
+    private int prefetchConcurrency = 2;
     private CacheStrategy cacheStrategy = new CacheStrategy(CacheMode.ONLY_NETWORK);
+    private RequestCompression requestCompression;
+    private CompressionListener compressionListener;
 
     private RxHttpPlugins() {
     }
@@ -97,6 +110,11 @@ public class RxHttpPlugins {
         return this;
     }
 
+    @Nullable
+    public static Function<String, String> getResultDecoder() {
+        return plugins.decoder;
+    }
+
     public RxHttpPlugins setConverter(IConverter converter) {
         if (converter == null)
             throw new IllegalArgumentException("converter can not be null");
@@ -135,11 +153,32 @@ public class RxHttpPlugins {
     }
 
     public RxHttpPlugins setCache(File directory, long maxSize, CacheMode cacheMode, long cacheValidTime) {
+        return setCache(directory, maxSize, 0, cacheMode, cacheValidTime);
+    }
+
+    /**
+     * @param memoryMaxSize Byte budget of the in-memory cache in front of the disk cache, 0 disables it
+     */
+    public RxHttpPlugins setCache(File directory, long maxSize, long memoryMaxSize, CacheMode cacheMode, long cacheValidTime) {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize > 0 required but it was " + maxSize);
         }
-        CacheManager rxHttpCache = new CacheManager(directory, maxSize);
-        cache = rxHttpCache.internalCache;
+        return setCache(new CacheManager(directory, maxSize), memoryMaxSize, cacheMode, cacheValidTime);
+    }
+
+    /**
+     * Use a preconfigured CacheManager, e.g. one with compression enabled
+     *
+     * @param memoryMaxSize Byte budget of the in-memory cache in front of the disk cache, 0 disables it
+     */
+    public RxHttpPlugins setCache(CacheManager rxHttpCache, long memoryMaxSize, CacheMode cacheMode, long cacheValidTime) {
+        if (memoryMaxSize < 0) {
+            throw new IllegalArgumentException("memoryMaxSize >= 0 required but it was " + memoryMaxSize);
+        }
+        cacheManager = rxHttpCache;
+        cache = memoryMaxSize > 0
+            ? new MemoryCache(rxHttpCache.internalCache, memoryMaxSize, rxHttpCache.statsRecorder)
+            : rxHttpCache.internalCache;
         cacheStrategy = new CacheStrategy(cacheMode, cacheValidTime);
         return this;
     }
@@ -148,6 +187,14 @@ public class RxHttpPlugins {
         return new CacheStrategy(plugins.cacheStrategy);
     }
 
+    /**
+     * @return the disk cache set by setCache, e.g. to read its {@link CacheManager#stats()}, or null
+     */
+    @Nullable
+    public static CacheManager getCacheManager() {
+        return plugins.cacheManager;
+    }
+
     public static InternalCache getCache() {
         return plugins.cache;
     }
@@ -163,6 +210,84 @@ public class RxHttpPlugins {
         return cache;
     }
 
+    /**
+     * Keep the objects parsed from cache responses, a cache hit then returns the same instance
+     * without parsing again, as long as the cached entry hasn't changed. Treat them as immutable.
+     *
+     * @param maxEntries number of objects kept, 0 disables it
+     */
+    public RxHttpPlugins setParsedCache(int maxEntries) {
+        parsedCache = maxEntries > 0 ? new ParsedCache(maxEntries) : null;
+        return this;
+    }
+
+    @Nullable
+    public static ParsedCache getParsedCache() {
+        return plugins.parsedCache;
+    }
+
+    /**
+     * @param concurrency maximum number of prefetches executed at the same time, 2 by default,
+     *                    takes effect before the first {@link #prefetch(CallFactory...)}
+     */
+    public RxHttpPlugins setPrefetchConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency > 0 required but it was " + concurrency);
+        }
+        prefetchConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Warm the cache ahead of time, e.g. with the requests the next screen needs. The requests are
+     * executed on a low-priority lane and written to the cache as usual, see {@link Prefetcher}
+     *
+     * @param factories configured RxHttp objects, with a cache mode other than ONLY_NETWORK
+     */
+    public static void prefetch(CallFactory... factories) {
+        prefetch(Arrays.asList(factories));
+    }
+
+    public static void prefetch(Collection<? extends CallFactory> factories) {
+        getPrefetcher().prefetch(factories);
+    }
+
+    private static synchronized Prefetcher getPrefetcher() {
+        if (plugins.prefetcher == null) {
+            plugins.prefetcher = new Prefetcher(plugins.prefetchConcurrency);
+        }
+        return plugins.prefetcher;
+    }
+
+    /**
+     * Compress request bodies, e.g. {@link RequestCompression#gzip()}, the server must accept the
+     * Content-Encoding. Can be overridden per request with RxHttp#setCompression
+     *
+     * @param compression null to send request bodies as is, the default
+     */
+    public RxHttpPlugins setRequestCompression(@Nullable RequestCompression compression) {
+        requestCompression = compression;
+        return this;
+    }
+
+    @Nullable
+    public static RequestCompression getRequestCompression() {
+        return plugins.requestCompression;
+    }
+
+    /**
+     * @param listener receives the sizes of every compressed request body, e.g. to monitor the compression ratio
+     */
+    public RxHttpPlugins setCompressionListener(@Nullable CompressionListener listener) {
+        compressionListener = listener;
+        return this;
+    }
+
+    @Nullable
+    public static CompressionListener getCompressionListener() {
+        return plugins.compressionListener;
+    }
+
     public RxHttpPlugins setExcludeCacheKeys(String... keys) {
         excludeCacheKeys = Arrays.asList(keys);
         return this;
@@ -0,0 +1,128 @@
+package rxhttp.wrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import rxhttp.wrapper.intercept.CacheInterceptor;
+import rxhttp.wrapper.intercept.LogInterceptor;
+import rxhttp.wrapper.intercept.RangeInterceptor;
+import rxhttp.wrapper.utils.LogUtil;
+
+/**
+ * OkHttpClients derived from a base client for timeouts, logging, ranged downloads and caching,
+ * kept in a bounded LRU cache, so that requests with the same configuration share one client
+ * instead of building one each. Per-request state, e.g. the CacheStrategy, is read from the
+ * request tags by the interceptors.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 01:50
+ */
+public final class DerivedClients {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final Map<Key, OkHttpClient> clients = new LinkedHashMap<Key, OkHttpClient>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, OkHttpClient> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private DerivedClients() {
+    }
+
+    /**
+     * @param okClient             base client
+     * @param connectTimeoutMillis 0 to keep the timeout of the base client
+     * @param readTimeoutMillis    0 to keep the timeout of the base client
+     * @param writeTimeoutMillis   0 to keep the timeout of the base client
+     * @param range                whether ranged downloads are supported, see {@link RangeInterceptor}
+     * @param cache                whether the cache is read / written, see {@link CacheInterceptor#TAGGED}
+     * @return the base client if nothing is to be derived
+     */
+    public static OkHttpClient get(OkHttpClient okClient, long connectTimeoutMillis, long readTimeoutMillis,
+                                   long writeTimeoutMillis, boolean range, boolean cache) {
+        boolean log = LogUtil.isDebug();
+        if (!log && !range && !cache && connectTimeoutMillis == 0L
+            && readTimeoutMillis == 0L && writeTimeoutMillis == 0L) return okClient;
+        Key key = new Key(okClient, connectTimeoutMillis, readTimeoutMillis, writeTimeoutMillis, log, range, cache);
+        synchronized (clients) {
+            OkHttpClient client = clients.get(key);
+            if (client != null) return client;
+        }
+        OkHttpClient client = build(key);
+        synchronized (clients) {
+            OkHttpClient previous = clients.get(key);
+            if (previous != null) return previous;
+            clients.put(key, client);
+        }
+        return client;
+    }
+
+    public static void clear() {
+        synchronized (clients) {
+            clients.clear();
+        }
+    }
+
+    private static OkHttpClient build(Key key) {
+        OkHttpClient.Builder builder = key.okClient.newBuilder();
+        if (key.range) builder.addInterceptor(new RangeInterceptor());
+        if (key.log) builder.addInterceptor(new LogInterceptor(key.okClient));
+        if (key.connectTimeoutMillis != 0L) builder.connectTimeout(key.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (key.readTimeoutMillis != 0L) builder.readTimeout(key.readTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (key.writeTimeoutMillis != 0L) builder.writeTimeout(key.writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (key.cache) builder.addInterceptor(CacheInterceptor.TAGGED);
+        return builder.build();
+    }
+
+    private static final class Key {
+        final OkHttpClient okClient; //Compared by identity
+        final long connectTimeoutMillis;
+        final long readTimeoutMillis;
+        final long writeTimeoutMillis;
+        final boolean log;
+        final boolean range;
+        final boolean cache;
+
+        Key(OkHttpClient okClient, long connectTimeoutMillis, long readTimeoutMillis,
+            long writeTimeoutMillis, boolean log, boolean range, boolean cache) {
+            this.okClient = okClient;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+            this.writeTimeoutMillis = writeTimeoutMillis;
+            this.log = log;
+            this.range = range;
+            this.cache = cache;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return okClient == key.okClient
+                && connectTimeoutMillis == key.connectTimeoutMillis
+                && readTimeoutMillis == key.readTimeoutMillis
+                && writeTimeoutMillis == key.writeTimeoutMillis
+                && log == key.log
+                && range == key.range
+                && cache == key.cache;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(okClient);
+            result = 31 * result + (int) (connectTimeoutMillis ^ (connectTimeoutMillis >>> 32));
+            result = 31 * result + (int) (readTimeoutMillis ^ (readTimeoutMillis >>> 32));
+            result = 31 * result + (int) (writeTimeoutMillis ^ (writeTimeoutMillis >>> 32));
+            result = 31 * result + (log ? 1 : 0);
+            result = 31 * result + (range ? 1 : 0);
+            result = 31 * result + (cache ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -9,9 +9,16 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.security.cert.Certificate;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import kotlin.jvm.functions.Function0;
+import okhttp3.CipherSuite;
+import okhttp3.Cookie;
 import okhttp3.CookieJar;
+import okhttp3.Handshake;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
@@ -21,13 +28,16 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okhttp3.TlsVersion;
 import okhttp3.internal.cache.DiskLruCache;
 import okhttp3.internal.cache.DiskLruCache.Companion;
 import okhttp3.internal.concurrent.TaskRunner;
 import okhttp3.internal.http.StatusLine;
 import okio.Buffer;
+import okio.BufferedSource;
 import okio.ByteString;
 import okio.FileSystem;
+import okio.Okio;
 import okio.Path;
 import rxhttp.wrapper.exception.HttpStatusCodeException;
 import rxhttp.wrapper.param.Param;
@@ -55,12 +65,24 @@ public class OkHttpCompat {
         }
     }
 
+    //Read the response body to the end and discard it
+    public static void consume(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body != null) {
+            body.source().readAll(Okio.blackhole());
+        }
+    }
+
     public static ResponseBody buffer(final ResponseBody body) throws IOException {
         Buffer buffer = new Buffer();
         body.source().readAll(buffer);
         return ResponseBody.create(body.contentType(), body.contentLength(), buffer);
     }
 
+    public static ResponseBody create(@Nullable MediaType contentType, long contentLength, BufferedSource content) {
+        return ResponseBody.create(contentType, contentLength, content);
+    }
+
     public static RequestBody create(@Nullable MediaType contentType, String content) {
         return RequestBody.create(contentType, content);
     }
@@ -170,6 +192,43 @@ public class OkHttpCompat {
         }
     }
 
+    /**
+     * 创建Handshake，OkHttp 4.0.0及以上版本，peerCertificates在首次访问时才解析，解析失败时为空列表，与OkHttp一致
+     */
+    public static Handshake handshake(TlsVersion tlsVersion, CipherSuite cipherSuite,
+                                      List<Certificate> localCertificates,
+                                      final Callable<List<Certificate>> peerCertificates) throws IOException {
+        if (okHttpVersionCompare("4.0.0") >= 0) {
+            return new Handshake(tlsVersion, cipherSuite, localCertificates, new Function0<List<Certificate>>() {
+                @Override
+                public List<Certificate> invoke() {
+                    try {
+                        return peerCertificates.call();
+                    } catch (Exception e) {
+                        return Collections.emptyList();
+                    }
+                }
+            });
+        }
+        try {
+            return Handshake.get(tlsVersion, cipherSuite, peerCertificates.call(), localCertificates);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    //Cookie的SameSite属性，OkHttp 5.0.0及以上版本才有，低版本返回null
+    @Nullable
+    public static String sameSite(Cookie cookie) {
+        return okHttpVersionCompare("5.0.0") >= 0 ? cookie.sameSite() : null;
+    }
+
+    public static Cookie.Builder sameSite(Cookie.Builder builder, String sameSite) {
+        return okHttpVersionCompare("5.0.0") >= 0 ? builder.sameSite(sameSite) : builder;
+    }
+
     public static DiskLruCache newDiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
         if (okHttpVersionCompare("5.0.0") >= 0) {
             return new DiskLruCache(FileSystem.SYSTEM, Path.get(directory), appVersion, valueCount, maxSize, TaskRunner.INSTANCE);
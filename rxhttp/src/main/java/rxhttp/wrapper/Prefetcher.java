@@ -0,0 +1,130 @@
+package rxhttp.wrapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import rxhttp.wrapper.utils.LogUtil;
+
+/**
+ * Executes requests ahead of time on a low-priority lane with limited concurrency, so that their
+ * responses are written to the cache through the normal CacheInterceptor path. The requests should
+ * use a cache mode other than ONLY_NETWORK, or nothing is cached.
+ * <p>
+ * A prefetch is cancelled as soon as a foreground request with the same cache key reaches
+ * CacheInterceptor, the foreground request then goes to the network or the cache by itself. A
+ * prefetch still queued then is cancelled when it starts.
+ * <p>
+ * Prefetch calls are told apart by their original request, so the interceptor may run on any thread,
+ * e.g. on a dispatcher thread for SingleFlight calls.
+ */
+public final class Prefetcher {
+
+    //Original request of a prefetch call -> its prefetch, by identity
+    private static final Map<Request, Prefetch> lanes = Collections.synchronizedMap(new IdentityHashMap<Request, Prefetch>());
+    //cacheKey -> prefetch call in flight
+    private static final ConcurrentHashMap<String, Call> running = new ConcurrentHashMap<>();
+    //cacheKey -> when a foreground request with it was last seen, only while prefetches are pending
+    private static final ConcurrentHashMap<String, Long> foreground = new ConcurrentHashMap<>();
+    //Prefetches queued or running
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param concurrency maximum number of prefetches executed at the same time
+     */
+    public Prefetcher(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency > 0 required but it was " + concurrency);
+        }
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "RxHttp Prefetch");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void prefetch(Collection<? extends CallFactory> factories) {
+        for (CallFactory factory : factories) {
+            pending.incrementAndGet();
+            executor.execute(new Prefetch(factory));
+        }
+    }
+
+    /**
+     * Called by CacheInterceptor for each request, registers a prefetch, or cancels the prefetch a
+     * foreground request would compete with
+     */
+    public static void onRequest(String cacheKey, Call call) {
+        if (pending.get() == 0) return;
+        Prefetch prefetch = lanes.get(call.request());
+        if (prefetch == null) {
+            foreground.put(cacheKey, System.nanoTime());
+            Call prefetchCall = running.remove(cacheKey);
+            if (prefetchCall != null) prefetchCall.cancel();
+            return;
+        }
+        Long seenNanos = foreground.get(cacheKey);
+        if (seenNanos != null && seenNanos - prefetch.queuedNanos >= 0) {
+            call.cancel(); //Requested in the foreground while the prefetch was queued
+        } else if (running.putIfAbsent(cacheKey, call) != null) {
+            call.cancel(); //The same key is already being prefetched
+        } else {
+            prefetch.cacheKey = cacheKey;
+            prefetch.call = call;
+        }
+    }
+
+    private static final class Prefetch implements Runnable {
+        private final CallFactory factory;
+        private final long queuedNanos = System.nanoTime();
+        private volatile @Nullable String cacheKey;
+        private volatile @Nullable Call call;
+
+        Prefetch(CallFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public void run() {
+            Call prefetchCall = null;
+            Request request = null;
+            try {
+                prefetchCall = factory.newCall();
+                request = prefetchCall.request();
+                lanes.put(request, this);
+                try (Response response = prefetchCall.execute()) {
+                    //读完响应体，缓存才会写入完成
+                    OkHttpCompat.consume(response);
+                }
+            } catch (Throwable e) {
+                if (prefetchCall == null || !prefetchCall.isCanceled()) LogUtil.log("Prefetch failed", e);
+            } finally {
+                if (request != null) lanes.remove(request);
+                String cacheKey = this.cacheKey;
+                if (cacheKey != null) running.remove(cacheKey, call);
+                if (pending.decrementAndGet() == 0) foreground.clear();
+            }
+        }
+    }
+}
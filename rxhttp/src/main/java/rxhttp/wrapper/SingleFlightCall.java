@@ -0,0 +1,353 @@
+package rxhttp.wrapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ByteString;
+import okio.Timeout;
+import rxhttp.wrapper.cache.CacheHit;
+import rxhttp.wrapper.utils.LogUtil;
+
+/**
+ * Coalesces identical in-flight requests. The first call with a given key performs the request, calls
+ * with the same key issued before it completes attach to that result instead of going to the network.
+ * The response body is buffered once and every caller gets its own copy, built on its own
+ * {@link Request}, so each caller still parses it with its own Parser and converter.
+ * <p>
+ * Requests are only coalesced if they are made by the same OkHttpClient and have equal headers and
+ * bodies, so requests with different credentials or parameters never share a response, even with a
+ * custom cache key. Bodies larger than 64 KiB, of unknown length or one-shot are not compared, and
+ * such requests are never coalesced. The callbacks of the attached callers
+ * run on the dispatcher of the client, a slow or throwing callback doesn't hold up the others.
+ * <p>
+ * Since the body is buffered in memory, don't use it for downloads.
+ */
+public final class SingleFlightCall implements Call {
+
+    private static final long MAX_HASHED_BODY_SIZE = 64 * 1024;
+    private static final ConcurrentHashMap<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    private final OkHttpClient client;
+    private final String cacheKey;
+    private final Key key;
+    private final Call rawCall;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private Callback callback;
+    private Flight flight;
+    private boolean executed;
+    private volatile boolean canceled;
+    private boolean completed;
+    private Response response;
+    private IOException failure;
+
+    /**
+     * @param client   the client that created rawCall, its dispatcher runs the callbacks
+     * @param cacheKey requests with the same method, cache key, headers and body are coalesced
+     * @param rawCall  the call to execute if there is no identical request in flight
+     */
+    public SingleFlightCall(@NotNull OkHttpClient client, @NotNull String cacheKey, @NotNull Call rawCall) {
+        this.client = client;
+        this.cacheKey = cacheKey;
+        this.rawCall = rawCall;
+        this.key = new Key(client, cacheKey, rawCall.request());
+    }
+
+    @NotNull
+    @Override
+    public Request request() {
+        return rawCall.request();
+    }
+
+    @NotNull
+    @Override
+    public Response execute() throws IOException {
+        join(null);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            cancel();
+            throw new InterruptedIOException("interrupted");
+        }
+        synchronized (this) {
+            if (failure != null) throw failure;
+            return response;
+        }
+    }
+
+    @Override
+    public void enqueue(@NotNull Callback responseCallback) {
+        join(responseCallback);
+    }
+
+    private void join(Callback callback) {
+        synchronized (this) {
+            if (executed) throw new IllegalStateException("Already Executed");
+            executed = true;
+            this.callback = callback;
+        }
+        if (canceled) {
+            //Canceled before execution, fail immediately
+            if (callback != null) callback.onFailure(this, new IOException("Canceled"));
+            return;
+        }
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight == null) {
+                Flight newFlight = new Flight(key, rawCall, client.dispatcher().executorService());
+                flight = flights.putIfAbsent(key, newFlight);
+                if (flight == null) {
+                    attach(newFlight);
+                    newFlight.start();
+                    return;
+                }
+            }
+            if (attach(flight)) return;
+        }
+    }
+
+    //Returns false if the flight can no longer be joined
+    private boolean attach(Flight flight) {
+        synchronized (this) {
+            this.flight = flight;
+        }
+        return flight.attach(this);
+    }
+
+    @Override
+    public void cancel() {
+        if (canceled) return;
+        canceled = true;
+        Flight flight;
+        synchronized (this) {
+            flight = this.flight;
+        }
+        if (flight != null) flight.detach(this);
+        complete(null, null, new IOException("Canceled"));
+    }
+
+    @Override
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @NotNull
+    @Override
+    public Timeout timeout() {
+        return rawCall.timeout();
+    }
+
+    @NotNull
+    @Override
+    public Call clone() {
+        return new SingleFlightCall(client, cacheKey, rawCall.clone());
+    }
+
+    private void complete(Response shared, ByteString body, IOException e) {
+        Callback callback;
+        synchronized (this) {
+            if (completed) return;
+            completed = true;
+            if (e == null) {
+                //Each caller gets its own body, and its own request, which carries its converter tag
+                Buffer buffer = new Buffer().write(body);
+                ResponseBody sharedBody = shared.body();
+                Request request = request();
+                CacheHit cacheHit = OkHttpCompat.request(shared).tag(CacheHit.class);
+                if (cacheHit != null) {
+                    request = request.newBuilder().tag(CacheHit.class, cacheHit).build();
+                }
+                response = shared.newBuilder()
+                    .request(request)
+                    .body(OkHttpCompat.create(sharedBody.contentType(), body.size(), buffer))
+                    .build();
+            } else {
+                failure = e;
+            }
+            callback = this.callback;
+        }
+        latch.countDown();
+        if (callback == null) return;
+        if (failure != null) {
+            onFailure(callback, failure);
+            return;
+        }
+        try {
+            callback.onResponse(this, response);
+        } catch (IOException ioe) {
+            onFailure(callback, ioe);
+        } catch (Throwable t) {
+            onFailure(callback, new IOException("Callback failure for " + request().url(), t));
+        }
+    }
+
+    //A throwing callback must not stop the flight from completing the other callers
+    private void onFailure(Callback callback, IOException e) {
+        try {
+            callback.onFailure(this, e);
+        } catch (Throwable t) {
+            LogUtil.log("Callback failure for " + request().url(), t);
+        }
+    }
+
+    private static final class Flight implements Callback {
+
+        private final Key key;
+        private final Call call;
+        private final Executor executor;
+        private final List<SingleFlightCall> calls = new ArrayList<>();
+        private boolean finished;
+
+        Flight(Key key, Call call, Executor executor) {
+            this.key = key;
+            this.call = call;
+            this.executor = executor;
+        }
+
+        void start() {
+            call.enqueue(this);
+        }
+
+        synchronized boolean attach(SingleFlightCall singleFlightCall) {
+            if (finished) return false;
+            calls.add(singleFlightCall);
+            return true;
+        }
+
+        void detach(SingleFlightCall singleFlightCall) {
+            boolean cancel;
+            synchronized (this) {
+                calls.remove(singleFlightCall);
+                cancel = calls.isEmpty() && !finished;
+                if (cancel) {
+                    finished = true;
+                    flights.remove(key, this);
+                }
+            }
+            if (cancel) call.cancel(); //Nobody is waiting any more
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) {
+            ByteString body;
+            try {
+                body = response.body().source().readByteString();
+            } catch (IOException e) {
+                onFailure(call, e);
+                return;
+            } finally {
+                OkHttpCompat.closeQuietly(response);
+            }
+            completeAll(response, body, null);
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            completeAll(null, null, e);
+        }
+
+        //The last caller is completed on this thread, the others on the executor, one at a time each
+        private void completeAll(Response shared, ByteString body, IOException e) {
+            List<SingleFlightCall> calls = finish();
+            for (int i = 0, size = calls.size(); i < size; i++) {
+                SingleFlightCall singleFlightCall = calls.get(i);
+                if (i < size - 1) {
+                    try {
+                        executor.execute(() -> singleFlightCall.complete(shared, body, e));
+                        continue;
+                    } catch (RejectedExecutionException ignored) {
+                        //The dispatcher is shut down, complete it here
+                    }
+                }
+                singleFlightCall.complete(shared, body, e);
+            }
+        }
+
+        private List<SingleFlightCall> finish() {
+            flights.remove(key, this);
+            synchronized (this) {
+                finished = true;
+                return new ArrayList<>(calls);
+            }
+        }
+    }
+
+    //Identity of a request, the client is compared by reference
+    private static final class Key {
+
+        private final OkHttpClient client;
+        private final String method;
+        private final String cacheKey;
+        private final Headers headers;
+        private final @Nullable Object body; //md5 of the body, or an object equal to no other
+
+        Key(OkHttpClient client, String cacheKey, Request request) {
+            this.client = client;
+            this.method = request.method();
+            this.cacheKey = cacheKey;
+            this.headers = request.headers();
+            this.body = bodyHash(request.body());
+        }
+
+        //A cache key may leave out the body, e.g. a custom one, so POSTs with different bodies are told apart here
+        @Nullable
+        private static Object bodyHash(@Nullable RequestBody body) {
+            if (body == null) return null;
+            try {
+                long contentLength = body.contentLength();
+                boolean oneShot = OkHttpCompat.okHttpVersionCompare("3.14.0") >= 0
+                    && (body.isOneShot() || body.isDuplex());
+                if (!oneShot && contentLength >= 0 && contentLength <= MAX_HASHED_BODY_SIZE) {
+                    //Written to a Buffer, a ProgressRequestBody reports no progress
+                    Buffer buffer = new Buffer();
+                    body.writeTo(buffer);
+                    return buffer.md5();
+                }
+            } catch (IOException ignored) {
+            }
+            return new Object();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return client == other.client && method.equals(other.method)
+                && cacheKey.equals(other.cacheKey) && headers.equals(other.headers)
+                && (body == null ? other.body == null : body.equals(other.body));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(client);
+            result = 31 * result + method.hashCode();
+            result = 31 * result + cacheKey.hashCode();
+            result = 31 * result + headers.hashCode();
+            return 31 * result + (body != null ? body.hashCode() : 0);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okhttp3.MediaType;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * Codec of the cached body, it is recorded in the entry metadata, so that entries written with
+ * different codecs can be read back
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 16:40
+ */
+public enum CacheCompression {
+
+    NONE {
+        @Override
+        Sink encode(Sink sink) {
+            return sink;
+        }
+
+        @Override
+        Source decode(Source source) {
+            return source;
+        }
+    },
+
+    DEFLATE {
+        @Override
+        Sink encode(Sink sink) {
+            return new DeflaterSink(sink, new Deflater());
+        }
+
+        @Override
+        Source decode(Source source) {
+            return new InflaterSource(Okio.buffer(source), new Inflater());
+        }
+    },
+
+    GZIP {
+        @Override
+        Sink encode(Sink sink) {
+            return new GzipSink(sink);
+        }
+
+        @Override
+        Source decode(Source source) {
+            return new GzipSource(source);
+        }
+    };
+
+    abstract Sink encode(Sink sink);
+
+    abstract Source decode(Source source);
+
+    /**
+     * Text-like content compresses well, images, audio, video and archives are usually compressed already
+     */
+    static boolean isCompressible(@Nullable MediaType mediaType) {
+        if (mediaType == null) return false;
+        String type = mediaType.type();
+        String subtype = mediaType.subtype();
+        if ("text".equals(type)) return true;
+        if (!"application".equals(type)) return false;
+        return "json".equals(subtype)
+            || "xml".equals(subtype)
+            || "javascript".equals(subtype)
+            || "x-www-form-urlencoded".equals(subtype)
+            || subtype.endsWith("+json")
+            || subtype.endsWith("+xml");
+    }
+}
@@ -0,0 +1,20 @@
+package rxhttp.wrapper.cache;
+
+/**
+ * Request tag of a response served from the cache, it identifies the cached entry, so that
+ * {@link ParsedCache} can tell whether an object parsed from it is still current
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 20:15
+ */
+public final class CacheHit {
+
+    public final String cacheKey;
+    public final long receivedResponseMillis;
+
+    public CacheHit(String cacheKey, long receivedResponseMillis) {
+        this.cacheKey = cacheKey;
+        this.receivedResponseMillis = receivedResponseMillis;
+    }
+}
@@ -14,10 +14,18 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.CipherSuite;
 import okhttp3.Handshake;
@@ -58,6 +66,12 @@ public class CacheManager implements Closeable, Flushable {
     private static final int ENTRY_BODY = 1;
     private static final int ENTRY_COUNT = 2;
 
+    private static final String SNAPSHOT_MAGIC = "rxhttp.CacheSnapshot\n";
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_END = 0;
+    private static final int SNAPSHOT_ENTRY = 1;
+    private static final int SNAPSHOT_TAG = 2;
+
     public final InternalCache internalCache = new InternalCache() {
         @Nullable
         @Override
@@ -70,6 +84,16 @@ public class CacheManager implements Closeable, Flushable {
             return CacheManager.this.put(response, key);
         }
 
+        @Override
+        public Response update(Response response, String key) throws IOException {
+            return CacheManager.this.update(response, key);
+        }
+
+        @Override
+        public boolean isExpired(Request request, String key, long minReceivedMillis, boolean revalidate) {
+            return CacheManager.this.isExpired(request, key, minReceivedMillis, revalidate);
+        }
+
         @Override
         public void remove(String key) throws IOException {
             CacheManager.this.remove(key);
@@ -80,13 +104,40 @@ public class CacheManager implements Closeable, Flushable {
             CacheManager.this.evictAll();
         }
 
+        @Override
+        public void tag(String key, Collection<String> tags) throws IOException {
+            try {
+                tagIndex.add(key, tags);
+            } catch (IOException e) {
+                //A cache missing from its group would survive removeTag, don't keep it
+                CacheManager.this.remove(key);
+            }
+        }
+
+        @Override
+        public Set<String> removeTag(String tag) throws IOException {
+            return CacheManager.this.removeTag(tag);
+        }
+
         @Override
         public long size() throws IOException {
             return CacheManager.this.size();
         }
     };
 
-    private final DiskLruCache cache;
+    /**
+     * Hit, miss, write and latency counters of this cache, see {@link #stats()}
+     */
+    public final CacheStatsRecorder statsRecorder = new CacheStatsRecorder();
+
+    private final File directory;
+    private final DiskLruCache[] shards;
+    private final TtlIndex ttlIndex = new TtlIndex();
+    private final TagIndex tagIndex;
+    private @Nullable ScheduledExecutorService sweeper;
+    private volatile CacheCompression compression = CacheCompression.NONE;
+    private volatile long compressionMinSize;
+    private volatile @Nullable WriteBehind writeBehind;
 
     /**
      * Create a cache of at most {@code maxSize} bytes in {@code directory}.
@@ -95,9 +146,201 @@ public class CacheManager implements Closeable, Flushable {
      * @param maxSize   long
      */
     public CacheManager(File directory, long maxSize) {
-        this.cache = OkHttpCompat.newDiskLruCache(directory, VERSION, ENTRY_COUNT, maxSize);
+        this(directory, maxSize, 1);
     }
 
+    /**
+     * Create a cache of at most {@code maxSize} bytes in {@code directory}, sharded across
+     * {@code shardCount} independent DiskLruCache, selected by key hash, so that concurrent reads and
+     * writes don't queue on a single lock. Each shard lives in its own subdirectory and gets an equal
+     * share of maxSize. With a single shard the layout is the same as {@link #CacheManager(File, long)}.
+     * <p>
+     * Changing shardCount of an existing directory leaves the previous entries unreachable, they are
+     * not migrated. The cache tags are kept in the {@code rxhttp-tags} subdirectory, deleted with the cache.
+     *
+     * @param directory  File
+     * @param maxSize    long
+     * @param shardCount number of shards, e.g. the number of cores
+     */
+    public CacheManager(File directory, long maxSize, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount > 0 required but it was " + shardCount);
+        }
+        this.directory = directory;
+        this.tagIndex = new TagIndex(directory, new File(directory, "tags"));
+        this.shards = new DiskLruCache[shardCount];
+        if (shardCount == 1) {
+            shards[0] = OkHttpCompat.newDiskLruCache(directory, VERSION, ENTRY_COUNT, maxSize);
+            return;
+        }
+        long shardMaxSize = Math.max(1, maxSize / shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            File shardDirectory = new File(directory, "shard-" + i);
+            shards[i] = OkHttpCompat.newDiskLruCache(shardDirectory, VERSION, ENTRY_COUNT, shardMaxSize);
+        }
+    }
+
+    //The last 8 hex of md5, TtlIndex hashes the first 16
+    private DiskLruCache cache(String md5Key) {
+        if (shards.length == 1) return shards[0];
+        return shards[(int) (Long.parseLong(md5Key.substring(24, 32), 16) % shards.length)];
+    }
+
+    private Iterator<DiskLruCache.Snapshot> snapshots() throws IOException {
+        if (shards.length == 1) return shards[0].snapshots();
+        final List<Iterator<DiskLruCache.Snapshot>> iterators = new ArrayList<>(shards.length);
+        for (DiskLruCache shard : shards) {
+            iterators.add(shard.snapshots());
+        }
+        return new Iterator<DiskLruCache.Snapshot>() {
+            int index;
+            Iterator<DiskLruCache.Snapshot> current = iterators.get(0);
+            Iterator<DiskLruCache.Snapshot> last;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && index < iterators.size() - 1) {
+                    current = iterators.get(++index);
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public DiskLruCache.Snapshot next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                last = current;
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException("remove() before next()");
+                last.remove();
+                last = null;
+            }
+        };
+    }
+
+
+    /**
+     * Compress cached bodies as they are written, and decompress them on read. Only text-like
+     * content such as json or xml is compressed, bodies smaller than {@code minSize} are stored as is.
+     * Entries already on disk keep the codec they were written with.
+     *
+     * @param compression codec of newly written bodies, {@link CacheCompression#NONE} disables it
+     * @param minSize     bodies smaller than this are not compressed, in bytes
+     * @return CacheManager
+     */
+    public CacheManager setCompression(CacheCompression compression, long minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize >= 0 required but it was " + minSize);
+        }
+        this.compression = compression;
+        this.compressionMinSize = minSize;
+        return this;
+    }
+
+    /**
+     * @return a snapshot of the cache counters
+     */
+    public CacheStats stats() {
+        return statsRecorder.snapshot();
+    }
+
+    /**
+     * Write cache bodies on a background writer thread instead of the caller's read path. What the
+     * caller reads is queued in memory within {@code maxPendingBytes}, shared by all in-flight writes;
+     * when the budget is exceeded the write is dropped, so a slow disk never blocks the network read.
+     * An entry becomes readable once the writer has committed it, shortly after the caller is done.
+     * See {@link CacheStats#writeQueueBytes()} and {@link CacheStats#writeDropCount()}.
+     *
+     * @param maxPendingBytes memory budget of queued bytes, 0 writes on the caller's thread as before
+     * @return CacheManager
+     */
+    public synchronized CacheManager setWriteBehind(long maxPendingBytes) {
+        if (maxPendingBytes < 0) {
+            throw new IllegalArgumentException("maxPendingBytes >= 0 required but it was " + maxPendingBytes);
+        }
+        if (writeBehind != null) writeBehind.shutdown(); //Queued writes still complete
+        writeBehind = maxPendingBytes > 0 ? new WriteBehind(maxPendingBytes, statsRecorder) : null;
+        return this;
+    }
+
+    /**
+     * Periodically remove entries received more than {@code maxAge} ago in a background thread,
+     * instead of waiting for the LRU policy to evict them. Removed entries can't be revalidated
+     * with ETag / Last-Modified any more, so maxAge is usually the longest cacheValidTime in use
+     * plus some margin. Calling it again replaces the previous sweeper.
+     *
+     * @param maxAge age in milliseconds after which an entry is removed
+     * @param period interval between two sweeps
+     * @param unit   unit of period
+     * @return CacheManager
+     */
+    public synchronized CacheManager startSweeper(final long maxAge, long period, TimeUnit unit) {
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge > 0 required but it was " + maxAge);
+        }
+        stopSweeper();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "RxHttp Cache Sweeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!isClosed()) sweep(maxAge);
+                } catch (Throwable ignored) {
+                    //Keep the schedule alive, the next sweep will try again
+                }
+            }
+        }, period, period, unit);
+        sweeper = executor;
+        return this;
+    }
+
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Remove entries received more than {@code maxAge} ago, and index the received time of the others.
+     * It reads the metadata of every entry, so call it in a background thread.
+     *
+     * @param maxAge age in milliseconds after which an entry is removed
+     * @return number of entries removed
+     * @throws IOException the cache can't be iterated
+     */
+    public int sweep(long maxAge) throws IOException {
+        long minReceivedMillis = System.currentTimeMillis() - maxAge;
+        int removed = 0;
+        Iterator<DiskLruCache.Snapshot> snapshots = snapshots();
+        while (snapshots.hasNext()) {
+            try (DiskLruCache.Snapshot snapshot = snapshots.next()) {
+                CacheManager.Entry entry = CacheManager.Entry.read(snapshot.getSource(ENTRY_METADATA));
+                long hash = TtlIndex.hash(snapshot.key());
+                if (entry.receivedResponseMillis < minReceivedMillis) {
+                    snapshots.remove();
+                    ttlIndex.remove(hash);
+                    tagIndex.removeKey(snapshot.key());
+                    removed++;
+                } else {
+                    ttlIndex.put(hash, entry.receivedResponseMillis, entry.hasValidators());
+                }
+            } catch (IOException ignored) {
+                // The metadata can't be read, leave the entry to the LRU policy.
+            }
+        }
+        return removed;
+    }
 
     public static String md5(String key) {
         return ByteString.encodeUtf8(key).md5().hex();
@@ -108,9 +351,11 @@ public class CacheManager implements Closeable, Flushable {
         String md5Key = md5(key != null ? key : request.url().toString());
         DiskLruCache.Snapshot snapshot;
         CacheManager.Entry entry;
+        long hash = TtlIndex.hash(md5Key);
         try {
-            snapshot = cache.get(md5Key);
+            snapshot = cache(md5Key).get(md5Key);
             if (snapshot == null) {
+                ttlIndex.remove(hash);
                 return null;
             }
         } catch (IOException e) {
@@ -119,15 +364,38 @@ public class CacheManager implements Closeable, Flushable {
         }
 
         try {
-            entry = new CacheManager.Entry(snapshot.getSource(ENTRY_METADATA));
+            entry = CacheManager.Entry.read(snapshot.getSource(ENTRY_METADATA));
         } catch (IOException e) {
             Utils.closeQuietly(snapshot);
             return null;
         }
-
+        ttlIndex.put(hash, entry.receivedResponseMillis, entry.hasValidators());
+        if (entry.legacy) migrate(snapshot, entry);
         return entry.response(request, snapshot);
     }
 
+    //Rewrite the metadata of an entry in the text format in the binary format, the body is kept
+    private void migrate(DiskLruCache.Snapshot snapshot, CacheManager.Entry entry) {
+        DiskLruCache.Editor editor = null;
+        try {
+            editor = snapshot.edit();
+            if (editor != null) {
+                entry.writeTo(editor);
+                editor.commit();
+            }
+        } catch (IOException e) {
+            abortQuietly(editor);
+        }
+    }
+
+    //Only tells from the in-memory index, without any disk I/O
+    private boolean isExpired(Request request, String key, long minReceivedMillis, boolean revalidate) {
+        long hash = TtlIndex.hash(md5(key != null ? key : request.url().toString()));
+        long receivedMillis = ttlIndex.receivedMillis(hash);
+        if (receivedMillis == TtlIndex.ABSENT || receivedMillis >= minReceivedMillis) return false;
+        return !revalidate || !ttlIndex.hasValidators(hash);
+    }
+
     private Response put(Response networkResponse, String key) throws IOException {
         CacheRequest cacheRequest = putResponse(networkResponse, key); //写响应头、message等信息
         return cacheWritingResponse(cacheRequest, networkResponse);   //写
@@ -139,13 +407,34 @@ public class CacheManager implements Closeable, Flushable {
         DiskLruCache.Editor editor = null;
         try {
             String md5Key = md5(key != null ? key : response.request().url().toString());
-            editor = cache.edit(md5Key);
+            editor = cache(md5Key).edit(md5Key);
             if (editor == null) {
+                statsRecorder.recordWriteAbort(); //Another edit is in progress
                 return null;
             }
-            entry.writeTo(editor);
-            return new CacheManager.CacheRequestImpl(editor);
+            CacheCompression codec = compression;
+            long threshold = compressionMinSize;
+            ResponseBody body = response.body();
+            String contentEncoding = response.header("Content-Encoding");
+            if (body == null
+                || (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding))
+                || !CacheCompression.isCompressible(body.contentType())) {
+                codec = CacheCompression.NONE;
+            } else if (body.contentLength() >= 0) {
+                //长度已知，直接决定是否压缩
+                if (body.contentLength() < threshold) codec = CacheCompression.NONE;
+                threshold = 0;
+            }
+            Sink cacheOut = editor.newSink(ENTRY_BODY);
+            Sink encoded = new EncodingSink(editor, entry, cacheOut, codec, threshold);
+            return new CacheRequestImpl(editor, cacheOut, encoded, new Runnable() {
+                @Override
+                public void run() {
+                    ttlIndex.put(TtlIndex.hash(md5Key), entry.receivedResponseMillis, entry.hasValidators());
+                }
+            });
         } catch (IOException e) {
+            statsRecorder.recordWriteAbort();
             abortQuietly(editor);
             return null;
         }
@@ -161,6 +450,10 @@ public class CacheManager implements Closeable, Flushable {
 
         final BufferedSource source = body.source();
         final BufferedSink cacheBody = Okio.buffer(cacheBodyUnbuffered);
+        WriteBehind writeBehind = this.writeBehind;
+        if (writeBehind != null) {
+            return withBody(response, writeBehindSource(source, writeBehind.newJob(cacheRequest, cacheBody)));
+        }
 
         Source cacheWritingSource = new Source() {
             boolean cacheRequestClosed;
@@ -178,16 +471,20 @@ public class CacheManager implements Closeable, Flushable {
                     throw e;
                 }
 
-                if (bytesRead == -1) {
-                    if (!cacheRequestClosed) {
+                if (cacheRequestClosed) return bytesRead;
+                try {
+                    if (bytesRead == -1) {
                         cacheRequestClosed = true;
                         cacheBody.close(); // The cache response is complete!
+                        return -1;
                     }
-                    return -1;
+                    sink.copyTo(cacheBody.getBuffer(), sink.size() - bytesRead, bytesRead);
+                    cacheBody.emitCompleteSegments();
+                } catch (IOException e) {
+                    //写缓存失败(如元数据、压缩)，放弃缓存，不影响读取响应体
+                    cacheRequestClosed = true;
+                    cacheRequest.abort();
                 }
-
-                sink.copyTo(cacheBody.buffer(), sink.size() - bytesRead, bytesRead);
-                cacheBody.emitCompleteSegments();
                 return bytesRead;
             }
 
@@ -209,15 +506,116 @@ public class CacheManager implements Closeable, Flushable {
             }
         };
 
+        return withBody(response, cacheWritingSource);
+    }
+
+    //Tee what the caller reads into the write-behind queue, the job writes it on the writer thread
+    private Source writeBehindSource(final BufferedSource source, final WriteBehind.Job job) {
+        return new Source() {
+            boolean cacheRequestClosed;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long bytesRead;
+                try {
+                    bytesRead = source.read(sink, byteCount);
+                } catch (IOException e) {
+                    if (!cacheRequestClosed) {
+                        cacheRequestClosed = true;
+                        job.abort(); // Failed to write a complete cache response.
+                    }
+                    throw e;
+                }
+
+                if (cacheRequestClosed) return bytesRead;
+                if (bytesRead == -1) {
+                    cacheRequestClosed = true;
+                    job.close(); // The cache response is complete!
+                    return -1;
+                }
+                Buffer chunk = new Buffer();
+                sink.copyTo(chunk, sink.size() - bytesRead, bytesRead); //Shares the segments, no copy
+                if (!job.write(chunk)) {
+                    //超出队列预算，放弃缓存，不阻塞读取
+                    cacheRequestClosed = true;
+                    job.abort();
+                }
+                return bytesRead;
+            }
+
+            @NotNull
+            @Override
+            public Timeout timeout() {
+                return source.timeout();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!cacheRequestClosed
+                    && !Utils.discard(this, 100, MILLISECONDS)) {
+                    cacheRequestClosed = true;
+                    job.abort();
+                }
+                source.close();
+            }
+        };
+    }
+
+    private static Response withBody(Response response, Source source) {
         String contentType = response.header("Content-Type");
         long contentLength = response.body().contentLength();
         return response.newBuilder()
-            .body(new RealResponseBody(contentType, contentLength, Okio.buffer(cacheWritingSource)))
+            .body(new RealResponseBody(contentType, contentLength, Okio.buffer(source)))
             .build();
     }
 
+    //Only rewrite the metadata, the body of the existing entry is kept
+    private Response update(Response response, String key) {
+        CacheManager.Entry entry = new CacheManager.Entry(response);
+        DiskLruCache.Editor editor = null;
+        long startNanos = System.nanoTime();
+        try {
+            String md5Key = md5(key != null ? key : response.request().url().toString());
+            DiskLruCache.Snapshot snapshot = cache(md5Key).get(md5Key);
+            if (snapshot == null) return response;
+            try {
+                //The body is kept, so is its codec
+                entry.codec = CacheManager.Entry.read(snapshot.getSource(ENTRY_METADATA)).codec;
+            } finally {
+                Utils.closeQuietly(snapshot);
+            }
+            editor = cache(md5Key).edit(md5Key);
+            if (editor != null) {
+                entry.writeTo(editor);
+                editor.commit();
+                ttlIndex.put(TtlIndex.hash(md5Key), entry.receivedResponseMillis, entry.hasValidators());
+            }
+        } catch (IOException e) {
+            abortQuietly(editor);
+        }
+        statsRecorder.recordWriteNanos(System.nanoTime() - startNanos);
+        return response;
+    }
+
     private void remove(String key) throws IOException {
-        cache.remove(md5(key));
+        String md5Key = md5(key);
+        ttlIndex.remove(TtlIndex.hash(md5Key));
+        tagIndex.removeKey(md5Key);
+        cache(md5Key).remove(md5Key);
+    }
+
+    /**
+     * Remove every cache tagged with {@code tag} by {@link CacheStrategy#addCacheTag(String)},
+     * in O(group size), the rest of the cache is kept
+     *
+     * @return keys of the group
+     */
+    public Set<String> removeTag(String tag) throws IOException {
+        Set<String> keys = tagIndex.remove(tag);
+        for (String key : keys) {
+            remove(key);
+        }
+        return keys;
     }
 
     private void abortQuietly(@Nullable DiskLruCache.Editor editor) {
@@ -244,7 +642,9 @@ public class CacheManager implements Closeable, Flushable {
      * @throws IOException 初始化失败
      */
     public void initialize() throws IOException {
-        cache.initialize();
+        for (DiskLruCache shard : shards) {
+            shard.initialize();
+        }
     }
 
     /**
@@ -252,7 +652,10 @@ public class CacheManager implements Closeable, Flushable {
      * directory including files that weren't created by the cache.
      */
     private void delete() throws IOException {
-        cache.delete();
+        tagIndex.delete();
+        for (DiskLruCache shard : shards) {
+            shard.delete();
+        }
     }
 
     /**
@@ -260,13 +663,144 @@ public class CacheManager implements Closeable, Flushable {
      * but the corresponding responses will not be stored.
      */
     private void evictAll() throws IOException {
-        cache.evictAll();
+        ttlIndex.clear();
+        tagIndex.clear();
+        for (DiskLruCache shard : shards) {
+            shard.evictAll();
+        }
+    }
+
+
+    /**
+     * Write every readable entry, metadata and body as stored, and the cache tags into a single
+     * packed stream, e.g. to ship it with the app and {@link #importFrom(Source)} on first launch.
+     * Entries being written are skipped. The sink is not closed.
+     *
+     * @return number of entries exported
+     */
+    public int exportTo(Sink sink) throws IOException {
+        BufferedSink out = Okio.buffer(sink);
+        out.writeUtf8(SNAPSHOT_MAGIC).writeInt(SNAPSHOT_VERSION);
+        int count = 0;
+        Iterator<DiskLruCache.Snapshot> snapshots = snapshots();
+        while (snapshots.hasNext()) {
+            try (DiskLruCache.Snapshot snapshot = snapshots.next()) {
+                out.writeByte(SNAPSHOT_ENTRY);
+                writeString(out, snapshot.key());
+                for (int index = 0; index < ENTRY_COUNT; index++) {
+                    out.writeLong(snapshot.getLength(index));
+                    out.writeAll(snapshot.getSource(index));
+                }
+                count++;
+            }
+        }
+        for (Map.Entry<String, Set<String>> group : tagIndex.groups().entrySet()) {
+            out.writeByte(SNAPSHOT_TAG);
+            writeString(out, group.getKey());
+            out.writeInt(group.getValue().size());
+            for (String key : group.getValue()) {
+                writeString(out, key);
+            }
+        }
+        out.writeByte(SNAPSHOT_END);
+        out.emit();
+        return count;
     }
 
+    /**
+     * Read a stream written by {@link #exportTo(Sink)} in one sequential pass. The entries keep their
+     * original received time, so cacheValidTime still applies to them. Entries already in this cache
+     * are kept, the shard count of the two caches doesn't need to match. The source is not closed.
+     *
+     * @return number of entries imported
+     */
+    public int importFrom(Source source) throws IOException {
+        BufferedSource in = Okio.buffer(source);
+        if (!in.rangeEquals(0, ByteString.encodeUtf8(SNAPSHOT_MAGIC))) {
+            throw new IOException("not a cache snapshot");
+        }
+        in.skip(SNAPSHOT_MAGIC.length());
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("unsupported cache snapshot version " + version);
+        }
+        int count = 0;
+        while (true) {
+            int type = in.readByte();
+            if (type == SNAPSHOT_END) return count;
+            if (type == SNAPSHOT_TAG) {
+                String tag = readString(in);
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    tagIndex.add(readString(in), Collections.singleton(tag));
+                }
+            } else if (type == SNAPSHOT_ENTRY) {
+                if (importEntry(in)) count++;
+            } else {
+                throw new IOException("unexpected cache snapshot record " + type);
+            }
+        }
+    }
+
+    private boolean importEntry(BufferedSource in) throws IOException {
+        String md5Key = readString(in);
+        Buffer metadata = new Buffer();
+        in.readFully(metadata, in.readLong());
+        long bodyLength = in.readLong();
+        DiskLruCache cache;
+        DiskLruCache.Editor editor;
+        try {
+            cache = cache(md5Key);
+            DiskLruCache.Snapshot snapshot = cache.get(md5Key);
+            if (snapshot != null) {
+                snapshot.close();
+                editor = null; //Keep the entry already cached
+            } else {
+                editor = cache.edit(md5Key);
+            }
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new IOException("invalid cache snapshot key " + md5Key, e);
+        }
+        if (editor == null) {
+            in.skip(bodyLength);
+            return false;
+        }
+        try {
+            CacheManager.Entry entry = CacheManager.Entry.read(metadata.clone());
+            try (BufferedSink sink = Okio.buffer(editor.newSink(ENTRY_METADATA))) {
+                sink.writeAll(metadata);
+            }
+            try (BufferedSink sink = Okio.buffer(editor.newSink(ENTRY_BODY))) {
+                sink.write(in, bodyLength);
+            }
+            editor.commit();
+            ttlIndex.put(TtlIndex.hash(md5Key), entry.receivedResponseMillis, entry.hasValidators());
+            return true;
+        } catch (IOException e) {
+            abortQuietly(editor);
+            throw e;
+        }
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeInt(bytes.size()).write(bytes);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        return source.readUtf8(readLength(source));
+    }
+
+    //A negative length or count is a damaged entry, an IOException like a truncated one, i.e. a cache miss
+    private static int readLength(BufferedSource source) throws IOException {
+        int length = source.readInt();
+        if (length < 0) throw new IOException("negative length " + length + " in the cache metadata");
+        return length;
+    }
 
     public Iterator<String> urls() throws IOException {
         return new Iterator<String>() {
-            final Iterator<DiskLruCache.Snapshot> delegate = cache.snapshots();
+            final Iterator<DiskLruCache.Snapshot> delegate = snapshots();
 
             @Nullable String nextUrl;
             boolean canRemove;
@@ -278,8 +812,7 @@ public class CacheManager implements Closeable, Flushable {
                 canRemove = false; // Prevent delegate.remove() on the wrong item!
                 while (delegate.hasNext()) {
                     try (DiskLruCache.Snapshot snapshot = delegate.next()) {
-                        BufferedSource metadata = Okio.buffer(snapshot.getSource(ENTRY_METADATA));
-                        nextUrl = metadata.readUtf8LineStrict();
+                        nextUrl = CacheManager.Entry.readUrl(snapshot.getSource(ENTRY_METADATA));
                         return true;
                     } catch (IOException ignored) {
                         // We couldn't read the metadata for this snapshot; possibly because the host filesystem
@@ -309,44 +842,78 @@ public class CacheManager implements Closeable, Flushable {
 
 
     public long size() throws IOException {
-        return cache.size();
+        long size = 0;
+        for (DiskLruCache shard : shards) {
+            size += shard.size();
+        }
+        return size;
     }
 
     /**
      * @return Max size of the cache (in bytes).
      */
     public long maxSize() {
-        return cache.getMaxSize();
+        long maxSize = 0;
+        for (DiskLruCache shard : shards) {
+            maxSize += shard.getMaxSize();
+        }
+        return maxSize;
     }
 
     @Override
     public void flush() throws IOException {
-        cache.flush();
+        for (DiskLruCache shard : shards) {
+            shard.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        cache.close();
+        stopSweeper();
+        WriteBehind writeBehind = this.writeBehind;
+        if (writeBehind != null) writeBehind.shutdown();
+        tagIndex.close();
+        for (DiskLruCache shard : shards) {
+            shard.close();
+        }
     }
 
     public File directory() {
-        return cache.getDirectory().toFile();
+        return directory;
     }
 
     public boolean isClosed() {
-        return cache.isClosed();
+        return shards[0].isClosed();
     }
 
-    private final class CacheRequestImpl implements CacheRequest {
+    final class CacheRequestImpl implements CacheRequest {
         private final DiskLruCache.Editor editor;
         private final Sink cacheOut;
         private final Sink body;
         boolean done;
+        //Time spent writing to the disk, the body is written as the caller reads it, so this is recorded
+        //as the write latency once the entry is committed or aborted, not the time until then
+        private volatile long writeNanos;
 
-        CacheRequestImpl(final DiskLruCache.Editor editor) {
+        /**
+         * @param cacheOut  the body file of the editor
+         * @param encoded   writes the metadata and the encoded body into cacheOut
+         * @param committed called once the entry is committed
+         */
+        CacheRequestImpl(final DiskLruCache.Editor editor, Sink cacheOut, Sink encoded, final Runnable committed) {
             this.editor = editor;
-            this.cacheOut = editor.newSink(ENTRY_BODY);
-            this.body = new ForwardingSink(cacheOut) {
+            this.cacheOut = cacheOut;
+            this.body = new ForwardingSink(encoded) {
+                @Override
+                public void write(@NotNull Buffer source, long byteCount) throws IOException {
+                    long startNanos = System.nanoTime();
+                    try {
+                        super.write(source, byteCount);
+                    } finally {
+                        writeNanos += System.nanoTime() - startNanos;
+                    }
+                }
+
                 @Override
                 public void close() throws IOException {
                     synchronized (CacheManager.this) {
@@ -355,8 +922,22 @@ public class CacheManager implements Closeable, Flushable {
                         }
                         done = true;
                     }
-                    super.close();
-                    editor.commit();
+                    long startNanos = System.nanoTime();
+                    try {
+                        //Flushes the codec and writes the deferred metadata, either may fail
+                        super.close();
+                        editor.commit();
+                    } catch (IOException | RuntimeException e) {
+                        //Release the editor, otherwise the key can't be written again
+                        statsRecorder.recordWriteAbort();
+                        Utils.closeQuietly(CacheRequestImpl.this.cacheOut);
+                        abortQuietly(editor);
+                        statsRecorder.recordWriteNanos(writeNanos + System.nanoTime() - startNanos);
+                        throw e;
+                    }
+                    committed.run();
+                    statsRecorder.recordWrite();
+                    statsRecorder.recordWriteNanos(writeNanos + System.nanoTime() - startNanos);
                 }
             };
         }
@@ -369,11 +950,14 @@ public class CacheManager implements Closeable, Flushable {
                 }
                 done = true;
             }
+            long startNanos = System.nanoTime();
+            statsRecorder.recordWriteAbort();
             Utils.closeQuietly(cacheOut);
             try {
                 editor.abort();
             } catch (IOException ignored) {
             }
+            statsRecorder.recordWriteNanos(writeNanos + System.nanoTime() - startNanos);
         }
 
         @NotNull
@@ -383,6 +967,65 @@ public class CacheManager implements Closeable, Flushable {
         }
     }
 
+    /**
+     * Holds the body back until {@code threshold} bytes have been written, then picks the codec and
+     * writes the metadata, which records it. A body that ends before the threshold is stored as is.
+     */
+    private static final class EncodingSink implements Sink {
+        private final DiskLruCache.Editor editor;
+        private final Entry entry;
+        private final Sink cacheOut;
+        private final CacheCompression compression;
+        private final long threshold;
+        private final Buffer pending = new Buffer();
+        private @Nullable Sink sink;
+
+        EncodingSink(DiskLruCache.Editor editor, Entry entry, Sink cacheOut,
+                     CacheCompression compression, long threshold) {
+            this.editor = editor;
+            this.entry = entry;
+            this.cacheOut = cacheOut;
+            this.compression = compression;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+            if (sink == null) {
+                pending.write(source, byteCount);
+                if (pending.size() < threshold) return;
+                start(compression).write(pending, pending.size());
+            } else {
+                sink.write(source, byteCount);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (sink != null) sink.flush();
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return cacheOut.timeout();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sink == null) {
+                start(CacheCompression.NONE).write(pending, pending.size());
+            }
+            sink.close();
+        }
+
+        private Sink start(CacheCompression codec) throws IOException {
+            entry.codec = codec;
+            entry.writeTo(editor);
+            return sink = codec.encode(cacheOut);
+        }
+    }
+
     private static final class Entry {
         /**
          * Synthetic response header: the local time when the request was sent.
@@ -394,6 +1037,17 @@ public class CacheManager implements Closeable, Flushable {
          */
         private static final String RECEIVED_MILLIS = Platform.get().getPrefix() + "-Received-Millis";
 
+        /**
+         * Synthetic response header: the codec of the cached body, absent if the body is not compressed.
+         */
+        private static final String CODEC = Platform.get().getPrefix() + "-Cache-Codec";
+
+        /**
+         * Prefix of the binary format, a text entry starts with its URL and never with a NUL byte
+         */
+        private static final ByteString BINARY_MAGIC = ByteString.encodeUtf8("\u0000RXC");
+        private static final int BINARY_VERSION = 1;
+
         private final String url;
         private final Headers varyHeaders;
         private final String requestMethod;
@@ -404,9 +1058,113 @@ public class CacheManager implements Closeable, Flushable {
         private final @Nullable Handshake handshake;
         private final long sentRequestMillis;
         private final long receivedResponseMillis;
+        private CacheCompression codec = CacheCompression.NONE;
+        /**
+         * Whether the entry was read in the text format of VERSION 201105, it is rewritten in the
+         * binary format on the next hit
+         */
+        private boolean legacy;
+
+        private Entry(String url, Headers varyHeaders, String requestMethod, Protocol protocol,
+                      int code, String message, Headers responseHeaders, @Nullable Handshake handshake,
+                      long sentRequestMillis, long receivedResponseMillis) {
+            this.url = url;
+            this.varyHeaders = varyHeaders;
+            this.requestMethod = requestMethod;
+            this.protocol = protocol;
+            this.code = code;
+            this.message = message;
+            this.responseHeaders = responseHeaders;
+            this.handshake = handshake;
+            this.sentRequestMillis = sentRequestMillis;
+            this.receivedResponseMillis = receivedResponseMillis;
+        }
+
+        Entry(Response response) {
+            this.url = response.request().url().toString();
+            this.varyHeaders = HeadersVary.varyHeaders(response);
+            this.requestMethod = response.request().method();
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            this.responseHeaders = response.headers();
+            this.handshake = response.handshake();
+            this.sentRequestMillis = response.sentRequestAtMillis();
+            this.receivedResponseMillis = response.receivedResponseAtMillis();
+        }
+
+        /**
+         * Reads an entry in either format, see {@link #writeTo(DiskLruCache.Editor)} for the binary
+         * one, and {@link #readText(BufferedSource)} for the text one.
+         */
+        static Entry read(Source in) throws IOException {
+            try {
+                BufferedSource source = Okio.buffer(in);
+                if (!source.rangeEquals(0, BINARY_MAGIC)) {
+                    Entry entry = readText(source);
+                    entry.legacy = true;
+                    return entry;
+                }
+                source.skip(BINARY_MAGIC.size());
+                int version = source.readByte();
+                if (version != BINARY_VERSION) {
+                    throw new IOException("unknown cache metadata version " + version);
+                }
+                return readBinary(source);
+            } catch (IllegalArgumentException e) {
+                //e.g. an unknown TLS version, or a damaged header name
+                throw new IOException("corrupt cache metadata", e);
+            } finally {
+                in.close();
+            }
+        }
+
+        //Reads the URL only, the first field of both formats
+        static String readUrl(Source in) throws IOException {
+            try {
+                BufferedSource source = Okio.buffer(in);
+                if (!source.rangeEquals(0, BINARY_MAGIC)) return source.readUtf8LineStrict();
+                source.skip(BINARY_MAGIC.size() + 1);
+                return readString(source);
+            } finally {
+                in.close();
+            }
+        }
+
+        private static Entry readBinary(BufferedSource source) throws IOException {
+            String url = readString(source);
+            String requestMethod = readString(source);
+            Headers varyHeaders = readHeaders(source);
+            Protocol protocol = Protocol.get(readString(source));
+            int code = source.readInt();
+            String message = readString(source);
+            Headers responseHeaders = readHeaders(source);
+            long sentRequestMillis = source.readLong();
+            long receivedResponseMillis = source.readLong();
+            String codecName = readString(source);
+            Handshake handshake = null;
+            if (source.readByte() != 0) {
+                CipherSuite cipherSuite = CipherSuite.forJavaName(readString(source));
+                TlsVersion tlsVersion = TlsVersion.forJavaName(readString(source));
+                //Only the peer certificates are decoded lazily, local certificates are rarely present
+                final List<ByteString> peerCertificates = readByteStrings(source);
+                List<Certificate> localCertificates = decodeCertificates(readByteStrings(source));
+                handshake = OkHttpCompat.handshake(tlsVersion, cipherSuite, localCertificates,
+                    new Callable<List<Certificate>>() {
+                        @Override
+                        public List<Certificate> call() throws Exception {
+                            return decodeCertificates(peerCertificates);
+                        }
+                    });
+            }
+            Entry entry = new Entry(url, varyHeaders, requestMethod, protocol, code, message,
+                responseHeaders, handshake, sentRequestMillis, receivedResponseMillis);
+            entry.codec = codec(codecName);
+            return entry;
+        }
 
         /**
-         * Reads an entry from an input stream. A typical entry looks like this:
+         * Reads an entry in the text format of VERSION 201105. A typical entry looks like this:
          * <pre>{@code
          *   http://google.com/foo
          *   GET
@@ -453,57 +1211,63 @@ public class CacheManager implements Closeable, Flushable {
          * base64-encoded and appear each on their own line. A length of -1 is used to encode a null
          * array. The last line is optional. If present, it contains the TLS version.
          */
-        Entry(Source in) throws IOException {
-            try {
-                BufferedSource source = Okio.buffer(in);
-                url = source.readUtf8LineStrict();
-                requestMethod = source.readUtf8LineStrict();
-                Headers.Builder varyHeadersBuilder = new Headers.Builder();
-                int varyRequestHeaderLineCount = readInt(source);
-                for (int i = 0; i < varyRequestHeaderLineCount; i++) {
-                    addUnsafeNonAscii(varyHeadersBuilder, source.readUtf8LineStrict());
-                }
-                varyHeaders = varyHeadersBuilder.build();
-
-                StatusLine statusLine = OkHttpCompat.parse(source.readUtf8LineStrict());
-                protocol = statusLine.protocol;
-                code = statusLine.code;
-                message = statusLine.message;
-                Headers.Builder responseHeadersBuilder = new Headers.Builder();
-                int responseHeaderLineCount = readInt(source);
-                for (int i = 0; i < responseHeaderLineCount; i++) {
-                    addUnsafeNonAscii(responseHeadersBuilder, source.readUtf8LineStrict());
-                }
-                String sendRequestMillisString = responseHeadersBuilder.get(SENT_MILLIS);
-                String receivedResponseMillisString = responseHeadersBuilder.get(RECEIVED_MILLIS);
-                responseHeadersBuilder.removeAll(SENT_MILLIS);
-                responseHeadersBuilder.removeAll(RECEIVED_MILLIS);
-                sentRequestMillis = sendRequestMillisString != null
-                    ? Long.parseLong(sendRequestMillisString)
-                    : 0L;
-                receivedResponseMillis = receivedResponseMillisString != null
-                    ? Long.parseLong(receivedResponseMillisString)
-                    : 0L;
-                responseHeaders = responseHeadersBuilder.build();
-
-                if (isHttps()) {
-                    String blank = source.readUtf8LineStrict();
-                    if (blank.length() > 0) {
-                        throw new IOException("expected \"\" but was \"" + blank + "\"");
-                    }
-                    String cipherSuiteString = source.readUtf8LineStrict();
-                    CipherSuite cipherSuite = CipherSuite.forJavaName(cipherSuiteString);
-                    List<Certificate> peerCertificates = readCertificateList(source);
-                    List<Certificate> localCertificates = readCertificateList(source);
-                    TlsVersion tlsVersion = !source.exhausted()
-                        ? TlsVersion.forJavaName(source.readUtf8LineStrict())
-                        : TlsVersion.SSL_3_0;
-                    handshake = Handshake.get(tlsVersion, cipherSuite, peerCertificates, localCertificates);
-                } else {
-                    handshake = null;
+        private static Entry readText(BufferedSource source) throws IOException {
+            String url = source.readUtf8LineStrict();
+            String requestMethod = source.readUtf8LineStrict();
+            Headers.Builder varyHeadersBuilder = new Headers.Builder();
+            int varyRequestHeaderLineCount = readInt(source);
+            for (int i = 0; i < varyRequestHeaderLineCount; i++) {
+                addUnsafeNonAscii(varyHeadersBuilder, source.readUtf8LineStrict());
+            }
+            Headers varyHeaders = varyHeadersBuilder.build();
+
+            StatusLine statusLine = OkHttpCompat.parse(source.readUtf8LineStrict());
+            Headers.Builder responseHeadersBuilder = new Headers.Builder();
+            int responseHeaderLineCount = readInt(source);
+            for (int i = 0; i < responseHeaderLineCount; i++) {
+                addUnsafeNonAscii(responseHeadersBuilder, source.readUtf8LineStrict());
+            }
+            String sendRequestMillisString = responseHeadersBuilder.get(SENT_MILLIS);
+            String receivedResponseMillisString = responseHeadersBuilder.get(RECEIVED_MILLIS);
+            responseHeadersBuilder.removeAll(SENT_MILLIS);
+            responseHeadersBuilder.removeAll(RECEIVED_MILLIS);
+            String codecString = responseHeadersBuilder.get(CODEC);
+            responseHeadersBuilder.removeAll(CODEC);
+            long sentRequestMillis = sendRequestMillisString != null
+                ? Long.parseLong(sendRequestMillisString)
+                : 0L;
+            long receivedResponseMillis = receivedResponseMillisString != null
+                ? Long.parseLong(receivedResponseMillisString)
+                : 0L;
+            Headers responseHeaders = responseHeadersBuilder.build();
+
+            Handshake handshake = null;
+            if (url.startsWith("https://")) {
+                String blank = source.readUtf8LineStrict();
+                if (blank.length() > 0) {
+                    throw new IOException("expected \"\" but was \"" + blank + "\"");
                 }
-            } finally {
-                in.close();
+                String cipherSuiteString = source.readUtf8LineStrict();
+                CipherSuite cipherSuite = CipherSuite.forJavaName(cipherSuiteString);
+                List<Certificate> peerCertificates = readCertificateList(source);
+                List<Certificate> localCertificates = readCertificateList(source);
+                TlsVersion tlsVersion = !source.exhausted()
+                    ? TlsVersion.forJavaName(source.readUtf8LineStrict())
+                    : TlsVersion.SSL_3_0;
+                handshake = Handshake.get(tlsVersion, cipherSuite, peerCertificates, localCertificates);
+            }
+            Entry entry = new Entry(url, varyHeaders, requestMethod, statusLine.protocol,
+                statusLine.code, statusLine.message, responseHeaders, handshake,
+                sentRequestMillis, receivedResponseMillis);
+            if (codecString != null) entry.codec = codec(codecString);
+            return entry;
+        }
+
+        private static CacheCompression codec(String name) throws IOException {
+            try {
+                return CacheCompression.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("unknown cache codec \"" + name + "\"");
             }
         }
 
@@ -511,7 +1275,7 @@ public class CacheManager implements Closeable, Flushable {
          * Add a header with the specified name and value. Does validation of header names, allowing
          * non-ASCII values.
          */
-        void addUnsafeNonAscii(Headers.Builder builder, String line) {
+        private static void addUnsafeNonAscii(Headers.Builder builder, String line) {
             int index = line.indexOf(":", 1);
             if (index != -1) {
                 builder.addUnsafeNonAscii(line.substring(0, index), line.substring(index + 1));
@@ -522,69 +1286,94 @@ public class CacheManager implements Closeable, Flushable {
             }
         }
 
-        Entry(Response response) {
-            this.url = response.request().url().toString();
-            this.varyHeaders = HeadersVary.varyHeaders(response);
-            this.requestMethod = response.request().method();
-            this.protocol = response.protocol();
-            this.code = response.code();
-            this.message = response.message();
-            this.responseHeaders = response.headers();
-            this.handshake = response.handshake();
-            this.sentRequestMillis = response.sentRequestAtMillis();
-            this.receivedResponseMillis = response.receivedResponseAtMillis();
-        }
-
+        /**
+         * Writes the binary format: magic, version, then length-prefixed fields in this order: URL,
+         * method, vary headers, protocol, code, message, response headers, sent and received millis,
+         * codec, and an optional handshake with the DER encoded certificates.
+         */
         public void writeTo(DiskLruCache.Editor editor) throws IOException {
             BufferedSink sink = Okio.buffer(editor.newSink(ENTRY_METADATA));
-
-            sink.writeUtf8(url)
-                .writeByte('\n');
-            sink.writeUtf8(requestMethod)
-                .writeByte('\n');
-            sink.writeDecimalLong(varyHeaders.size())
-                .writeByte('\n');
-            for (int i = 0, size = varyHeaders.size(); i < size; i++) {
-                sink.writeUtf8(varyHeaders.name(i))
-                    .writeUtf8(": ")
-                    .writeUtf8(varyHeaders.value(i))
-                    .writeByte('\n');
-            }
-            sink.writeUtf8(new StatusLine(protocol, code, message).toString())
-                .writeByte('\n');
-            sink.writeDecimalLong(responseHeaders.size() + 2)
-                .writeByte('\n');
-            for (int i = 0, size = responseHeaders.size(); i < size; i++) {
-                sink.writeUtf8(responseHeaders.name(i))
-                    .writeUtf8(": ")
-                    .writeUtf8(responseHeaders.value(i))
-                    .writeByte('\n');
-            }
-            sink.writeUtf8(SENT_MILLIS)
-                .writeUtf8(": ")
-                .writeDecimalLong(sentRequestMillis)
-                .writeByte('\n');
-            sink.writeUtf8(RECEIVED_MILLIS)
-                .writeUtf8(": ")
-                .writeDecimalLong(receivedResponseMillis)
-                .writeByte('\n');
-
-            if (isHttps()) {
-                sink.writeByte('\n');
-                sink.writeUtf8(handshake.cipherSuite().javaName())
-                    .writeByte('\n');
-                writeCertList(sink, handshake.peerCertificates());
-                writeCertList(sink, handshake.localCertificates());
-                sink.writeUtf8(handshake.tlsVersion().javaName()).writeByte('\n');
+            sink.write(BINARY_MAGIC).writeByte(BINARY_VERSION);
+            writeString(sink, url);
+            writeString(sink, requestMethod);
+            writeHeaders(sink, varyHeaders);
+            writeString(sink, protocol.toString());
+            sink.writeInt(code);
+            writeString(sink, message);
+            writeHeaders(sink, responseHeaders);
+            sink.writeLong(sentRequestMillis);
+            sink.writeLong(receivedResponseMillis);
+            writeString(sink, codec.name());
+            if (handshake != null) {
+                sink.writeByte(1);
+                writeString(sink, handshake.cipherSuite().javaName());
+                writeString(sink, handshake.tlsVersion().javaName());
+                writeCertificates(sink, handshake.peerCertificates());
+                writeCertificates(sink, handshake.localCertificates());
+            } else {
+                sink.writeByte(0);
             }
             sink.close();
         }
 
-        private boolean isHttps() {
-            return url.startsWith("https://");
+        boolean hasValidators() {
+            return responseHeaders.get("ETag") != null || responseHeaders.get("Last-Modified") != null;
+        }
+
+        private static Headers readHeaders(BufferedSource source) throws IOException {
+            int size = readLength(source);
+            Headers.Builder builder = new Headers.Builder();
+            for (int i = 0; i < size; i++) {
+                builder.addUnsafeNonAscii(readString(source), readString(source));
+            }
+            return builder.build();
+        }
+
+        private static void writeHeaders(BufferedSink sink, Headers headers) throws IOException {
+            sink.writeInt(headers.size());
+            for (int i = 0, size = headers.size(); i < size; i++) {
+                writeString(sink, headers.name(i));
+                writeString(sink, headers.value(i));
+            }
+        }
+
+        private static List<ByteString> readByteStrings(BufferedSource source) throws IOException {
+            int size = readLength(source);
+            List<ByteString> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                result.add(source.readByteString(readLength(source)));
+            }
+            return result;
+        }
+
+        private static void writeCertificates(BufferedSink sink, List<Certificate> certificates)
+            throws IOException {
+            try {
+                sink.writeInt(certificates.size());
+                for (int i = 0, size = certificates.size(); i < size; i++) {
+                    byte[] bytes = certificates.get(i).getEncoded();
+                    sink.writeInt(bytes.length).write(bytes);
+                }
+            } catch (CertificateEncodingException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        private static List<Certificate> decodeCertificates(List<ByteString> encoded) throws IOException {
+            if (encoded.isEmpty()) return Collections.emptyList();
+            try {
+                CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+                List<Certificate> result = new ArrayList<>(encoded.size());
+                for (ByteString bytes : encoded) {
+                    result.add(certificateFactory.generateCertificate(new Buffer().write(bytes).inputStream()));
+                }
+                return result;
+            } catch (CertificateException e) {
+                throw new IOException(e.getMessage());
+            }
         }
 
-        private List<Certificate> readCertificateList(BufferedSource source) throws IOException {
+        private static List<Certificate> readCertificateList(BufferedSource source) throws IOException {
             int length = readInt(source);
             if (length == -1)
                 return Collections.emptyList(); // OkHttp v1.2 used -1 to indicate null.
@@ -604,22 +1393,6 @@ public class CacheManager implements Closeable, Flushable {
             }
         }
 
-        private void writeCertList(BufferedSink sink, List<Certificate> certificates)
-            throws IOException {
-            try {
-                sink.writeDecimalLong(certificates.size())
-                    .writeByte('\n');
-                for (int i = 0, size = certificates.size(); i < size; i++) {
-                    byte[] bytes = certificates.get(i).getEncoded();
-                    String line = ByteString.of(bytes).base64();
-                    sink.writeUtf8(line)
-                        .writeByte('\n');
-                }
-            } catch (CertificateEncodingException e) {
-                throw new IOException(e.getMessage());
-            }
-        }
-
         public boolean matches(Request request, Response response) {
             return url.equals(request.url().toString())
                 && requestMethod.equals(request.method())
@@ -636,7 +1409,7 @@ public class CacheManager implements Closeable, Flushable {
                 .code(code)
                 .message(message)
                 .headers(responseHeaders)
-                .body(new CacheManager.CacheResponseBody(snapshot, contentType, contentLength))
+                .body(new CacheManager.CacheResponseBody(snapshot, codec, contentType, contentLength))
                 .handshake(handshake)
                 .sentRequestAtMillis(sentRequestMillis)
                 .receivedResponseAtMillis(receivedResponseMillis)
@@ -663,13 +1436,13 @@ public class CacheManager implements Closeable, Flushable {
         private final @Nullable String contentType;
         private final @Nullable String contentLength;
 
-        CacheResponseBody(final DiskLruCache.Snapshot snapshot,
+        CacheResponseBody(final DiskLruCache.Snapshot snapshot, CacheCompression codec,
                           String contentType, String contentLength) {
             this.snapshot = snapshot;
             this.contentType = contentType;
             this.contentLength = contentLength;
 
-            Source source = snapshot.getSource(ENTRY_BODY);
+            Source source = codec.decode(snapshot.getSource(ENTRY_BODY));
             bodySource = Okio.buffer(new ForwardingSource(source) {
                 @Override
                 public void close() throws IOException {
@@ -31,5 +31,12 @@ public enum CacheMode {
      * 先请求网络，失败后再读取缓存  (网络请求成功，写缓存)
      */
     REQUEST_NETWORK_FAILED_READ_CACHE,
+
+    /**
+     * 先读取缓存，缓存有效直接返回；缓存过期但仍在 {@link CacheStrategy#getCacheStaleTime()} 窗口内
+     * (默认1天，见{@link CacheStrategy#DEFAULT_CACHE_STALE_TIME})，直接返回过期缓存，同时在后台发起一次网络请求刷新缓存；
+     * 超出窗口，则同{@link #READ_CACHE_FAILED_REQUEST_NETWORK}
+     */
+    STALE_WHILE_REVALIDATE,
     ;
 }
@@ -0,0 +1,259 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the cache counters, see {@link CacheManager#stats()}
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 18:05
+ */
+public final class CacheStats {
+
+    private final Counts total;
+    private final long revalidateCount;
+    private final long writeCount;
+    private final long writeAbortCount;
+    private final long evictionCount;
+    private final long bytesServed;
+    private final long writeQueueBytes;
+    private final long writeQueueDepth;
+    private final long writeDropCount;
+    private final Map<CacheMode, Counts> byMode;
+    private final Map<String, Counts> byKeyPrefix;
+    private final Latency readLatency;
+    private final Latency writeLatency;
+
+    CacheStats(Counts total, long revalidateCount, long writeCount, long writeAbortCount,
+               long evictionCount, long bytesServed, long writeQueueBytes, long writeQueueDepth,
+               long writeDropCount, Map<CacheMode, Counts> byMode,
+               Map<String, Counts> byKeyPrefix, Latency readLatency, Latency writeLatency) {
+        this.total = total;
+        this.revalidateCount = revalidateCount;
+        this.writeCount = writeCount;
+        this.writeAbortCount = writeAbortCount;
+        this.evictionCount = evictionCount;
+        this.bytesServed = bytesServed;
+        this.writeQueueBytes = writeQueueBytes;
+        this.writeQueueDepth = writeQueueDepth;
+        this.writeDropCount = writeDropCount;
+        this.byMode = byMode;
+        this.byKeyPrefix = byKeyPrefix;
+        this.readLatency = readLatency;
+        this.writeLatency = writeLatency;
+    }
+
+    /**
+     * @return requests served by the cache, including expired caches revalidated with a 304
+     */
+    public long hitCount() {
+        return total.hitCount;
+    }
+
+    /**
+     * @return cache lookups that found nothing usable and went to the network, or failed in ONLY_CACHE mode
+     */
+    public long missCount() {
+        return total.missCount;
+    }
+
+    public double hitRate() {
+        return total.hitRate();
+    }
+
+    /**
+     * @return expired caches that the server confirmed with a 304, they are also counted as hits
+     */
+    public long revalidateCount() {
+        return revalidateCount;
+    }
+
+    /**
+     * @return bodies completely written to the disk cache
+     */
+    public long writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return writes given up, e.g. the body was not read to the end, or the entry was being edited
+     */
+    public long writeAbortCount() {
+        return writeAbortCount;
+    }
+
+    /**
+     * @return entries evicted from the in-memory cache, the disk cache doesn't report its evictions
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return body bytes read by callers from cache responses
+     */
+    public long bytesServed() {
+        return bytesServed;
+    }
+
+    /**
+     * @return bytes waiting for the write-behind writer, see {@link CacheManager#setWriteBehind(long)}
+     */
+    public long writeQueueBytes() {
+        return writeQueueBytes;
+    }
+
+    /**
+     * @return chunks waiting for the write-behind writer
+     */
+    public long writeQueueDepth() {
+        return writeQueueDepth;
+    }
+
+    /**
+     * @return write-behind writes dropped because the queue was over its budget, they are also
+     * counted as write aborts
+     */
+    public long writeDropCount() {
+        return writeDropCount;
+    }
+
+    @NotNull
+    public Map<CacheMode, Counts> byMode() {
+        return byMode;
+    }
+
+    /**
+     * @return counts of the key prefixes set by {@link CacheStatsRecorder#setKeyPrefixes(String...)}
+     */
+    @NotNull
+    public Map<String, Counts> byKeyPrefix() {
+        return byKeyPrefix;
+    }
+
+    /**
+     * @return latency of cache lookups, metadata included, body excluded
+     */
+    @NotNull
+    public Latency readLatency() {
+        return readLatency;
+    }
+
+    /**
+     * @return time spent writing an entry to the disk, its body and commit, or updating its metadata; the body
+     * is written as the caller reads it, the time waiting for the network is not included
+     */
+    @NotNull
+    public Latency writeLatency() {
+        return writeLatency;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+            "hitCount=" + total.hitCount +
+            ", missCount=" + total.missCount +
+            ", revalidateCount=" + revalidateCount +
+            ", writeCount=" + writeCount +
+            ", writeAbortCount=" + writeAbortCount +
+            ", evictionCount=" + evictionCount +
+            ", bytesServed=" + bytesServed +
+            ", writeQueueBytes=" + writeQueueBytes +
+            ", writeQueueDepth=" + writeQueueDepth +
+            ", writeDropCount=" + writeDropCount +
+            ", byMode=" + byMode +
+            ", byKeyPrefix=" + byKeyPrefix +
+            ", readLatency=" + readLatency +
+            ", writeLatency=" + writeLatency +
+            '}';
+    }
+
+    public static final class Counts {
+        private final long hitCount;
+        private final long missCount;
+
+        Counts(long hitCount, long missCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+        }
+
+        public long hitCount() {
+            return hitCount;
+        }
+
+        public long missCount() {
+            return missCount;
+        }
+
+        public double hitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return "{hit=" + hitCount + ", miss=" + missCount + '}';
+        }
+    }
+
+    /**
+     * Latency histogram with fixed exponential buckets
+     */
+    public static final class Latency {
+        private final long[] boundsMicros;
+        private final long[] counts;
+
+        Latency(long[] boundsMicros, long[] counts) {
+            this.boundsMicros = boundsMicros;
+            this.counts = counts;
+        }
+
+        /**
+         * @return upper bound of each bucket in microseconds, the last bucket has no upper bound
+         * and is not listed, so there is one more bucket than bounds
+         */
+        public long[] boundsMicros() {
+            return boundsMicros.clone();
+        }
+
+        public long[] counts() {
+            return counts.clone();
+        }
+
+        public long count() {
+            long count = 0;
+            for (long c : counts) count += c;
+            return count;
+        }
+
+        /**
+         * @param percentile in (0, 100]
+         * @return upper bound in microseconds of the bucket the percentile falls into,
+         * {@link Long#MAX_VALUE} if it falls into the last bucket, 0 if nothing was recorded
+         */
+        public long percentileMicros(double percentile) {
+            long count = count();
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i < boundsMicros.length ? boundsMicros[i] : Long.MAX_VALUE;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return "{count=" + count() +
+                ", p50<=" + percentileMicros(50) + "us" +
+                ", p99<=" + percentileMicros(99) + "us}";
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * Live cache counters, updated by CacheInterceptor, CacheManager and MemoryCache.
+ * Use {@link #snapshot()} or {@link CacheManager#stats()} to read them.
+ * <p>
+ * Counters are plain atomics instead of LongAdder, which is not available below Android 7.0
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 18:05
+ */
+public final class CacheStatsRecorder {
+
+    private static final long[] LATENCY_BOUNDS_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000
+    };
+
+    private final Counter total = new Counter();
+    private final Map<CacheMode, Counter> modeCounters = new EnumMap<>(CacheMode.class);
+    private volatile Map<String, Counter> prefixCounters = Collections.emptyMap();
+    private final AtomicLong revalidateCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong writeAbortCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong writeQueueBytes = new AtomicLong();
+    private final AtomicLong writeQueueDepth = new AtomicLong();
+    private final AtomicLong writeDropCount = new AtomicLong();
+    private final AtomicLongArray readLatency = new AtomicLongArray(LATENCY_BOUNDS_MICROS.length + 1);
+    private final AtomicLongArray writeLatency = new AtomicLongArray(LATENCY_BOUNDS_MICROS.length + 1);
+
+    public CacheStatsRecorder() {
+        for (CacheMode cacheMode : CacheMode.values()) {
+            modeCounters.put(cacheMode, new Counter());
+        }
+    }
+
+    /**
+     * Break hits and misses down by cache key prefix, a key is counted under the first prefix it starts with.
+     * Resets the previous prefix counts.
+     *
+     * @param prefixes e.g. "https://api.example.com/user/"
+     */
+    public void setKeyPrefixes(String... prefixes) {
+        Map<String, Counter> counters = new LinkedHashMap<>();
+        for (String prefix : prefixes) {
+            counters.put(prefix, new Counter());
+        }
+        prefixCounters = counters;
+    }
+
+    public void recordHit(CacheMode cacheMode, @Nullable String key) {
+        total.hit.incrementAndGet();
+        modeCounters.get(cacheMode).hit.incrementAndGet();
+        Counter counter = prefixCounter(key);
+        if (counter != null) counter.hit.incrementAndGet();
+    }
+
+    public void recordMiss(CacheMode cacheMode, @Nullable String key) {
+        total.miss.incrementAndGet();
+        modeCounters.get(cacheMode).miss.incrementAndGet();
+        Counter counter = prefixCounter(key);
+        if (counter != null) counter.miss.incrementAndGet();
+    }
+
+    public void recordRevalidate() {
+        revalidateCount.incrementAndGet();
+    }
+
+    public void recordWrite() {
+        writeCount.incrementAndGet();
+    }
+
+    public void recordWriteAbort() {
+        writeAbortCount.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictionCount.incrementAndGet();
+    }
+
+    public void recordWriteQueued(long byteCount) {
+        writeQueueBytes.addAndGet(byteCount);
+        writeQueueDepth.incrementAndGet();
+    }
+
+    public void recordWriteDequeued(long byteCount) {
+        writeQueueBytes.addAndGet(-byteCount);
+        writeQueueDepth.decrementAndGet();
+    }
+
+    public void recordWriteBehindDrop() {
+        writeDropCount.incrementAndGet();
+    }
+
+    public void recordReadNanos(long nanos) {
+        readLatency.incrementAndGet(bucket(nanos));
+    }
+
+    public void recordWriteNanos(long nanos) {
+        writeLatency.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @return the response whose body counts the bytes the caller reads as served
+     */
+    public Response countBytesServed(Response response) {
+        final ResponseBody body = response.body();
+        if (body == null) return response;
+        Source source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long bytesRead = super.read(sink, byteCount);
+                if (bytesRead > 0) bytesServed.addAndGet(bytesRead);
+                return bytesRead;
+            }
+        };
+        return response.newBuilder()
+            .body(OkHttpCompat.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+            .build();
+    }
+
+    @NotNull
+    public CacheStats snapshot() {
+        Map<CacheMode, CacheStats.Counts> byMode = new EnumMap<>(CacheMode.class);
+        for (Map.Entry<CacheMode, Counter> entry : modeCounters.entrySet()) {
+            byMode.put(entry.getKey(), entry.getValue().counts());
+        }
+        Map<String, CacheStats.Counts> byKeyPrefix = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : prefixCounters.entrySet()) {
+            byKeyPrefix.put(entry.getKey(), entry.getValue().counts());
+        }
+        return new CacheStats(total.counts(), revalidateCount.get(), writeCount.get(),
+            writeAbortCount.get(), evictionCount.get(), bytesServed.get(),
+            writeQueueBytes.get(), writeQueueDepth.get(), writeDropCount.get(),
+            Collections.unmodifiableMap(byMode), Collections.unmodifiableMap(byKeyPrefix),
+            latency(readLatency), latency(writeLatency));
+    }
+
+    public void reset() {
+        total.reset();
+        for (Counter counter : modeCounters.values()) counter.reset();
+        for (Counter counter : prefixCounters.values()) counter.reset();
+        revalidateCount.set(0);
+        writeCount.set(0);
+        writeAbortCount.set(0);
+        evictionCount.set(0);
+        bytesServed.set(0);
+        writeDropCount.set(0); //The queue gauges reflect in-flight writes, they are not reset
+        for (int i = 0; i < readLatency.length(); i++) {
+            readLatency.set(i, 0);
+            writeLatency.set(i, 0);
+        }
+    }
+
+    @Nullable
+    private Counter prefixCounter(@Nullable String key) {
+        Map<String, Counter> counters = prefixCounters;
+        if (key == null || counters.isEmpty()) return null;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (key.startsWith(entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+
+    private static int bucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        for (int i = 0; i < LATENCY_BOUNDS_MICROS.length; i++) {
+            if (micros <= LATENCY_BOUNDS_MICROS[i]) return i;
+        }
+        return LATENCY_BOUNDS_MICROS.length;
+    }
+
+    private static CacheStats.Latency latency(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return new CacheStats.Latency(LATENCY_BOUNDS_MICROS.clone(), counts);
+    }
+
+    private static final class Counter {
+        final AtomicLong hit = new AtomicLong();
+        final AtomicLong miss = new AtomicLong();
+
+        CacheStats.Counts counts() {
+            return new CacheStats.Counts(hit.get(), miss.get());
+        }
+
+        void reset() {
+            hit.set(0);
+            miss.set(0);
+        }
+    }
+}
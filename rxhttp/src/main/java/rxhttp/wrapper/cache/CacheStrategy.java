@@ -1,5 +1,9 @@
 package rxhttp.wrapper.cache;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * 缓存策略
  * User: ljx
@@ -8,14 +12,27 @@ package rxhttp.wrapper.cache;
  */
 public class CacheStrategy {
 
+    /**
+     * 默认的staleTime，缓存过期后1天内仍可返回，见{@link #setCacheStaleTime(long)}
+     */
+    public static final long DEFAULT_CACHE_STALE_TIME = 24 * 60 * 60 * 1000L;
+
     private String cacheKey; //缓存读写时的key
     private long cacheValidTime = Long.MAX_VALUE; //缓存有效时间  默认Long.MAX_VALUE，代表永久有效
+    private long cacheStaleTime = DEFAULT_CACHE_STALE_TIME; //缓存过期后仍可返回的时间窗口，仅STALE_WHILE_REVALIDATE模式有效
     private CacheMode cacheMode; //缓存模式
+    private long negativeCacheTime; //404/410/5xx及解析失败的结果在本地保留的时间，0代表不保留
+    private Set<String> cacheTags = Collections.emptySet(); //缓存所属的分组，可按分组批量删除
 
     public CacheStrategy(CacheStrategy cacheStrategy) {
         this.cacheKey = cacheStrategy.cacheKey;
         this.cacheMode = cacheStrategy.cacheMode;
+        this.negativeCacheTime = cacheStrategy.negativeCacheTime;
+        if (!cacheStrategy.cacheTags.isEmpty()) {
+            this.cacheTags = new LinkedHashSet<>(cacheStrategy.cacheTags);
+        }
         setCacheValidTime(cacheStrategy.cacheValidTime);
+        setCacheStaleTime(cacheStrategy.cacheStaleTime);
     }
 
     public CacheStrategy(CacheMode cacheMode) {
@@ -46,6 +63,52 @@ public class CacheStrategy {
         this.cacheValidTime = validTime;
     }
 
+    public long getCacheStaleTime() {
+        return cacheStaleTime;
+    }
+
+    /**
+     * @param staleTime Time in milliseconds after {@link #getCacheValidTime()} during which an expired
+     *                  cache is still returned while it is refreshed in the background, 1 day by default,
+     *                  see {@link #DEFAULT_CACHE_STALE_TIME}; Long.MAX_VALUE returns a cache of any age
+     */
+    public void setCacheStaleTime(long staleTime) {
+        if (staleTime < 0) {
+            throw new IllegalArgumentException("staleTime >= 0 required but it was " + staleTime);
+        }
+        this.cacheStaleTime = staleTime;
+    }
+
+    public long getNegativeCacheTime() {
+        return negativeCacheTime;
+    }
+
+    /**
+     * @param negativeCacheTime Time in milliseconds during which a 404, 410 or 5xx response, or a
+     *                          ParseException, is replayed locally for the same cache key instead of
+     *                          requesting again, see {@link NegativeCache}. 0 disables it, in any cache mode
+     */
+    public void setNegativeCacheTime(long negativeCacheTime) {
+        if (negativeCacheTime < 0) {
+            throw new IllegalArgumentException("negativeCacheTime >= 0 required but it was " + negativeCacheTime);
+        }
+        this.negativeCacheTime = negativeCacheTime;
+    }
+
+    public Set<String> getCacheTags() {
+        return cacheTags;
+    }
+
+    /**
+     * Tag the cache written with this strategy, all caches of a tag can be removed with
+     * {@link InternalCache#removeTag(String)}, e.g. every page of a list after it is modified
+     */
+    public void addCacheTag(String tag) {
+        if (tag == null) throw new NullPointerException("tag == null");
+        if (cacheTags.isEmpty()) cacheTags = new LinkedHashSet<>();
+        cacheTags.add(tag);
+    }
+
     public CacheMode getCacheMode() {
         return cacheMode;
     }
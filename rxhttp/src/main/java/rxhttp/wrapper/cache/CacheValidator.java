@@ -0,0 +1,105 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Conditional revalidation of an expired cache with its ETag / Last-Modified validators
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 15:32
+ */
+public class CacheValidator {
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /**
+     * @return the request with If-None-Match / If-Modified-Since headers built from the cache,
+     * or null if the cache has no validator or the request is already conditional
+     */
+    @Nullable
+    public static Request conditionalRequest(@NotNull Request request, @NotNull Response cacheResponse) {
+        if (request.header("If-None-Match") != null || request.header("If-Modified-Since") != null) {
+            return null;
+        }
+        String etag = cacheResponse.header("ETag");
+        String lastModified = cacheResponse.header("Last-Modified");
+        if (etag == null && lastModified == null) return null;
+        Request.Builder builder = request.newBuilder();
+        if (etag != null) builder.header("If-None-Match", etag);
+        if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+        return builder.build();
+    }
+
+    public static boolean isNotModified(@NotNull Response networkResponse) {
+        return networkResponse.code() == HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Merge the 304 response into the cache: the cached body with refreshed headers and received time
+     */
+    @NotNull
+    public static Response combine(@NotNull Response cacheResponse, @NotNull Response networkResponse) {
+        return cacheResponse.newBuilder()
+            .headers(combine(cacheResponse.headers(), networkResponse.headers()))
+            .sentRequestAtMillis(networkResponse.sentRequestAtMillis())
+            .receivedResponseAtMillis(networkResponse.receivedResponseAtMillis())
+            .networkResponse(networkResponse.networkResponse())
+            .build();
+    }
+
+    /**
+     * Combines cached headers with a network headers as defined by RFC 7234, 4.3.4.
+     */
+    private static Headers combine(Headers cachedHeaders, Headers networkHeaders) {
+        Headers.Builder result = new Headers.Builder();
+        for (int i = 0, size = cachedHeaders.size(); i < size; i++) {
+            String fieldName = cachedHeaders.name(i);
+            String value = cachedHeaders.value(i);
+            if ("Warning".equalsIgnoreCase(fieldName) && value.startsWith("1")) {
+                continue; // Drop 100-level freshness warnings.
+            }
+            if (isContentSpecificHeader(fieldName)
+                || !isEndToEnd(fieldName)
+                || networkHeaders.get(fieldName) == null) {
+                result.addUnsafeNonAscii(fieldName, value);
+            }
+        }
+        for (int i = 0, size = networkHeaders.size(); i < size; i++) {
+            String fieldName = networkHeaders.name(i);
+            if (!isContentSpecificHeader(fieldName) && isEndToEnd(fieldName)) {
+                result.addUnsafeNonAscii(fieldName, networkHeaders.value(i));
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Returns true if {@code fieldName} is an end-to-end HTTP header, as defined by RFC 2616, 13.5.1.
+     */
+    private static boolean isEndToEnd(String fieldName) {
+        return !"Connection".equalsIgnoreCase(fieldName)
+            && !"Keep-Alive".equalsIgnoreCase(fieldName)
+            && !"Proxy-Authenticate".equalsIgnoreCase(fieldName)
+            && !"Proxy-Authorization".equalsIgnoreCase(fieldName)
+            && !"TE".equalsIgnoreCase(fieldName)
+            && !"Trailers".equalsIgnoreCase(fieldName)
+            && !"Transfer-Encoding".equalsIgnoreCase(fieldName)
+            && !"Upgrade".equalsIgnoreCase(fieldName);
+    }
+
+    /**
+     * Returns true if {@code fieldName} is content specific and therefore should always be used from
+     * cached headers.
+     */
+    private static boolean isContentSpecificHeader(String fieldName) {
+        return "Content-Length".equalsIgnoreCase(fieldName)
+            || "Content-Encoding".equalsIgnoreCase(fieldName)
+            || "Content-Type".equalsIgnoreCase(fieldName);
+    }
+}
@@ -3,6 +3,9 @@ package rxhttp.wrapper.cache;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 import okhttp3.Request;
 import okhttp3.Response;
@@ -16,9 +19,45 @@ public interface InternalCache {
 
     Response put(Response response, String key) throws IOException;
 
+    /**
+     * Update the metadata of a revalidated cache, such as headers and received time, keep the body.
+     * By default nothing is stored, the cache stays expired and is revalidated again next time
+     */
+    default Response update(Response response, String key) throws IOException {
+        return response;
+    }
+
+    /**
+     * A hint from memory, without disk I/O, that the cache is not worth reading
+     *
+     * @param minReceivedMillis caches received before it are expired
+     * @param revalidate        whether an expired cache with ETag / Last-Modified is still of use
+     * @return true if the cache is known to be expired and can't be revalidated, false if it is
+     * fresh, absent or unknown
+     */
+    default boolean isExpired(Request request, String key, long minReceivedMillis, boolean revalidate) {
+        return false;
+    }
+
     void remove(String key) throws IOException;
 
     void removeAll() throws IOException;
 
+    /**
+     * Add the cache to groups that can be removed together, see {@link #removeTag(String)}.
+     * Ignored by default, the cache then has no groups
+     */
+    default void tag(String key, Collection<String> tags) throws IOException {
+    }
+
+    /**
+     * Remove every cache tagged with {@code tag}, the rest of the cache is kept
+     *
+     * @return keys of the group, by default an empty set, as {@link #tag} ignores the groups
+     */
+    default Set<String> removeTag(String tag) throws IOException {
+        return Collections.emptySet();
+    }
+
     long size() throws IOException;
 }
@@ -0,0 +1,277 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Handshake;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * In-memory L1 cache in front of another {@link InternalCache}, usually {@link CacheManager#internalCache}.
+ * <p>
+ * Entries are kept as immutable {@link ByteString} bodies plus parsed headers, and evicted with a
+ * segmented LRU policy within a byte budget: new entries land in the probation segment, and are
+ * promoted to the protected segment on the second hit, so a burst of one-off responses can't flush
+ * the hot ones. Writes go through to the delegate cache.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 10:12
+ */
+public class MemoryCache implements InternalCache {
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final InternalCache delegate;
+    private final @Nullable CacheStatsRecorder statsRecorder;
+    private final long maxSize;
+    private final long protectedMaxSize;
+
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protect = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationSize;
+    private long protectedSize;
+
+    /**
+     * @param delegate the cache to read from on a miss and to write through to
+     * @param maxSize  memory budget in bytes, bodies plus headers
+     */
+    public MemoryCache(@NotNull InternalCache delegate, long maxSize) {
+        this(delegate, maxSize, null);
+    }
+
+    /**
+     * @param statsRecorder records evictions, usually {@link CacheManager#statsRecorder}
+     */
+    public MemoryCache(@NotNull InternalCache delegate, long maxSize, @Nullable CacheStatsRecorder statsRecorder) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize > 0 required but it was " + maxSize);
+        }
+        this.delegate = delegate;
+        this.statsRecorder = statsRecorder;
+        this.maxSize = maxSize;
+        this.protectedMaxSize = maxSize * PROTECTED_PERCENT / 100;
+    }
+
+    @Nullable
+    @Override
+    public Response get(Request request, String key) throws IOException {
+        String memoryKey = key != null ? key : request.url().toString();
+        Entry entry = getEntry(memoryKey);
+        if (entry != null) {
+            return entry.response(request);
+        }
+        Response response = delegate.get(request, key);
+        return response != null ? capturing(response, memoryKey) : null;
+    }
+
+    @Override
+    public Response put(Response response, String key) throws IOException {
+        String memoryKey = key != null ? key : response.request().url().toString();
+        remove0(memoryKey);
+        return capturing(delegate.put(response, key), memoryKey);
+    }
+
+    @Override
+    public Response update(Response response, String key) throws IOException {
+        String memoryKey = key != null ? key : response.request().url().toString();
+        remove0(memoryKey);
+        return capturing(delegate.update(response, key), memoryKey);
+    }
+
+    @Override
+    public boolean isExpired(Request request, String key, long minReceivedMillis, boolean revalidate) {
+        return delegate.isExpired(request, key, minReceivedMillis, revalidate);
+    }
+
+    @Override
+    public void remove(String key) throws IOException {
+        remove0(key);
+        delegate.remove(key);
+    }
+
+    @Override
+    public void removeAll() throws IOException {
+        evictAll();
+        delegate.removeAll();
+    }
+
+    @Override
+    public void tag(String key, Collection<String> tags) throws IOException {
+        delegate.tag(key, tags);
+    }
+
+    @Override
+    public Set<String> removeTag(String tag) throws IOException {
+        Set<String> keys = delegate.removeTag(tag);
+        for (String key : keys) {
+            remove0(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    /**
+     * @return bytes currently held in memory
+     */
+    public synchronized long memorySize() {
+        return probationSize + protectedSize;
+    }
+
+    public long maxMemorySize() {
+        return maxSize;
+    }
+
+    public synchronized void evictAll() {
+        probation.clear();
+        protect.clear();
+        probationSize = 0;
+        protectedSize = 0;
+    }
+
+    private synchronized Entry getEntry(String key) {
+        Entry entry = protect.get(key);
+        if (entry != null) return entry;
+        entry = probation.remove(key);
+        if (entry == null) return null;
+        //Second hit, promote to the protected segment
+        probationSize -= entry.weight;
+        protect.put(key, entry);
+        protectedSize += entry.weight;
+        trimProtected();
+        return entry;
+    }
+
+    private synchronized void putEntry(String key, Entry entry) {
+        remove0(key);
+        if (entry.weight > maxSize - protectedMaxSize) return; //Too large to ever fit in probation
+        probation.put(key, entry);
+        probationSize += entry.weight;
+        trimProbation();
+    }
+
+    private synchronized void remove0(String key) {
+        Entry entry = probation.remove(key);
+        if (entry != null) probationSize -= entry.weight;
+        entry = protect.remove(key);
+        if (entry != null) protectedSize -= entry.weight;
+    }
+
+    //Demote the least recently used protected entries back to probation
+    private void trimProtected() {
+        Iterator<Map.Entry<String, Entry>> iterator = protect.entrySet().iterator();
+        while (protectedSize > protectedMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            protectedSize -= eldest.getValue().weight;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationSize += eldest.getValue().weight;
+        }
+        trimProbation();
+    }
+
+    private void trimProbation() {
+        Iterator<Entry> iterator = probation.values().iterator();
+        while (probationSize + protectedSize > maxSize && iterator.hasNext()) {
+            probationSize -= iterator.next().weight;
+            iterator.remove();
+            if (statsRecorder != null) statsRecorder.recordEviction();
+        }
+    }
+
+    //Copy the body into memory as the caller reads it, the entry is stored once the body is exhausted
+    private Response capturing(Response response, final String key) {
+        final ResponseBody body = response.body();
+        if (body == null) return response;
+        final Response template = response;
+        final long limit = maxSize - protectedMaxSize;
+        final BufferedSource source = body.source();
+        Source capturingSource = new ForwardingSource(source) {
+            final Buffer buffer = new Buffer();
+            boolean done;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long bytesRead = super.read(sink, byteCount);
+                if (done) return bytesRead;
+                if (bytesRead == -1) {
+                    done = true;
+                    putEntry(key, new Entry(template, buffer.readByteString()));
+                } else if (buffer.size() + bytesRead > limit) {
+                    done = true;
+                    buffer.clear();
+                } else {
+                    sink.copyTo(buffer, sink.size() - bytesRead, bytesRead);
+                }
+                return bytesRead;
+            }
+        };
+        return response.newBuilder()
+            .body(OkHttpCompat.create(body.contentType(), body.contentLength(), Okio.buffer(capturingSource)))
+            .build();
+    }
+
+    private static final class Entry {
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Headers headers;
+        private final @Nullable Handshake handshake;
+        private final long sentRequestMillis;
+        private final long receivedResponseMillis;
+        private final @Nullable MediaType contentType;
+        private final ByteString body;
+        private final long weight;
+
+        Entry(Response response, ByteString body) {
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            this.headers = response.headers();
+            this.handshake = response.handshake();
+            this.sentRequestMillis = response.sentRequestAtMillis();
+            this.receivedResponseMillis = response.receivedResponseAtMillis();
+            this.contentType = response.body().contentType();
+            this.body = body;
+            this.weight = body.size() + headers.byteCount();
+        }
+
+        Response response(Request request) {
+            Buffer buffer = new Buffer().write(body);
+            return new Response.Builder()
+                .request(request)
+                .protocol(protocol)
+                .code(code)
+                .message(message)
+                .headers(headers)
+                .body(OkHttpCompat.create(contentType, body.size(), buffer))
+                .handshake(handshake)
+                .sentRequestAtMillis(sentRequestMillis)
+                .receivedResponseAtMillis(receivedResponseMillis)
+                .build();
+        }
+    }
+}
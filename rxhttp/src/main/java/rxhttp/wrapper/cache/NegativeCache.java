@@ -0,0 +1,194 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.exception.ParseException;
+import rxhttp.wrapper.parse.Parser;
+
+/**
+ * Short-lived in-memory record of failed results per cache key: 404, 410 and 5xx responses, and
+ * {@link ParseException} thrown while parsing. Within {@link CacheStrategy#getNegativeCacheTime()}
+ * the same request fails locally, with the same response or exception, instead of reaching the
+ * server again.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 22:50
+ */
+public final class NegativeCache {
+
+    private static final int MAX_ENTRIES = 512;
+    private static final long MAX_BODY_SIZE = 8 * 1024;
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private NegativeCache() {
+    }
+
+    public static boolean isNegative(Response response) {
+        int code = response.code();
+        return code == 404 || code == 410 || (code >= 500 && code < 600);
+    }
+
+    /**
+     * @return the remembered error response, or null if there is none or it has expired
+     * @throws ParseException the remembered parse failure
+     */
+    @Nullable
+    public static Response get(Request request, String key) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        Response response = entry.response(request);
+        if (entry.errorCode != null) {
+            throw new ParseException(entry.errorCode, entry.errorMessage, response);
+        }
+        return response;
+    }
+
+    /**
+     * Remember the response if it is negative, see {@link #isNegative(Response)}, or mark it so
+     * that a ParseException thrown by {@link #parse(Parser, Response)} is remembered.
+     * Error bodies larger than 8 KiB are not remembered.
+     *
+     * @param timeMillis how long the failure is remembered
+     * @return the response to return to the caller
+     */
+    public static Response put(Response response, String key, long timeMillis) throws IOException {
+        if (!isNegative(response)) {
+            entries.remove(key);
+            Request request = response.request().newBuilder()
+                .tag(Token.class, new Token(key, timeMillis))
+                .build();
+            return response.newBuilder().request(request).build();
+        }
+        ResponseBody body = response.body();
+        ByteString bytes = ByteString.EMPTY;
+        MediaType contentType = null;
+        if (body != null) {
+            //Peek without consuming, the caller still reads the body
+            BufferedSource source = body.source();
+            if (source.request(MAX_BODY_SIZE + 1)) return response;
+            bytes = source.getBuffer().snapshot();
+            contentType = body.contentType();
+        }
+        store(key, new Entry(response, contentType, bytes, null, null, timeMillis));
+        return response;
+    }
+
+    /**
+     * {@link Parser#onParse(Response)}, remembering the ParseException it throws when the
+     * response was marked by {@link #put(Response, String, long)}
+     */
+    public static <T> T parse(Parser<T> parser, Response response) throws IOException {
+        try {
+            return parser.onParse(response);
+        } catch (ParseException e) {
+            Token token = response.request().tag(Token.class);
+            if (token != null) {
+                store(token.key, new Entry(response, null, ByteString.EMPTY,
+                    e.getErrorCode(), e.getMessage(), token.timeMillis));
+            }
+            throw e;
+        }
+    }
+
+    public static void remove(String key) {
+        entries.remove(key);
+    }
+
+    public static void clear() {
+        entries.clear();
+    }
+
+    private static void store(String key, Entry entry) {
+        if (entries.size() >= MAX_ENTRIES) {
+            long now = System.currentTimeMillis();
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().isExpired(now)) iterator.remove();
+            }
+            //Still full, make room for the latest failure
+            Iterator<String> keys = entries.keySet().iterator();
+            while (entries.size() >= MAX_ENTRIES && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        entries.put(key, entry);
+    }
+
+    //Marks a network response whose parse failure should be remembered
+    private static final class Token {
+        final String key;
+        final long timeMillis;
+
+        Token(String key, long timeMillis) {
+            this.key = key;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    private static final class Entry {
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Headers headers;
+        private final @Nullable MediaType contentType;
+        private final ByteString body;
+        private final @Nullable String errorCode;
+        private final @Nullable String errorMessage;
+        private final long expiresAtMillis;
+
+        Entry(Response response, @Nullable MediaType contentType, ByteString body,
+              @Nullable String errorCode, @Nullable String errorMessage, long timeMillis) {
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            this.headers = response.headers();
+            this.contentType = contentType;
+            this.body = body;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+            long now = System.currentTimeMillis();
+            this.expiresAtMillis = timeMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeMillis;
+        }
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        @NotNull
+        Response response(Request request) {
+            long now = System.currentTimeMillis();
+            return new Response.Builder()
+                .request(request)
+                .protocol(protocol)
+                .code(code)
+                .message(message)
+                .headers(headers)
+                .body(OkHttpCompat.create(contentType, body.size(), new Buffer().write(body)))
+                .sentRequestAtMillis(now)
+                .receivedResponseAtMillis(now)
+                .build();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import rxhttp.wrapper.callback.Function;
+import rxhttp.wrapper.callback.IConverter;
+
+/**
+ * Objects parsed from cache responses, keyed by (cacheKey, Type, converter, decoder), so that a cache
+ * hit doesn't pay the deserialization again as long as the cached entry hasn't changed, that is, has
+ * the same received time. Converter and decoder are compared by identity, the same bytes read by
+ * another converter, or decoded differently, are parsed again. The same instance is returned to every
+ * caller, treat it as immutable.
+ * <p>
+ * At most {@code maxEntries} objects are kept in LRU order, and they are softly referenced,
+ * so the GC can still reclaim them under memory pressure.
+ */
+public class ParsedCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    public ParsedCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries > 0 required but it was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > ParsedCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param converter the converter that parses the body
+     * @param decoder   the result decoder applied before the converter, null if the body isn't decoded
+     * @return the object parsed from the entry {@code cacheHit} identifies, or null
+     */
+    @Nullable
+    public synchronized Object get(CacheHit cacheHit, Type type, IConverter converter,
+                                   @Nullable Function<String, String> decoder) {
+        Key key = new Key(cacheHit.cacheKey, type, converter, decoder);
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        Object value = entry.value.get();
+        if (value == null || entry.receivedResponseMillis != cacheHit.receivedResponseMillis) {
+            entries.remove(key); //Reclaimed, or the cached entry has been rewritten
+            return null;
+        }
+        return value;
+    }
+
+    public synchronized void put(CacheHit cacheHit, Type type, IConverter converter,
+                                 @Nullable Function<String, String> decoder, @Nullable Object value) {
+        if (value == null) return;
+        Key key = new Key(cacheHit.cacheKey, type, converter, decoder);
+        entries.put(key, new Entry(cacheHit.receivedResponseMillis, value));
+    }
+
+    public synchronized void evictAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Key {
+        private final String cacheKey;
+        private final Type type;
+        private final IConverter converter;
+        private final @Nullable Function<String, String> decoder;
+
+        Key(String cacheKey, Type type, IConverter converter, @Nullable Function<String, String> decoder) {
+            this.cacheKey = cacheKey;
+            this.type = type;
+            this.converter = converter;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return cacheKey.equals(key.cacheKey) && type.equals(key.type)
+                && converter == key.converter && decoder == key.decoder;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * cacheKey.hashCode() + type.hashCode();
+            result = 31 * result + System.identityHashCode(converter);
+            return 31 * result + System.identityHashCode(decoder);
+        }
+    }
+
+    private static final class Entry {
+        private final long receivedResponseMillis;
+        private final SoftReference<Object> value;
+
+        Entry(long receivedResponseMillis, Object value) {
+            this.receivedResponseMillis = receivedResponseMillis;
+            this.value = new SoftReference<>(value);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package rxhttp.wrapper.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Persistent index from cache tags to the cache keys tagged with them, so that a group of entries
+ * can be removed without clearing the whole cache.
+ * <p>
+ * The index lives in memory and is backed by an append-only journal: {@code + tag key} adds a key
+ * to a group, {@code - tag key} removes a key from a group, {@code - tag} removes a group. Tags and keys are base64url encoded. Changes are queued
+ * and written by a background thread once per {@link #FLUSH_DELAY_MILLIS}, like the cookie journal,
+ * so tagging a response never waits for the disk. The journal is rewritten once most of its lines
+ * are redundant. Changes queued less than {@link #FLUSH_DELAY_MILLIS} before the process dies are
+ * lost, those entries are then not removed with their group. The journal is rewritten to a
+ * temporary file, and the old journal is kept as a backup until the new one has replaced it, like
+ * the cookie journal, so a crash during a rewrite never loses the index.
+ * <p>
+ * The journal lives in a subdirectory of the cache directory, see {@link #DIRECTORY_NAME}, so it is
+ * deleted with the cache, and the DiskLruCache journal next to it is left alone.
+ * <p>
+ * Entries removed from the cache, one by one or by the sweeper, leave their groups with
+ * {@link #removeKey(String)}. Entries evicted by the LRU policy of the DiskLruCache can't be told
+ * apart from entries still being written, they stay indexed until their group is removed, removing
+ * them again is a no-op.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 22:10
+ */
+final class TagIndex {
+
+    static final String DIRECTORY_NAME = "rxhttp-tags";
+    private static final String FILE_NAME = "tags.journal";
+    private static final String MAGIC = "rxhttp.TagIndex";
+    private static final String VERSION = "1";
+    private static final long FLUSH_DELAY_MILLIS = 200;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final int MIN_REDUNDANT_OPS = 2000;
+
+    private final File file;
+    private final File tmpFile;
+    private final File backupFile;
+    private final @Nullable File legacyFile;
+
+    //Guarded by this
+    private final Map<String, Set<String>> groups = new HashMap<>();
+    //md5 of the key, as DiskLruCache names the entry -> the key and its tags
+    private final Map<String, Tagged> tagged = new HashMap<>();
+    private boolean loaded;
+    private int keyCount;
+    private int redundantOps;
+    private Buffer pending = new Buffer();
+    private boolean scheduled;
+    private boolean rebuildRequired;
+    private @Nullable ScheduledExecutorService executor;
+
+    //Only touched by the writer thread
+    private @Nullable BufferedSink journal;
+
+    /**
+     * @param directory  the cache directory, the journal is kept in its {@link #DIRECTORY_NAME} subdirectory
+     * @param legacyFile where earlier versions kept the journal, moved into the subdirectory
+     */
+    TagIndex(File directory, @Nullable File legacyFile) {
+        File indexDirectory = new File(directory, DIRECTORY_NAME);
+        this.file = new File(indexDirectory, FILE_NAME);
+        this.tmpFile = new File(indexDirectory, FILE_NAME + ".tmp");
+        this.backupFile = new File(indexDirectory, FILE_NAME + ".bkp");
+        this.legacyFile = legacyFile;
+    }
+
+    synchronized void add(String key, Collection<String> tags) throws IOException {
+        load();
+        boolean added = false;
+        for (String tag : tags) {
+            if (!addKey(tag, key)) continue;
+            added = true;
+            pending.writeUtf8("+ ").writeUtf8(encode(tag))
+                .writeByte(' ').writeUtf8(encode(key)).writeByte('\n');
+        }
+        if (added) schedule();
+    }
+
+    /**
+     * Remove the entry from every group it is in, once it is removed from the cache
+     *
+     * @param md5Key the md5 of the cache key, as DiskLruCache names the entry
+     */
+    synchronized void removeKey(String md5Key) throws IOException {
+        load();
+        Tagged entry = tagged.get(md5Key);
+        if (entry == null) return;
+        for (String tag : new ArrayList<>(entry.tags)) {
+            removeKey(tag, entry.key);
+            redundantOps += 2; //The line that added it, and this one
+            pending.writeUtf8("- ").writeUtf8(encode(tag))
+                .writeByte(' ').writeUtf8(encode(entry.key)).writeByte('\n');
+        }
+        compactIfRedundant();
+        schedule();
+    }
+
+    /**
+     * @return keys of the group, empty if there is no such group
+     */
+    synchronized Set<String> remove(String tag) throws IOException {
+        load();
+        Set<String> keys = removeGroup(tag);
+        if (keys == null) return Collections.emptySet();
+        redundantOps += keys.size() + 1;
+        pending.writeUtf8("- ").writeUtf8(encode(tag)).writeByte('\n');
+        compactIfRedundant();
+        schedule();
+        return keys;
+    }
+
+    /**
+     * @return a copy of the groups, tag -> keys
+     */
+    synchronized Map<String, Set<String>> groups() throws IOException {
+        load();
+        return copyGroups();
+    }
+
+    synchronized void clear() {
+        groups.clear();
+        tagged.clear();
+        keyCount = 0;
+        redundantOps = 0;
+        loaded = true;
+        pending.clear();
+        rebuildRequired = true; //The journal is rewritten empty
+        schedule();
+    }
+
+    /**
+     * Writes the queued changes and stops the writer thread
+     */
+    void close() throws IOException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor == null) return;
+        final IOException[] failure = new IOException[1];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write();
+                } catch (IOException e) {
+                    failure[0] = e;
+                } finally {
+                    closeJournal();
+                }
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the tag index");
+        }
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /**
+     * Stops the writer thread and deletes the journal, with the cache
+     */
+    void delete() throws IOException {
+        synchronized (this) {
+            groups.clear();
+            tagged.clear();
+            keyCount = 0;
+            redundantOps = 0;
+            loaded = true;
+            pending.clear();
+            rebuildRequired = false;
+        }
+        close();
+        deleteIfExists(file);
+        deleteIfExists(backupFile);
+        deleteIfExists(tmpFile);
+        File parent = file.getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        if (parent != null) parent.delete();
+    }
+
+    //Guarded by this
+    private void load() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        recover();
+        if (legacyFile != null && legacyFile.exists()) {
+            //Moved into the subdirectory, a journal at the new location wins
+            File parent = file.getParentFile();
+            if (parent != null) parent.mkdirs();
+            if (file.exists() || !legacyFile.renameTo(file)) deleteIfExists(legacyFile);
+        }
+        if (!file.exists()) return;
+        boolean corrupt = false;
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            if (!MAGIC.equals(source.readUtf8Line()) || !VERSION.equals(source.readUtf8Line())) {
+                corrupt = true;
+            } else {
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    if (!readLine(line)) {
+                        corrupt = true; //e.g. a line truncated by a crash, keep what was read before it
+                        break;
+                    }
+                }
+            }
+        } catch (FileNotFoundException ignored) {
+            return;
+        }
+        if (corrupt) {
+            rebuildRequired = true;
+            redundantOps = 0;
+            schedule();
+        }
+    }
+    //Finishes or rolls back a rewrite interrupted by a crash
+    private void recover() {
+        if (backupFile.exists()) {
+            if (file.exists()) {
+                //The new journal is complete, only the backup wasn't deleted yet
+                deleteIfExists(backupFile);
+            } else if (!backupFile.renameTo(file)) {
+                deleteIfExists(backupFile);
+            }
+        }
+        //A rewrite that didn't complete, the journal or its backup has the index
+        deleteIfExists(tmpFile);
+    }
+
+    private boolean readLine(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length == 3 && parts[0].equals("+")) {
+            String tag = decode(parts[1]);
+            String key = decode(parts[2]);
+            if (tag == null || key == null) return false;
+            if (!addKey(tag, key)) redundantOps++;
+            return true;
+        } else if (parts.length == 3 && parts[0].equals("-")) {
+            String tag = decode(parts[1]);
+            String key = decode(parts[2]);
+            if (tag == null || key == null) return false;
+            removeKey(tag, key);
+            redundantOps += 2;
+            return true;
+        } else if (parts.length == 2 && parts[0].equals("-")) {
+            String tag = decode(parts[1]);
+            if (tag == null) return false;
+            Set<String> keys = removeGroup(tag);
+            if (keys != null) redundantOps += keys.size();
+            redundantOps++;
+            return true;
+        }
+        return false;
+    }
+
+    //Guarded by this, returns false if the key is in the group already
+    private boolean addKey(String tag, String key) {
+        Set<String> keys = groups.get(tag);
+        if (keys == null) {
+            keys = new LinkedHashSet<>();
+            groups.put(tag, keys);
+        }
+        if (!keys.add(key)) return false;
+        keyCount++;
+        String md5Key = CacheManager.md5(key);
+        Tagged entry = tagged.get(md5Key);
+        if (entry == null) tagged.put(md5Key, entry = new Tagged(key));
+        entry.tags.add(tag);
+        return true;
+    }
+
+    //Guarded by this
+    private void removeKey(String tag, String key) {
+        Set<String> keys = groups.get(tag);
+        if (keys == null || !keys.remove(key)) return;
+        keyCount--;
+        if (keys.isEmpty()) groups.remove(tag);
+        untag(key, tag);
+    }
+
+    //Guarded by this, returns the keys of the group, null if there is no such group
+    @Nullable
+    private Set<String> removeGroup(String tag) {
+        Set<String> keys = groups.remove(tag);
+        if (keys == null) return null;
+        keyCount -= keys.size();
+        for (String key : keys) {
+            untag(key, tag);
+        }
+        return keys;
+    }
+
+    //Guarded by this
+    private void untag(String key, String tag) {
+        String md5Key = CacheManager.md5(key);
+        Tagged entry = tagged.get(md5Key);
+        if (entry != null && entry.tags.remove(tag) && entry.tags.isEmpty()) tagged.remove(md5Key);
+    }
+
+    //Guarded by this, rewrites the journal once most of its lines are redundant
+    private void compactIfRedundant() {
+        if (redundantOps >= MIN_REDUNDANT_OPS && redundantOps >= keyCount) {
+            rebuildRequired = true;
+            redundantOps = 0;
+        }
+    }
+
+    //Guarded by this
+    private Map<String, Set<String>> copyGroups() {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<String, Set<String>> group : groups.entrySet()) {
+            copy.put(group.getKey(), new LinkedHashSet<>(group.getValue()));
+        }
+        return copy;
+    }
+
+    //Guarded by this
+    private void schedule() {
+        schedule(FLUSH_DELAY_MILLIS);
+    }
+
+    //Guarded by this
+    private void schedule(long delayMillis) {
+        if (scheduled) return;
+        scheduled = true;
+        executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Guarded by this
+    private ScheduledExecutorService executor() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null) return executor;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "RxHttp Tag Index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = executor;
+        return executor;
+    }
+
+    //Runs on the writer thread only
+    private void write() throws IOException {
+        Buffer lines;
+        Map<String, Set<String>> snapshot = null;
+        synchronized (this) {
+            lines = pending;
+            pending = new Buffer();
+            if (rebuildRequired) snapshot = copyGroups();
+            rebuildRequired = false;
+            scheduled = false;
+        }
+        try {
+            if (snapshot != null) {
+                //The snapshot already contains the drained lines
+                rebuild(snapshot);
+            } else if (lines.size() > 0) {
+                BufferedSink journal = journal();
+                journal.writeAll(lines);
+                journal.flush();
+            }
+        } catch (IOException e) {
+            closeJournal();
+            synchronized (this) {
+                rebuildRequired = true; //The journal may end with a partial line
+                if (executor != null) schedule(RETRY_DELAY_MILLIS);
+            }
+            throw e;
+        }
+    }
+
+    //Write the groups to a new journal and swap it in
+    private void rebuild(Map<String, Set<String>> groups) throws IOException {
+        closeJournal();
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("failed to create " + parent);
+        }
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmpFile))) {
+            sink.writeUtf8(MAGIC).writeByte('\n').writeUtf8(VERSION).writeByte('\n');
+            for (Map.Entry<String, Set<String>> group : groups.entrySet()) {
+                String tag = encode(group.getKey());
+                for (String key : group.getValue()) {
+                    sink.writeUtf8("+ ").writeUtf8(tag)
+                        .writeByte(' ').writeUtf8(encode(key)).writeByte('\n');
+                }
+            }
+        }
+        //Either the journal or its backup exists at any time, see recover()
+        if (file.exists()) {
+            deleteIfExists(backupFile);
+            rename(file, backupFile);
+        }
+        rename(tmpFile, file);
+        deleteIfExists(backupFile);
+    }
+
+    private BufferedSink journal() throws IOException {
+        BufferedSink journal = this.journal;
+        if (journal != null) return journal;
+        if (!file.exists()) rebuild(Collections.<String, Set<String>>emptyMap());
+        journal = Okio.buffer(Okio.appendingSink(file));
+        this.journal = journal;
+        return journal;
+    }
+
+    private void closeJournal() {
+        BufferedSink journal = this.journal;
+        this.journal = null;
+        try {
+            if (journal != null) journal.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("failed to rename " + from + " to " + to);
+        }
+    }
+
+    private static void deleteIfExists(File file) {
+        //noinspection ResultOfMethodCallIgnored
+        if (file.exists()) file.delete();
+    }
+
+    private static final class Tagged {
+        final String key;
+        final Set<String> tags = new LinkedHashSet<>();
+
+        Tagged(String key) {
+            this.key = key;
+        }
+    }
+
+    private static String encode(String value) {
+        return ByteString.encodeUtf8(value).base64Url();
+    }
+
+    @Nullable
+    private static String decode(String value) {
+        ByteString byteString = ByteString.decodeBase64(value);
+        return byteString != null ? byteString.utf8() : null;
+    }
+}
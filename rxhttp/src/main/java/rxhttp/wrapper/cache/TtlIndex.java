@@ -0,0 +1,126 @@
+package rxhttp.wrapper.cache;
+
+import java.util.Arrays;
+
+/**
+ * Compact in-memory index from the hash of a cache key to the received time of its entry, so that
+ * expired entries can be rejected without opening the snapshot and parsing its metadata.
+ * <p>
+ * It is only a hint: keys that are not indexed are read from disk as usual, and the index is simply
+ * cleared when it outgrows its capacity.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 19:10
+ */
+final class TtlIndex {
+
+    static final long ABSENT = -1;
+
+    private static final int MAX_ENTRIES = 1 << 16;
+    private static final long VALIDATOR_BIT = 1;
+
+    //Open addressing with linear probing, key 0 marks a free slot
+    private long[] keys = new long[64];
+    private long[] values = new long[64];
+    private int size;
+
+    /**
+     * @param md5Key the md5 hex of the cache key, as used by DiskLruCache
+     */
+    static long hash(String md5Key) {
+        long hash = Long.parseLong(md5Key.substring(0, 8), 16) << 32
+            | Long.parseLong(md5Key.substring(8, 16), 16);
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * @param receivedMillis  received time of the cached response
+     * @param hasValidators   whether the response has an ETag or Last-Modified to revalidate with
+     */
+    synchronized void put(long hash, long receivedMillis, boolean hasValidators) {
+        if (size >= MAX_ENTRIES) clear();
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        long value = receivedMillis << 1 | (hasValidators ? VALIDATOR_BIT : 0);
+        int mask = keys.length - 1;
+        for (int i = index(hash, mask); ; i = (i + 1) & mask) {
+            if (keys[i] == hash) {
+                values[i] = value;
+                return;
+            }
+            if (keys[i] == 0) {
+                keys[i] = hash;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the received time, or {@link #ABSENT} if the key is not indexed
+     */
+    synchronized long receivedMillis(long hash) {
+        int slot = slot(hash);
+        return slot < 0 ? ABSENT : values[slot] >>> 1;
+    }
+
+    synchronized boolean hasValidators(long hash) {
+        int slot = slot(hash);
+        return slot >= 0 && (values[slot] & VALIDATOR_BIT) != 0;
+    }
+
+    synchronized void remove(long hash) {
+        int slot = slot(hash);
+        if (slot < 0) return;
+        //Backward shift deletion keeps the probe sequences intact
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int i = (slot + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = index(keys[i], mask);
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                keys[free] = keys[i];
+                values[free] = values[i];
+                free = i;
+            }
+        }
+        keys[free] = 0;
+        size--;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int slot(long hash) {
+        int mask = keys.length - 1;
+        for (int i = index(hash, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == hash) return i;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == 0) continue;
+            int i = index(oldKeys[j], mask);
+            while (keys[i] != 0) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int index(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,141 @@
+package rxhttp.wrapper.cache;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.internal.cache.CacheRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Commits cache bodies on a dedicated writer thread, so that a slow disk doesn't add latency to the
+ * caller reading the network response. Chunks are queued within a byte budget shared by all
+ * in-flight writes; when it is exceeded, the write is dropped instead of blocking the read.
+ * <p>
+ * A single thread keeps the chunks of each entry in order.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 21:05
+ */
+final class WriteBehind {
+
+    private final long maxPendingBytes;
+    private final CacheStatsRecorder statsRecorder;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final ExecutorService executor;
+
+    WriteBehind(long maxPendingBytes, CacheStatsRecorder statsRecorder) {
+        this.maxPendingBytes = maxPendingBytes;
+        this.statsRecorder = statsRecorder;
+        //Keep the thread only while there is something to write
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RxHttp Cache Writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    Job newJob(CacheRequest cacheRequest, BufferedSink cacheBody) {
+        return new Job(cacheRequest, cacheBody);
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    final class Job {
+        private final CacheRequest cacheRequest;
+        private final BufferedSink cacheBody;
+        private boolean failed; //Only accessed on the writer thread
+
+        Job(CacheRequest cacheRequest, BufferedSink cacheBody) {
+            this.cacheRequest = cacheRequest;
+            this.cacheBody = cacheBody;
+        }
+
+        /**
+         * @return false if the budget is exceeded, the caller should stop teeing and {@link #abort()}
+         */
+        boolean write(final Buffer chunk) {
+            final long byteCount = chunk.size();
+            if (pendingBytes.addAndGet(byteCount) > maxPendingBytes) {
+                pendingBytes.addAndGet(-byteCount);
+                statsRecorder.recordWriteBehindDrop();
+                return false;
+            }
+            statsRecorder.recordWriteQueued(byteCount);
+            boolean submitted = submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (failed) return;
+                        cacheBody.write(chunk, byteCount);
+                        cacheBody.emitCompleteSegments();
+                    } catch (IOException e) {
+                        failed = true;
+                        cacheRequest.abort();
+                    } finally {
+                        pendingBytes.addAndGet(-byteCount);
+                        statsRecorder.recordWriteDequeued(byteCount);
+                    }
+                }
+            });
+            if (!submitted) {
+                pendingBytes.addAndGet(-byteCount);
+                statsRecorder.recordWriteDequeued(byteCount);
+            }
+            return submitted;
+        }
+
+        //The body is complete, commit it
+        void close() {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (failed) return;
+                    try {
+                        cacheBody.close();
+                    } catch (IOException e) {
+                        failed = true;
+                        cacheRequest.abort();
+                    }
+                }
+            });
+        }
+
+        void abort() {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (failed) return;
+                    failed = true;
+                    cacheRequest.abort();
+                }
+            });
+        }
+
+        private boolean submit(Runnable runnable) {
+            try {
+                executor.execute(runnable);
+                return true;
+            } catch (RejectedExecutionException e) {
+                //The cache has been closed
+                cacheRequest.abort();
+                return false;
+            }
+        }
+    }
+}
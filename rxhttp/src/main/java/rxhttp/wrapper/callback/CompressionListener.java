@@ -0,0 +1,17 @@
+package rxhttp.wrapper.callback;
+
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Called once a compressed request body has been written, e.g. to record the compression ratio
+ * compressedBytes / rawBytes. Called on the thread sending the request.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 03:10
+ */
+public interface CompressionListener {
+
+    void onCompressed(@Nullable String url, String encoding, long rawBytes, long compressedBytes);
+}
@@ -17,9 +17,9 @@ import kotlin.text.Charsets;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
-import okio.Buffer;
 import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.callback.JsonConverter;
+import rxhttp.wrapper.entity.StreamingRequestBody;
 import rxhttp.wrapper.utils.GsonUtil;
 
 /**
@@ -83,11 +83,12 @@ public class GsonConverter implements JsonConverter {
     public <T> RequestBody convert(T value) throws IOException {
         TypeToken<T> typeToken = (TypeToken<T>) TypeToken.get(value.getClass());
         TypeAdapter<T> adapter = this.gson.getAdapter(typeToken);
-        Buffer buffer = new Buffer();
-        Writer writer = new OutputStreamWriter(buffer.outputStream(), Charsets.UTF_8);
-        JsonWriter jsonWriter = gson.newJsonWriter(writer);
-        adapter.write(jsonWriter, value);
-        jsonWriter.close();
-        return RequestBody.create(contentType, buffer.readByteString());
+        //Serialized while the request is being sent
+        return StreamingRequestBody.create(contentType, sink -> {
+            Writer writer = new OutputStreamWriter(sink.outputStream(), Charsets.UTF_8);
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            adapter.write(jsonWriter, value);
+            jsonWriter.flush();
+        });
     }
 }
@@ -0,0 +1,442 @@
+package rxhttp.wrapper.cookie;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * Append-only journal of cookie changes, the disk store of {@link CookieStore}.
+ * <p>
+ * The journal starts with {@link #MAGIC} and a version byte, followed by binary records: an op byte,
+ * then length-prefixed UTF-8 fields. {@link #PUT} saves a cookie field by field, so it is rebuilt
+ * without parsing a Set-Cookie string, {@link #REMOVE} removes one cookie by its token, and
+ * {@link #REMOVE_DOMAIN} removes a domain. Changes are queued by the caller and written by a
+ * background thread once per {@link #FLUSH_DELAY_MILLIS}, so saving a cookie never waits for the
+ * disk. The journal is rewritten from the live cookies once most of its records are redundant.
+ * <p>
+ * A record truncated by a crash ends the replay, the cookies read before it are kept and the journal
+ * is rewritten. Changes queued less than {@link #FLUSH_DELAY_MILLIS} before the process dies are lost.
+ * The journal is rewritten to a temporary file, and the old journal is kept as a backup until the new
+ * one has replaced it, like DiskLruCache does, so a crash during a rewrite never loses the journal.
+ * Journals of version 1, one base64 encoded {@code Cookie.toString()} per line, are still read and
+ * rewritten in the binary format.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 00:20
+ */
+final class CookieJournal {
+
+    static final String FILE_NAME = "cookies.journal";
+    //A version 1 journal starts with "rxhttp.CookieJournal", never with a NUL byte
+    private static final ByteString MAGIC = ByteString.encodeUtf8("\u0000RXCJ");
+    private static final String TEXT_MAGIC = "rxhttp.CookieJournal";
+    private static final int VERSION = 2;
+    private static final long FLUSH_DELAY_MILLIS = 200;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final int MIN_REDUNDANT_OPS = 2000;
+
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+    private static final int REMOVE_DOMAIN = 3;
+
+    private static final int SECURE = 1;
+    private static final int HTTP_ONLY = 1 << 1;
+    private static final int PERSISTENT = 1 << 2;
+    private static final int HOST_ONLY = 1 << 3;
+
+    private final File file;
+    private final File tmpFile;
+    private final File backupFile;
+    //The live cookies, domain -> (token -> cookie), owned by CookieStore
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Cookie>> cookies;
+
+    //Guarded by this
+    private Buffer pending = new Buffer();
+    private int pendingOps;
+    private boolean scheduled;
+    private boolean rebuildRequired;
+    private @Nullable ScheduledExecutorService executor;
+
+    //Only touched by the writer thread, or by load() before anything is queued
+    private @Nullable BufferedSink journal;
+    private int opCount;
+    private int liveCount;
+
+    CookieJournal(File directory, ConcurrentHashMap<String, ConcurrentHashMap<String, Cookie>> cookies) {
+        this.file = new File(directory, FILE_NAME);
+        this.tmpFile = new File(directory, FILE_NAME + ".tmp");
+        this.backupFile = new File(directory, FILE_NAME + ".bkp");
+        this.cookies = cookies;
+    }
+
+    /**
+     * Replays the whole journal into the live cookies in one pass, expired cookies are dropped
+     */
+    void load() {
+        recover();
+        if (!file.exists()) return;
+        boolean rebuild = false;
+        long now = System.currentTimeMillis();
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            if (source.rangeEquals(0, MAGIC)) {
+                source.skip(MAGIC.size());
+                rebuild = source.readByte() != VERSION || !replayBinary(source, now);
+            } else {
+                replayText(source, now);
+                rebuild = true;
+            }
+        } catch (FileNotFoundException ignored) {
+            return;
+        } catch (IOException e) {
+            e.printStackTrace();
+            rebuild = true;
+        }
+        for (Map<String, Cookie> cookieMap : cookies.values()) {
+            liveCount += cookieMap.size();
+        }
+        if (rebuild) {
+            synchronized (this) {
+                rebuildRequired = true;
+                schedule();
+            }
+        }
+    }
+
+    //Finishes or rolls back a rewrite interrupted by a crash
+    private void recover() {
+        if (backupFile.exists()) {
+            if (file.exists()) {
+                //The new journal is complete, only the backup wasn't deleted yet
+                deleteIfExists(backupFile);
+            } else if (!backupFile.renameTo(file)) {
+                deleteIfExists(backupFile);
+            }
+        }
+        //A rewrite that didn't complete, the journal or its backup has the cookies
+        deleteIfExists(tmpFile);
+    }
+
+    //@return false if the journal ends with a partial or corrupt record
+    private boolean replayBinary(BufferedSource source, long now) throws IOException {
+        try {
+            while (!source.exhausted()) {
+                int op = source.readByte();
+                if (op == PUT) {
+                    Cookie cookie = readCookie(source);
+                    ConcurrentHashMap<String, Cookie> cookieMap = domain(cookie.domain());
+                    if (cookie.expiresAt() > now) {
+                        cookieMap.put(CookieStore.token(cookie), cookie);
+                    } else {
+                        cookieMap.remove(CookieStore.token(cookie));
+                    }
+                } else if (op == REMOVE) {
+                    Map<String, Cookie> cookieMap = cookies.get(readString(source));
+                    String token = readString(source);
+                    if (cookieMap != null) cookieMap.remove(token);
+                } else if (op == REMOVE_DOMAIN) {
+                    cookies.remove(readString(source));
+                } else {
+                    return false;
+                }
+                opCount++;
+            }
+            return true;
+        } catch (EOFException | IllegalArgumentException e) {
+            return false; //e.g. a record truncated by a crash, keep what was read before it
+        }
+    }
+
+    //Version 1: "+ domain cookie", "- domain token", "x domain", fields base64url encoded
+    private void replayText(BufferedSource source, long now) throws IOException {
+        if (!TEXT_MAGIC.equals(source.readUtf8Line()) || !"1".equals(source.readUtf8Line())) return;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            String[] parts = line.split(" ");
+            String domain = parts.length > 1 ? decode(parts[1]) : null;
+            String value = parts.length > 2 ? decode(parts[2]) : null;
+            if (domain == null) return;
+            if (parts[0].equals("+") && value != null) {
+                Cookie cookie;
+                try {
+                    cookie = Cookie.parse(new HttpUrl.Builder().scheme("https").host(domain).build(), value);
+                } catch (IllegalArgumentException e) {
+                    return;
+                }
+                if (cookie == null) return;
+                if (cookie.expiresAt() > now) {
+                    domain(domain).put(CookieStore.token(cookie), cookie);
+                } else {
+                    domain(domain).remove(CookieStore.token(cookie));
+                }
+            } else if (parts[0].equals("-") && value != null) {
+                Map<String, Cookie> cookieMap = cookies.get(domain);
+                if (cookieMap != null) cookieMap.remove(value);
+            } else if (parts[0].equals("x")) {
+                cookies.remove(domain);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private ConcurrentHashMap<String, Cookie> domain(String domain) {
+        ConcurrentHashMap<String, Cookie> cookieMap = cookies.get(domain);
+        if (cookieMap == null) cookies.put(domain, cookieMap = new ConcurrentHashMap<>());
+        return cookieMap;
+    }
+
+    synchronized void put(Cookie cookie) {
+        writeCookie(pending, cookie);
+        enqueued();
+    }
+
+    synchronized void remove(String domain, String token) {
+        pending.writeByte(REMOVE);
+        writeString(pending, domain);
+        writeString(pending, token);
+        enqueued();
+    }
+
+    synchronized void removeDomain(String domain) {
+        pending.writeByte(REMOVE_DOMAIN);
+        writeString(pending, domain);
+        enqueued();
+    }
+
+    //The live cookies have been cleared, the journal is rewritten empty
+    synchronized void clear() {
+        pending.clear();
+        pendingOps = 0;
+        rebuildRequired = true;
+        schedule();
+    }
+
+    /**
+     * Blocks until the changes queued so far are written
+     *
+     * @return false if they couldn't be written, they are retried later
+     */
+    boolean flush() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] written = new boolean[1];
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                written[0] = write();
+                latch.countDown();
+            }
+        });
+        latch.await();
+        return written[0];
+    }
+
+    //Guarded by this
+    private void enqueued() {
+        pendingOps++;
+        schedule();
+    }
+
+    //Guarded by this
+    private void schedule() {
+        schedule(FLUSH_DELAY_MILLIS);
+    }
+
+    //Guarded by this
+    private void schedule(long delayMillis) {
+        if (scheduled) return;
+        scheduled = true;
+        executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null) return executor;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "RxHttp Cookie Journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = executor;
+        return executor;
+    }
+
+    //Runs on the writer thread only, returns false if the write failed
+    private boolean write() {
+        Buffer records;
+        int ops;
+        boolean rebuild;
+        synchronized (this) {
+            records = pending;
+            ops = pendingOps;
+            pending = new Buffer();
+            pendingOps = 0;
+            rebuild = rebuildRequired;
+            rebuildRequired = false;
+            scheduled = false;
+        }
+        try {
+            int redundantOps = opCount + ops - liveCount;
+            if (rebuild || (redundantOps >= MIN_REDUNDANT_OPS && redundantOps >= liveCount)) {
+                //The live cookies already contain the drained changes, changes queued meanwhile
+                //are appended after the swap, replaying them twice is harmless
+                rebuild();
+            } else if (ops > 0) {
+                BufferedSink journal = journal();
+                journal.writeAll(records);
+                journal.flush();
+                opCount += ops;
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeJournal();
+            synchronized (this) {
+                rebuildRequired = true; //The journal may end with a partial record
+                schedule(RETRY_DELAY_MILLIS);
+            }
+            return false;
+        }
+    }
+
+    private void rebuild() throws IOException {
+        closeJournal();
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("failed to create " + parent);
+        }
+        int count = 0;
+        long now = System.currentTimeMillis();
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmpFile))) {
+            sink.write(MAGIC).writeByte(VERSION);
+            for (ConcurrentHashMap<String, Cookie> cookieMap : cookies.values()) {
+                for (Cookie cookie : cookieMap.values()) {
+                    if (cookie.expiresAt() <= now) continue;
+                    writeCookie(sink.getBuffer(), cookie);
+                    sink.emitCompleteSegments();
+                    count++;
+                }
+            }
+        }
+        //Either the journal or its backup exists at any time, see recover()
+        if (file.exists()) {
+            deleteIfExists(backupFile);
+            rename(file, backupFile);
+        }
+        rename(tmpFile, file);
+        deleteIfExists(backupFile);
+        opCount = count;
+        liveCount = count;
+    }
+
+    private BufferedSink journal() throws IOException {
+        BufferedSink journal = this.journal;
+        if (journal != null) return journal;
+        if (!file.exists()) rebuild();
+        journal = Okio.buffer(Okio.appendingSink(file));
+        this.journal = journal;
+        return journal;
+    }
+
+    private void closeJournal() {
+        BufferedSink journal = this.journal;
+        this.journal = null;
+        try {
+            if (journal != null) journal.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("failed to rename " + from + " to " + to);
+        }
+    }
+
+    private static void deleteIfExists(File file) {
+        //noinspection ResultOfMethodCallIgnored
+        if (file.exists()) file.delete();
+    }
+
+    private static void writeCookie(Buffer sink, Cookie cookie) {
+        int flags = (cookie.secure() ? SECURE : 0)
+            | (cookie.httpOnly() ? HTTP_ONLY : 0)
+            | (cookie.persistent() ? PERSISTENT : 0)
+            | (cookie.hostOnly() ? HOST_ONLY : 0);
+        sink.writeByte(PUT);
+        writeString(sink, cookie.domain());
+        writeString(sink, cookie.name());
+        writeString(sink, cookie.value());
+        writeString(sink, cookie.path());
+        sink.writeLong(cookie.expiresAt());
+        sink.writeByte(flags);
+        String sameSite = OkHttpCompat.sameSite(cookie);
+        writeString(sink, sameSite != null ? sameSite : "");
+    }
+
+    private static Cookie readCookie(BufferedSource source) throws IOException {
+        String domain = readString(source);
+        Cookie.Builder builder = new Cookie.Builder()
+            .name(readString(source))
+            .value(readString(source))
+            .path(readString(source));
+        long expiresAt = source.readLong();
+        int flags = source.readByte();
+        String sameSite = readString(source);
+        if ((flags & PERSISTENT) != 0) builder.expiresAt(expiresAt);
+        if ((flags & HOST_ONLY) != 0) {
+            builder.hostOnlyDomain(domain);
+        } else {
+            builder.domain(domain);
+        }
+        if ((flags & SECURE) != 0) builder.secure();
+        if ((flags & HTTP_ONLY) != 0) builder.httpOnly();
+        if (!sameSite.isEmpty()) OkHttpCompat.sameSite(builder, sameSite);
+        return builder.build();
+    }
+
+    private static void writeString(Buffer sink, String value) {
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeInt(bytes.size()).write(bytes);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        int length = source.readInt();
+        if (length < 0) throw new IllegalArgumentException("length < 0: " + length);
+        return source.readUtf8(length);
+    }
+
+    @Nullable
+    private static String decode(String value) {
+        ByteString byteString = ByteString.decodeBase64(value);
+        return byteString != null ? byteString.utf8() : null;
+    }
+}
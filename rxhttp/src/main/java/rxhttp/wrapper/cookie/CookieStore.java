@@ -6,14 +6,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.Cookie;
 import okhttp3.HttpUrl;
 import okhttp3.internal.cache.DiskLruCache;
-import okio.BufferedSink;
 import okio.BufferedSource;
 import okio.ByteString;
 import okio.Okio;
@@ -23,7 +24,9 @@ import rxhttp.wrapper.OkHttpCompat;
 /**
  * Cookie管理类，支持内存、磁盘同时缓存，默认仅开启内存缓存；若要开启磁盘缓存，构造方法传入磁盘缓存目录即可
  * <p>
- * 注：内存、磁盘缓存至少要开启一个，否则构造方法抛出非法参数异常
+ * 注：开启磁盘缓存时，磁盘日志中的cookie会全部加载到内存，无法只使用磁盘缓存
+ * <p>
+ * cookie按domain存储，查找时依次查找host及其父域名，如a.example.com会查找a.example.com、example.com
  * User: ljx
  * Date: 2019-12-29
  * Time: 21:51
@@ -31,11 +34,23 @@ import rxhttp.wrapper.OkHttpCompat;
 public class CookieStore implements ICookieJar {
 
     private static final int appVersion = 1;
+    //Bounds of the match cache, it is cleared when full
+    private static final int MAX_CACHED_HOSTS = 256;
+    private static final int MAX_CACHED_PATHS = 64;
 
     private final File directory;
     private final long maxSize;
-    private DiskLruCache diskCache; //磁盘缓存
-    private Map<String, ConcurrentHashMap<String, Cookie>> memoryCache; //内存缓存
+    private final boolean enabledMemory;
+    //cookie domain -> (token -> cookie)，host-only cookie的domain即为host
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Cookie>> memoryCache = new ConcurrentHashMap<>();
+    //host -> 匹配结果缓存，仅开启内存缓存时有效
+    private final ConcurrentHashMap<String, HostMatches> matchCache = new ConcurrentHashMap<>();
+    //Bumped on every change of the cookies, cached matches of an older generation are recomputed
+    private final AtomicInteger generation = new AtomicInteger();
+    private final @Nullable CookieJournal journal; //磁盘缓存
+    private volatile boolean loaded;
+    //旧版本按host存储的磁盘缓存，domain首次被访问时迁移到journal
+    private @Nullable DiskLruCache legacyCache;
 
     public CookieStore() {
         this(null, Integer.MAX_VALUE, true);
@@ -45,37 +60,74 @@ public class CookieStore implements ICookieJar {
         this(directory, Integer.MAX_VALUE, true);
     }
 
+    /**
+     * @deprecated 开启磁盘缓存时，cookie总会全部加载到内存，enabledMemory仅控制是否缓存匹配结果，
+     * 请使用{@link #CookieStore(File)}
+     */
+    @Deprecated
     public CookieStore(@Nullable File directory, boolean enabledMemory) {
         this(directory, Integer.MAX_VALUE, enabledMemory);
     }
 
     /**
      * 配置cookie 存储策略，注意：内存缓存、磁盘缓存至少要开启一个，否则抛出非法参数异常
+     * <p>
+     * 开启磁盘缓存时，cookie变更先写入内存，再由后台线程批量追加到磁盘日志，保存cookie不会等待磁盘IO；
+     * 日志在首次访问时全部加载到内存
      *
      * @param directory     磁盘缓存目录，传入null，则代表不开启磁盘缓存
-     * @param maxSize       磁盘缓存最大size，默认为 Integer.MAX_VALUE
-     * @param enabledMemory 是否开启内存缓存
+     * @param maxSize       旧版本磁盘缓存最大size，仅用于迁移旧数据，默认为 Integer.MAX_VALUE
+     * @param enabledMemory 是否缓存匹配结果，cookie本身总是保存在内存中
+     * @deprecated 磁盘日志不再限制大小，maxSize仅在迁移旧版本数据时使用；开启磁盘缓存时，cookie总会全部加载到内存，
+     * enabledMemory仅控制是否缓存匹配结果，请使用{@link #CookieStore(File)}
      */
+    @Deprecated
     public CookieStore(@Nullable File directory, long maxSize, boolean enabledMemory) {
         if (!enabledMemory && directory == null)
             throw new IllegalArgumentException("Memory or disk caching must be enabled");
-        if (enabledMemory) {
-            memoryCache = new ConcurrentHashMap<>();
-        }
+        this.enabledMemory = enabledMemory;
         this.directory = directory;
         this.maxSize = maxSize;
+        journal = directory != null ? new CookieJournal(directory, memoryCache) : null;
+    }
 
+    /**
+     * 在后台线程一次性加载磁盘缓存中的所有cookie，过期的cookie直接丢弃，之后的首个请求无需等待磁盘IO；
+     * 建议在初始化时调用，加载完成前的请求会等待加载完成，未开启磁盘缓存时，直接返回
+     *
+     * @return CookieStore
+     */
+    public CookieStore warmUp() {
+        if (journal == null || loaded) return this;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        }, "RxHttp Cookie WarmUp");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
     }
 
-    private DiskLruCache getDiskLruCache() {
-        if (directory != null && diskCache == null) {
-            diskCache = OkHttpCompat.newDiskLruCache(directory, appVersion, 1, maxSize);
+    //首次访问时加载磁盘日志
+    private void load() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            if (journal != null) {
+                journal.load();
+                //DiskLruCache的日志文件，存在即说明有旧版本的数据
+                if (new File(directory, "journal").exists()) {
+                    legacyCache = OkHttpCompat.newDiskLruCache(directory, appVersion, 1, maxSize);
+                }
+            }
+            loaded = true;
         }
-        return diskCache;
     }
 
     /**
-     * 保存url对应的cookie，线程安全，若开启了磁盘缓存，建议在子线程调用
+     * 保存url对应的cookie，线程安全
      *
      * @param url    HttpUrl
      * @param cookie Cookie
@@ -88,138 +140,232 @@ public class CookieStore implements ICookieJar {
     }
 
     /**
-     * 保存url对应的所有cookie，线程安全，若开启了磁盘缓存，建议在子线程调用
+     * 保存url对应的所有cookie，线程安全；开启了磁盘缓存时，由后台线程写入磁盘，不阻塞当前线程
+     * <p>
+     * cookie按domain存储，过期的cookie(即服务端要求删除的cookie)会被移除
      *
      * @param url     HttpUrl
      * @param cookies List
      */
     @Override
     public void saveCookie(HttpUrl url, List<Cookie> cookies) {
-        final String host = url.host();
-        ConcurrentHashMap<String, Cookie> cookieMap;
-        if (memoryCache != null) { //开启了内存缓存，则将cookie写入内存
-            cookieMap = memoryCache.get(host);
-            if (cookieMap == null) {
-                memoryCache.put(host, cookieMap = new ConcurrentHashMap<>());
-            }
-        } else {
-            cookieMap = new ConcurrentHashMap<>();
-        }
-        for (Cookie cookie : cookies) {
-            cookieMap.put(getToken(cookie), cookie);
-        }
-
-        DiskLruCache diskCache = getDiskLruCache();
-        if (diskCache != null) { //开启了磁盘缓存，则将cookie写入磁盘
-            DiskLruCache.Editor editor = null;
-            try {
-                editor = diskCache.edit(md5(host));
-                if (editor == null) {
-                    return;
+        load();
+        long now = System.currentTimeMillis();
+        //加锁，保证内存与日志中的变更顺序一致
+        synchronized (this) {
+            for (Cookie cookie : cookies) {
+                String domain = cookie.domain();
+                Map<String, Cookie> cookieMap = bucket(domain, true);
+                String token = token(cookie);
+                if (cookie.expiresAt() <= now) {
+                    if (cookieMap.remove(token) != null && journal != null) journal.remove(domain, token);
+                } else {
+                    cookieMap.put(token, cookie);
+                    if (journal != null) journal.put(cookie);
                 }
-                writeCookie(editor, cookieMap);
-                editor.commit();
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                abortQuietly(editor);
             }
+            generation.incrementAndGet();
         }
     }
 
     /**
-     * 加载url对应的cookie，线程安全，若开启了磁盘缓存，建议在子线程调用
+     * 加载url对应的cookie，包括父域名下的cookie，线程安全，首次调用会加载磁盘缓存，建议在子线程调用
+     * <p>
+     * 开启了内存缓存时，匹配结果按(host, path)缓存，cookie变更或过期前，重复请求直接返回同一个列表
      *
      * @param url HttpUrl
      * @return List
      */
     @Override
     public List<Cookie> loadCookie(HttpUrl url) {
-        final String host = url.host();
-        if (memoryCache != null) {    //1、开启了内存缓存，则从内存查找cookie
-            Map<String, Cookie> cookieMap = memoryCache.get(host);
-            if (cookieMap != null) {  //2、内存缓存查找成功，直接返回
-                return matchCookies(url, cookieMap);
+        return match(url).cookies;
+    }
+
+    private Matched match(HttpUrl url) {
+        load();
+        long now = System.currentTimeMillis();
+        if (!enabledMemory) return matchCookies(url, now, generation.get());
+        String host = url.host();
+        String path = url.encodedPath();
+        HostMatches hostMatches = matchCache.get(host);
+        if (hostMatches != null) {
+            Matched matched = hostMatches.get(url.isHttps()).get(path);
+            if (matched != null && matched.generation == generation.get() && now < matched.expiresAt) {
+                return matched;
             }
+        } else {
+            if (matchCache.size() >= MAX_CACHED_HOSTS) matchCache.clear();
+            hostMatches = new HostMatches();
+            HostMatches previous = matchCache.putIfAbsent(host, hostMatches);
+            if (previous != null) hostMatches = previous;
         }
-        ConcurrentHashMap<String, Cookie> cookieMap = new ConcurrentHashMap<>();
-        DiskLruCache diskCache = getDiskLruCache();
-        if (diskCache != null) { //3、开启了磁盘缓存，则从磁盘查找cookie
-            DiskLruCache.Snapshot snapshot = null;
-            try {
-                //4、磁盘缓存查找
-                snapshot = diskCache.get(md5(host));
-                if (snapshot == null) return Collections.emptyList();
-                List<Cookie> cookiesList = readCookie(url, snapshot.getSource(0));
-                for (Cookie cookie : cookiesList) {
-                    cookieMap.put(getToken(cookie), cookie);
+        //Read the generation before the cookies, a concurrent change then leaves the result stale
+        Matched matched = matchCookies(url, now, generation.get());
+        ConcurrentHashMap<String, Matched> paths = hostMatches.get(url.isHttps());
+        if (paths.size() >= MAX_CACHED_PATHS) paths.clear();
+        paths.put(path, matched);
+        return matched;
+    }
+
+    private Matched matchCookies(HttpUrl url, long now, int generation) {
+        List<Cookie> matchCookies = new ArrayList<>();
+        long expiresAt = Long.MAX_VALUE;
+        String host = url.host();
+        String domain = host;
+        while (true) {
+            Map<String, Cookie> cookieMap = bucket(domain, false);
+            if (cookieMap != null) {
+                for (Iterator<Cookie> iterator = cookieMap.values().iterator(); iterator.hasNext(); ) {
+                    Cookie cookie = iterator.next();
+                    if (cookie.expiresAt() <= now) {
+                        iterator.remove(); //已过期，日志重写时不再写入
+                    } else if (cookie.matches(url)) {
+                        matchCookies.add(cookie);
+                        expiresAt = Math.min(expiresAt, cookie.expiresAt());
+                    }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                OkHttpCompat.closeQuietly(snapshot);
             }
+            if (isIpAddress(host)) break;
+            int dot = domain.indexOf('.');
+            //父域名至少要有两级，不查找顶级域名
+            if (dot < 0 || domain.indexOf('.', dot + 1) < 0) break;
+            domain = domain.substring(dot + 1);
         }
-        if (memoryCache != null && !cookieMap.isEmpty()) //5、磁盘缓存查找成功，添加进内存缓存
-            memoryCache.put(host, cookieMap);
-        return matchCookies(url, cookieMap);
+        return new Matched(Collections.unmodifiableList(matchCookies), expiresAt, generation);
     }
 
-    private List<Cookie> matchCookies(HttpUrl url, Map<String, Cookie> cookieMap) {
-        List<Cookie> matchCookies = new ArrayList<>();
-        for (Cookie cookie : cookieMap.values()) {
-            //cookie匹配且未过期
-            if (cookie.matches(url) && cookie.expiresAt() > System.currentTimeMillis()) {
-                matchCookies.add(cookie);
+    /**
+     * @param create 为true时，不存在则创建
+     * @return domain下的cookie，不存在且create为false时，返回null
+     */
+    @Nullable
+    private ConcurrentHashMap<String, Cookie> bucket(String domain, boolean create) {
+        ConcurrentHashMap<String, Cookie> cookieMap = memoryCache.get(domain);
+        if (cookieMap != null) return cookieMap;
+        if (legacyCache != null) return migrate(domain);
+        if (!create) return null;
+        cookieMap = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Cookie> previous = memoryCache.putIfAbsent(domain, cookieMap);
+        return previous != null ? previous : cookieMap;
+    }
+
+    //将旧版本磁盘缓存中domain下的cookie迁移到日志，没有时也缓存一个空map，避免每次请求都读磁盘
+    private synchronized ConcurrentHashMap<String, Cookie> migrate(String domain) {
+        ConcurrentHashMap<String, Cookie> cookieMap = memoryCache.get(domain);
+        if (cookieMap != null) return cookieMap;
+        cookieMap = new ConcurrentHashMap<>();
+        DiskLruCache legacyCache = this.legacyCache;
+        DiskLruCache.Snapshot snapshot = null;
+        try {
+            snapshot = legacyCache != null ? legacyCache.get(md5(domain)) : null;
+            if (snapshot != null) {
+                HttpUrl url = new HttpUrl.Builder().scheme("https").host(domain).build();
+                List<Cookie> cookies = readCookie(url, snapshot.getSource(0));
+                snapshot.close();
+                memoryCache.put(domain, cookieMap);
+                long now = System.currentTimeMillis();
+                for (Cookie cookie : cookies) {
+                    if (cookie == null || cookie.expiresAt() <= now) continue;
+                    //旧版本按host存储，父域名的cookie迁移到其domain下；升级后保存的cookie更新，不覆盖
+                    Map<String, Cookie> target = cookie.domain().equals(domain) ? cookieMap : migrate(cookie.domain());
+                    if (target.putIfAbsent(token(cookie), cookie) == null && journal != null) journal.put(cookie);
+                }
+                //写入日志后再删除旧数据，否则写入前进程退出，迁移的cookie会丢失
+                if (journal == null || journal.flush()) legacyCache.remove(md5(domain));
+                return cookieMap;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); //旧数据保留，下次启动再迁移
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            OkHttpCompat.closeQuietly(snapshot);
         }
-        return Collections.unmodifiableList(matchCookies);
+        ConcurrentHashMap<String, Cookie> previous = memoryCache.putIfAbsent(domain, cookieMap);
+        return previous != null ? previous : cookieMap;
     }
 
+    private static boolean isIpAddress(String host) {
+        return host.indexOf(':') >= 0 || Character.isDigit(host.charAt(host.length() - 1));
+    }
 
-    private String getToken(Cookie cookie) {
+    static String token(Cookie cookie) {
         return cookie.name() + "; " + cookie.domain() + "; " + cookie.path() + "; " + cookie.secure();
     }
 
     /**
-     * 移除url对应的cookie，线程安全，若开启了磁盘缓存，建议在子线程调用
+     * 移除url对应的cookie，线程安全；包括host下的cookie，及父域名下对host生效的cookie(即非host-only的cookie)，
+     * 移除后，请求该host不再携带cookie；注意，父域名下的cookie对其它子域名同样失效
      *
      * @param url HttpUrl
      */
     @Override
     public void removeCookie(HttpUrl url) {
+        load();
         String host = url.host();
-        if (memoryCache != null) {
+        synchronized (this) {
             memoryCache.remove(host);
-        }
-        DiskLruCache diskCache = getDiskLruCache();
-        if (diskCache != null) {
-            try {
-                diskCache.remove(md5(host));
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (journal != null) journal.removeDomain(host);
+            String domain = host;
+            while (!isIpAddress(host)) {
+                int dot = domain.indexOf('.');
+                //父域名至少要有两级，与matchCookies一致
+                if (dot < 0 || domain.indexOf('.', dot + 1) < 0) break;
+                domain = domain.substring(dot + 1);
+                Map<String, Cookie> cookieMap = bucket(domain, false);
+                if (cookieMap == null) continue;
+                for (Iterator<Cookie> iterator = cookieMap.values().iterator(); iterator.hasNext(); ) {
+                    Cookie cookie = iterator.next();
+                    if (cookie.hostOnly()) continue; //仅对父域名本身生效
+                    iterator.remove();
+                    if (journal != null) journal.remove(domain, token(cookie));
+                }
+            }
+            generation.incrementAndGet();
+            if (legacyCache != null) {
+                try {
+                    legacyCache.remove(md5(host));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
     }
 
     /**
-     * 移除所有的cookie，线程安全，若开启了磁盘缓存，建议在子线程调用
+     * 移除所有的cookie，线程安全
      */
     @Override
     public void removeAllCookie() {
-        if (memoryCache != null)
+        load();
+        synchronized (this) {
             memoryCache.clear();
-        DiskLruCache diskCache = getDiskLruCache();
-        if (diskCache != null) {
-            try {
-                diskCache.evictAll();
-            } catch (IOException e) {
-                e.printStackTrace();
+            matchCache.clear();
+            if (journal != null) journal.clear();
+            generation.incrementAndGet();
+            if (legacyCache != null) {
+                try {
+                    legacyCache.evictAll();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
     }
 
-    //从磁盘都cookie
+    /**
+     * 阻塞当前线程，直到已保存的cookie全部写入磁盘，如在进程退出前调用；未开启磁盘缓存时，直接返回
+     */
+    public void flush() {
+        if (journal == null) return;
+        try {
+            journal.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //从旧版本磁盘缓存读cookie
     private List<Cookie> readCookie(HttpUrl url, Source in) throws IOException {
         List<Cookie> cookies = new ArrayList<>();
         try {
@@ -235,27 +381,29 @@ public class CookieStore implements ICookieJar {
         return cookies;
     }
 
-    //cookie写入磁盘
-    private void writeCookie(DiskLruCache.Editor editor, Map<String, Cookie> cookieMap) throws
-        IOException {
-        BufferedSink sink = Okio.buffer(editor.newSink(0));
-        sink.writeInt(cookieMap.size());
-        for (Cookie cookie : cookieMap.values()) {
-            sink.writeUtf8(cookie.toString()).writeByte('\n');
-        }
-        sink.close();
+    private static String md5(String key) {
+        return ByteString.encodeUtf8(key).md5().hex();
     }
 
-    private void abortQuietly(@Nullable DiskLruCache.Editor editor) {
-        try {
-            if (editor != null) {
-                editor.abort();
-            }
-        } catch (Exception ignored) {
+    //Cached matches of a host, by path, http and https apart since secure cookies only match https
+    private static final class HostMatches {
+        final ConcurrentHashMap<String, Matched> http = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, Matched> https = new ConcurrentHashMap<>();
+
+        ConcurrentHashMap<String, Matched> get(boolean isHttps) {
+            return isHttps ? https : http;
         }
     }
 
-    private static String md5(String key) {
-        return ByteString.encodeUtf8(key).md5().hex();
+    private static final class Matched {
+        final List<Cookie> cookies;
+        final long expiresAt; //最早过期的cookie的过期时间
+        final int generation;
+
+        Matched(List<Cookie> cookies, long expiresAt, int generation) {
+            this.cookies = cookies;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
     }
 }
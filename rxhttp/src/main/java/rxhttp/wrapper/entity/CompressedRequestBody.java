@@ -0,0 +1,121 @@
+package rxhttp.wrapper.entity;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.DeflaterSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+import rxhttp.RxHttpPlugins;
+import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.callback.CompressionListener;
+
+/**
+ * Compresses the body while it is written, the length is unknown, so it is sent with chunked transfer
+ * encoding. BuildUtil.buildRequest adds the Content-Encoding header.
+ * <p>
+ * For compatibility with okHTTP 3.x version, only written in Java
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 03:10
+ */
+public class CompressedRequestBody extends RequestBody {
+
+    private final RequestBody requestBody;
+    private final RequestCompression.Encoding encoding;
+    private final @Nullable String url;
+
+    public CompressedRequestBody(@NotNull RequestBody requestBody, @NotNull RequestCompression.Encoding encoding,
+                                 @Nullable String url) {
+        this.requestBody = requestBody;
+        this.encoding = encoding;
+        this.url = url;
+    }
+
+    @NotNull
+    public RequestBody getRequestBody() {
+        return requestBody;
+    }
+
+    /**
+     * @return value of the Content-Encoding header
+     */
+    public String getEncoding() {
+        return encoding.value();
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return requestBody.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return OkHttpCompat.okHttpVersionCompare("3.14.0") >= 0 && requestBody.isOneShot();
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        CountingSink compressed = new CountingSink(sink, false);
+        Sink compressor = encoding == RequestCompression.Encoding.GZIP
+            ? new GzipSink(compressed)
+            : new DeflaterSink(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION));
+        CountingSink raw = new CountingSink(compressor, true);
+        BufferedSink bufferedSink = Okio.buffer(raw);
+        try {
+            requestBody.writeTo(bufferedSink);
+        } finally {
+            //Writes the trailer, the request sink itself is left open
+            bufferedSink.close();
+        }
+        sink.flush();
+        CompressionListener listener = RxHttpPlugins.getCompressionListener();
+        if (listener != null) {
+            listener.onCompressed(url, getEncoding(), raw.byteCount, compressed.byteCount);
+        }
+    }
+
+    private static final class CountingSink extends ForwardingSink {
+
+        private final boolean closeDelegate;
+        long byteCount;
+
+        /**
+         * @param closeDelegate false for the request sink, which is closed by OkHttp
+         */
+        CountingSink(Sink delegate, boolean closeDelegate) {
+            super(delegate);
+            this.closeDelegate = closeDelegate;
+        }
+
+        @Override
+        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            this.byteCount += byteCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closeDelegate) {
+                super.close();
+            } else {
+                flush();
+            }
+        }
+    }
+}
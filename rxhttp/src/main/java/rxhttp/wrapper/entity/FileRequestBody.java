@@ -3,6 +3,7 @@ package rxhttp.wrapper.entity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -10,10 +11,12 @@ import java.io.InputStream;
 
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
+import okio.Buffer;
 import okio.BufferedSink;
 import okio.Okio;
 import okio.Source;
 import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.progress.ProgressWritable;
 
 /**
  * For compatibility with okHTTP 3.x version, only written in Java
@@ -21,13 +24,25 @@ import rxhttp.wrapper.OkHttpCompat;
  * Date: 2021/6/24
  * Time: 21:13
  */
-public class FileRequestBody extends RequestBody {
+public class FileRequestBody extends RequestBody implements ProgressWritable {
+
+    private static final long SEGMENT_SIZE = 8192;
 
     private final File file;
     private final long skipSize;
+    private final long length; //-1 to the end of the file
     private final MediaType mediaType;
 
     public FileRequestBody(File file, long skipSize, @Nullable MediaType mediaType) {
+        this(file, skipSize, -1, mediaType);
+    }
+
+    /**
+     * A range of the file, e.g. one part of a chunked upload
+     *
+     * @param length number of bytes after skipSize, -1 to the end of the file
+     */
+    public FileRequestBody(File file, long skipSize, long length, @Nullable MediaType mediaType) {
         this.file = file;
         if (skipSize < 0) {
             throw new IllegalArgumentException("skipSize >= 0 required but it was " + skipSize);
@@ -36,7 +51,12 @@ public class FileRequestBody extends RequestBody {
             throw new IllegalArgumentException("skipSize cannot be larger than the file length. " +
                 "The file length is " + file.length() + ", but it was " + skipSize);
         }
+        if (length < -1 || length > file.length() - skipSize) {
+            throw new IllegalArgumentException("length cannot be larger than the file length minus skipSize. " +
+                "The file length is " + file.length() + ", skipSize is " + skipSize + ", but it was " + length);
+        }
         this.skipSize = skipSize;
+        this.length = length;
         this.mediaType = mediaType;
     }
 
@@ -47,26 +67,61 @@ public class FileRequestBody extends RequestBody {
 
     @Override
     public long contentLength() throws IOException {
-        return file.length() - skipSize;
+        return length != -1 ? length : file.length() - skipSize;
     }
 
     @Override
     public void writeTo(@NotNull BufferedSink sink) throws IOException {
-        InputStream input = null;
-        Source source = null;
+        writeTo(sink, null);
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink, @Nullable Listener listener) throws IOException {
+        FileInputStream input = null;
         try {
             input = new FileInputStream(file);
-            if (skipSize > 0) {
-                long skip = input.skip(skipSize);
-                if (skip != skipSize) {
-                    throw new IllegalArgumentException(
-                        "Expected to skip " + skipSize + " bytes, actually skipped " + skip + " bytes");
+            //Positioned, instead of reading through the skipped bytes
+            if (skipSize > 0) input.getChannel().position(skipSize);
+            write(input, contentLength(), sink, listener);
+        } finally {
+            OkHttpCompat.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Reads the input straight into the segments of the sink, at most byteCount bytes, so that a file
+     * appended to during the upload doesn't exceed the Content-Length
+     *
+     * @param byteCount -1 to read until the end of the input
+     * @param listener  told of the bytes once emitted to the sink, null to report no progress
+     */
+    static void write(InputStream input, long byteCount, BufferedSink sink,
+                      @Nullable Listener listener) throws IOException {
+        Source source = Okio.source(input);
+        Buffer buffer = sink.getBuffer();
+        long remaining = byteCount;
+        long buffered = 0; //Bytes read but still in the buffer of the sink, reported once emitted
+        while (remaining != 0) {
+            long read = source.read(buffer, remaining > 0 ? Math.min(remaining, SEGMENT_SIZE) : SEGMENT_SIZE);
+            if (read == -1) {
+                if (remaining > 0) {
+                    throw new EOFException("Expected " + byteCount + " bytes, but the input ended "
+                        + remaining + " bytes before");
                 }
+                break;
             }
-            source = Okio.source(input);
-            sink.writeAll(source);
-        } finally {
-            OkHttpCompat.closeQuietly(source, input);
+            if (remaining > 0) remaining -= read;
+            sink.emitCompleteSegments();
+            if (listener != null) {
+                //The buffer is emitted in order, what remains of it is the tail of the bytes read
+                long emitted = buffered + read - Math.min(buffered + read, buffer.size());
+                buffered += read - emitted;
+                if (emitted > 0) listener.onWritten(emitted);
+            }
+        }
+        if (listener != null && buffered > 0) {
+            sink.emit();
+            listener.onWritten(buffered);
         }
     }
 }
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 
 import rxhttp.wrapper.utils.Utils;
 
@@ -65,4 +66,22 @@ public class ParameterizedTypeImpl implements ParameterizedType {
     public final Type getRawType() {
         return rawType;
     }
+
+    //Same contract as the JDK implementation, so equal types from any implementation match
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ParameterizedType)) return false;
+        ParameterizedType that = (ParameterizedType) o;
+        return rawType.equals(that.getRawType())
+            && (ownerType == null ? that.getOwnerType() == null : ownerType.equals(that.getOwnerType()))
+            && Arrays.equals(actualTypeArguments, that.getActualTypeArguments());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(actualTypeArguments)
+            ^ (ownerType == null ? 0 : ownerType.hashCode())
+            ^ rawType.hashCode();
+    }
 }
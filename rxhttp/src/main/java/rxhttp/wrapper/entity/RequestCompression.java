@@ -0,0 +1,134 @@
+package rxhttp.wrapper.entity;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import rxhttp.wrapper.progress.ProgressRequestBody;
+
+/**
+ * Request body compression, set globally with RxHttpPlugins.setRequestCompression, or per request
+ * with RxHttp.setCompression. The server must accept the Content-Encoding, so it is opt-in.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 03:10
+ */
+public final class RequestCompression {
+
+    public static final long DEFAULT_MIN_SIZE = 1024;
+
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate"); //zlib format, as RFC 9110 defines the deflate coding
+
+        final String value;
+
+        Encoding(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+    }
+
+    private final Encoding encoding;
+    private final long minSize;
+
+    /**
+     * @param minSize bodies smaller than minSize bytes are sent as is, bodies of unknown length are compressed,
+     *                e.g. a StreamingRequestBody larger than its buffer limit
+     */
+    public RequestCompression(@NotNull Encoding encoding, long minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize >= 0 required but it was " + minSize);
+        }
+        this.encoding = encoding;
+        this.minSize = minSize;
+    }
+
+    public static RequestCompression gzip() {
+        return new RequestCompression(Encoding.GZIP, DEFAULT_MIN_SIZE);
+    }
+
+    public static RequestCompression deflate() {
+        return new RequestCompression(Encoding.DEFLATE, DEFAULT_MIN_SIZE);
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @param url reported to the CompressionListener
+     * @return the compressed body, or the body itself if it is too small or already compressed
+     */
+    public RequestBody compress(@NotNull RequestBody body, @Nullable String url) {
+        if (body instanceof CompressedRequestBody || !shouldCompress(body)) return body;
+        return new CompressedRequestBody(body, encoding, url);
+    }
+
+    private boolean shouldCompress(RequestBody body) {
+        RequestBody content = body instanceof ProgressRequestBody
+            ? ((ProgressRequestBody) body).getRequestBody() : body;
+        if (isCompressed(content.contentType())) return false;
+        if (content instanceof MultipartBody) {
+            //Uploading images or videos, there is little to gain
+            for (MultipartBody.Part part : ((MultipartBody) content).parts()) {
+                if (isCompressed(part.body().contentType())) return false;
+            }
+        }
+        long contentLength;
+        try {
+            //A StreamingRequestBody up to its buffer limit is serialized once here and keeps the bytes
+            contentLength = content.contentLength();
+        } catch (IOException e) {
+            contentLength = -1;
+        }
+        return contentLength == -1 || contentLength >= minSize;
+    }
+
+    //Media types whose content is compressed already
+    static boolean isCompressed(@Nullable MediaType mediaType) {
+        if (mediaType == null) return false;
+        String type = mediaType.type();
+        String subtype = mediaType.subtype();
+        switch (type) {
+            case "image":
+                return !subtype.equals("svg+xml") && !subtype.equals("bmp");
+            case "video":
+            case "audio":
+            case "font":
+                return true;
+            case "application":
+                switch (subtype) {
+                    case "zip":
+                    case "gzip":
+                    case "x-gzip":
+                    case "x-bzip2":
+                    case "x-xz":
+                    case "x-7z-compressed":
+                    case "x-rar-compressed":
+                    case "vnd.rar":
+                    case "zstd":
+                    case "java-archive":
+                    case "vnd.android.package-archive":
+                    case "pdf":
+                        return true;
+                    default:
+                        return false;
+                }
+            default:
+                return false;
+        }
+    }
+}
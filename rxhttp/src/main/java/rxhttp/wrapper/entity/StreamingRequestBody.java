@@ -0,0 +1,155 @@
+package rxhttp.wrapper.entity;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * A RequestBody written by a {@link BodyWriter} straight into the sink of the request, e.g. a
+ * serializer, instead of being serialized into memory before the request is sent.
+ * <p>
+ * If the content length is not known, small bodies, up to {@code bufferLimit} bytes, are still
+ * serialized once when OkHttp asks for the length, so that they are sent with a Content-Length
+ * header as before; larger bodies are streamed with chunked transfer encoding.
+ * <p>
+ * The writer is called while the request is sent, on the thread of OkHttp, so it serializes the
+ * object as it is then, not when the request was built. Bodies up to {@code bufferLimit} bytes are
+ * serialized once and kept, larger ones are serialized again each time they are written, e.g. on
+ * retries and by the LogInterceptor. Don't change an object after it is passed to a request.
+ * A RuntimeException thrown by the writer, e.g. by a TypeAdapter, is rethrown as an IOException,
+ * so that it fails the call instead of crashing the thread of OkHttp.
+ * <p>
+ * For compatibility with okHTTP 3.x version, only written in Java
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 02:30
+ */
+public class StreamingRequestBody extends RequestBody {
+
+    public static final long DEFAULT_BUFFER_LIMIT = 16 * 1024;
+
+    private final @Nullable MediaType mediaType;
+    private final BodyWriter writer;
+    private final long contentLength;
+    private final boolean oneShot;
+    private final long bufferLimit;
+
+    private boolean measured;
+    private @Nullable ByteString buffered; //Written by the writer when not larger than bufferLimit
+
+    /**
+     * @param contentLength the number of bytes the writer writes, -1 if unknown
+     * @param oneShot       whether the writer can only be called once, e.g. it consumes a stream,
+     *                      such bodies are never buffered, and not retried by OkHttp
+     * @param bufferLimit   bodies of unknown length up to this size are buffered to know their length,
+     *                      0 to always stream them
+     */
+    public StreamingRequestBody(@Nullable MediaType mediaType, long contentLength, boolean oneShot,
+                                long bufferLimit, @NotNull BodyWriter writer) {
+        if (bufferLimit < 0) {
+            throw new IllegalArgumentException("bufferLimit >= 0 required but it was " + bufferLimit);
+        }
+        this.mediaType = mediaType;
+        this.contentLength = contentLength;
+        this.oneShot = oneShot;
+        this.bufferLimit = bufferLimit;
+        this.writer = writer;
+    }
+
+    public static StreamingRequestBody create(@Nullable MediaType mediaType, @NotNull BodyWriter writer) {
+        return new StreamingRequestBody(mediaType, -1, false, DEFAULT_BUFFER_LIMIT, writer);
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mediaType;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (contentLength >= 0) return contentLength;
+        ByteString buffered = buffer();
+        return buffered != null ? buffered.size() : -1;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return oneShot;
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        ByteString buffered = buffer();
+        if (buffered != null) {
+            sink.write(buffered);
+        } else {
+            write(sink);
+            sink.flush();
+        }
+    }
+
+    private void write(BufferedSink sink) throws IOException {
+        try {
+            writer.writeTo(sink);
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to write the request body", e);
+        }
+    }
+
+    @Nullable
+    private synchronized ByteString buffer() throws IOException {
+        if (measured) return buffered;
+        measured = true;
+        if (contentLength >= 0 || oneShot || bufferLimit == 0) return null;
+        Buffer buffer = new Buffer();
+        LimitedSink limitedSink = new LimitedSink(buffer, bufferLimit);
+        BufferedSink sink = Okio.buffer(limitedSink);
+        try {
+            write(sink);
+            sink.flush();
+        } catch (IOException e) {
+            if (limitedSink.exceeded) return null; //Too large, streamed instead
+            throw e;
+        }
+        return buffered = buffer.readByteString();
+    }
+
+    public interface BodyWriter {
+        /**
+         * Writes the body into the sink, the sink must not be closed
+         */
+        void writeTo(@NotNull BufferedSink sink) throws IOException;
+    }
+
+    private static final class LimitedSink extends ForwardingSink {
+
+        private final long limit;
+        private long written;
+        boolean exceeded;
+
+        LimitedSink(Buffer delegate, long limit) {
+            super(delegate);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+            written += byteCount;
+            if (written > limit) {
+                exceeded = true;
+                throw new IOException("body is larger than " + limit + " bytes");
+            }
+            super.write(source, byteCount);
+        }
+    }
+}
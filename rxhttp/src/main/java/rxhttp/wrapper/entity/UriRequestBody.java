@@ -7,15 +7,16 @@ import android.net.Uri;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okio.BufferedSink;
-import okio.Okio;
-import okio.Source;
 import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.progress.ProgressWritable;
 import rxhttp.wrapper.utils.UriUtil;
 
 /**
@@ -24,7 +25,7 @@ import rxhttp.wrapper.utils.UriUtil;
  * Date: 2020/9/13
  * Time: 21:13
  */
-public class UriRequestBody extends RequestBody {
+public class UriRequestBody extends RequestBody implements ProgressWritable {
 
     private final Uri uri;
     private final long skipSize;
@@ -58,21 +59,31 @@ public class UriRequestBody extends RequestBody {
 
     @Override
     public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        writeTo(sink, null);
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink, @Nullable Listener listener) throws IOException {
         InputStream input = null;
-        Source source = null;
         try {
             input = contentResolver.openInputStream(uri);
             if (skipSize > 0) {
-                long skip = input.skip(skipSize);
-                if (skip != skipSize) {
-                    throw new IllegalArgumentException(
-                        "Expected to skip " + skipSize + " bytes, actually skipped " + skip + " bytes");
+                if (input instanceof FileInputStream) {
+                    //Positioned, instead of reading through the skipped bytes
+                    FileChannel channel = ((FileInputStream) input).getChannel();
+                    channel.position(channel.position() + skipSize);
+                } else {
+                    long skip = input.skip(skipSize);
+                    if (skip != skipSize) {
+                        throw new IllegalArgumentException(
+                            "Expected to skip " + skipSize + " bytes, actually skipped " + skip + " bytes");
+                    }
                 }
             }
-            source = Okio.source(input);
-            sink.writeAll(source);
+            long contentLength = contentLength();
+            FileRequestBody.write(input, contentLength >= 0 ? contentLength : -1, sink, listener);
         } finally {
-            OkHttpCompat.closeQuietly(source, input);
+            OkHttpCompat.closeQuietly(input);
         }
     }
 }
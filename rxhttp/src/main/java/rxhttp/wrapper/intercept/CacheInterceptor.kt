@@ -1,15 +1,23 @@
 package rxhttp.wrapper.intercept
 
+import okhttp3.Call
+import okhttp3.Callback
 import okhttp3.Interceptor
 import okhttp3.Request
 import okhttp3.Response
 import rxhttp.RxHttpPlugins
 import rxhttp.wrapper.OkHttpCompat
+import rxhttp.wrapper.Prefetcher
+import rxhttp.wrapper.cache.CacheHit
 import rxhttp.wrapper.cache.CacheMode
+import rxhttp.wrapper.cache.CacheStatsRecorder
 import rxhttp.wrapper.cache.CacheStrategy
+import rxhttp.wrapper.cache.CacheValidator
 import rxhttp.wrapper.cache.InternalCache
+import rxhttp.wrapper.cache.NegativeCache
 import rxhttp.wrapper.exception.CacheReadFailedException
 import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * User: ljx
@@ -22,41 +30,183 @@ class CacheInterceptor(
 
     private val cache: InternalCache by lazy { RxHttpPlugins.getCacheOrThrow() }  //缓存读取
 
+    private val stats: CacheStatsRecorder? by lazy { RxHttpPlugins.getCacheManager()?.statsRecorder }
+
     override fun intercept(chain: Interceptor.Chain): Response {
         val request = chain.request()
-        val cacheResponse = beforeReadCache(request)
-        if (cacheResponse != null) return cacheResponse  //缓存有效，直接返回
+        //后台刷新缓存的请求，不返回缓存，仅用于条件请求
+        val refreshCall = isRefreshCall(chain.call(), request)
+        //登记预取请求，或取消与本次请求相同key的预取请求
+        if (!refreshCall) Prefetcher.onRequest(cacheKey(request), chain.call())
+        val lookup = refreshCall || cacheModeIs(
+            CacheMode.ONLY_CACHE,
+            CacheMode.READ_CACHE_FAILED_REQUEST_NETWORK,
+            CacheMode.STALE_WHILE_REVALIDATE
+        )
+        //读取缓存，缓存过期也返回，以便条件请求
+        val cacheResponse = if (lookup) readCache(request, !cacheModeIs(CacheMode.ONLY_CACHE)) else null
+        //是否需要统计本次请求的缓存命中情况，后台刷新请求不统计
+        val recordLookup = lookup && !refreshCall
+        if (cacheResponse != null && !refreshCall) {
+            if (isValid(cacheResponse)) return hit(request, cacheResponse)  //缓存有效，直接返回
+            if (isStale(cacheResponse)) {
+                //缓存过期但在staleTime窗口内，返回过期缓存并在后台刷新
+                refreshInBackground(chain.call(), request)
+                return hit(request, cacheResponse)
+            }
+        }
+        if (cacheModeIs(CacheMode.ONLY_CACHE)) {
+            cacheResponse?.let { OkHttpCompat.closeQuietly(it) }
+            miss(request)
+            throw CacheReadFailedException("Cache read failed")
+        }
+        var recorded = !recordLookup  //命中情况已统计或无需统计
         try {
-            //发起请求
-            val response = chain.proceed(request)
-            return if (!cacheModeIs(CacheMode.ONLY_NETWORK)) {
+            //缓存过期且带有ETag/Last-Modified，发起条件请求
+            val conditionalRequest = cacheResponse?.let { CacheValidator.conditionalRequest(request, it) }
+            val response = negativeResponse(request, refreshCall)
+                ?: rememberNegative(request, chain.proceed(conditionalRequest ?: request))
+            if (cacheResponse != null) {
+                if (conditionalRequest != null && CacheValidator.isNotModified(response)) {
+                    //304，数据未变，更新缓存的响应头及接收时间，返回缓存
+                    OkHttpCompat.closeQuietly(response)
+                    val combined = CacheValidator.combine(cacheResponse, response)
+                    val updated = cache.update(combined, cacheStrategy.cacheKey)
+                    tagCache(request)
+                    stats?.recordRevalidate()
+                    return if (recorded) updated else hit(request, updated)
+                }
+                OkHttpCompat.closeQuietly(cacheResponse)
+            }
+            if (!recorded) miss(request)
+            recorded = true
+            //负缓存开启时，失败的响应只在内存中短暂保留，不写入缓存
+            val negative = cacheStrategy.negativeCacheTime > 0 && NegativeCache.isNegative(response)
+            return if (!cacheModeIs(CacheMode.ONLY_NETWORK) && !negative) {
                 //非ONLY_NETWORK模式下,请求成功，写入缓存
-                cache.put(response, cacheStrategy.cacheKey)
+                cache.put(response, cacheStrategy.cacheKey).also { tagCache(request) }
             } else {
                 response
             }
         } catch (e: Throwable) {
-            var networkResponse: Response? = null
+            cacheResponse?.let { OkHttpCompat.closeQuietly(it) }
+            if (!recorded) miss(request)
             if (cacheModeIs(CacheMode.REQUEST_NETWORK_FAILED_READ_CACHE)) {
                 //请求失败，读取缓存
-                networkResponse = getCacheResponse(request, cacheStrategy.cacheValidTime)
+                val networkResponse = getCacheResponse(request, cacheStrategy.cacheValidTime)
+                if (networkResponse != null) return hit(request, networkResponse)
+                miss(request)
             }
-            return networkResponse ?: throw e
+            throw e
         }
     }
 
-    private fun beforeReadCache(request: Request): Response? {
-        return if (cacheModeIs(CacheMode.ONLY_CACHE, CacheMode.READ_CACHE_FAILED_REQUEST_NETWORK)) {
-            //读取缓存
-            val cacheResponse = getCacheResponse(request, cacheStrategy.cacheValidTime)
-            if (cacheResponse == null) {
-                if (cacheModeIs(CacheMode.ONLY_CACHE)) throw CacheReadFailedException("Cache read failed")
-                return null
+    /**
+     * @param revalidate whether an expired cache with ETag / Last-Modified is still of use
+     */
+    @Throws(IOException::class)
+    private fun readCache(request: Request, revalidate: Boolean): Response? {
+        //内存索引已知缓存过期且无法再利用，不读磁盘
+        val maxAge = maxAge()
+        if (maxAge != Long.MAX_VALUE &&
+            cache.isExpired(request, cacheStrategy.cacheKey, System.currentTimeMillis() - maxAge, revalidate)
+        ) return null
+        val startNanos = System.nanoTime()
+        return cache[request, cacheStrategy.cacheKey].also {
+            stats?.recordReadNanos(System.nanoTime() - startNanos)
+        }
+    }
+
+    //短时间内失败过的请求，直接在本地返回失败的响应或抛出解析异常，后台刷新请求除外
+    @Throws(IOException::class)
+    private fun negativeResponse(request: Request, refreshCall: Boolean): Response? {
+        if (refreshCall || cacheStrategy.negativeCacheTime <= 0) return null
+        return NegativeCache.get(request, cacheKey(request))
+    }
+
+    @Throws(IOException::class)
+    private fun rememberNegative(request: Request, response: Response): Response {
+        val negativeCacheTime = cacheStrategy.negativeCacheTime
+        if (negativeCacheTime <= 0) return response
+        return NegativeCache.put(response, cacheKey(request), negativeCacheTime)
+    }
+
+    //将缓存加入分组，以便按分组批量删除
+    private fun tagCache(request: Request) {
+        val tags = cacheStrategy.cacheTags
+        if (tags.isNotEmpty()) cache.tag(cacheKey(request), tags)
+    }
+
+    private fun hit(request: Request, cacheResponse: Response): Response {
+        val response = tagCacheHit(request, cacheResponse)
+        val stats = stats ?: return response
+        stats.recordHit(cacheStrategy.cacheMode, cacheKey(request))
+        return stats.countBytesServed(response)
+    }
+
+    //标记缓存响应，解析时可复用上次解析的对象
+    private fun tagCacheHit(request: Request, cacheResponse: Response): Response {
+        if (RxHttpPlugins.getParsedCache() == null) return cacheResponse
+        val cacheHit = CacheHit(cacheKey(request), OkHttpCompat.receivedResponseAtMillis(cacheResponse))
+        val taggedRequest = request.newBuilder().tag(CacheHit::class.java, cacheHit).build()
+        return cacheResponse.newBuilder().request(taggedRequest).build()
+    }
+
+    private fun miss(request: Request) {
+        stats?.recordMiss(cacheStrategy.cacheMode, cacheKey(request))
+    }
+
+    //缓存可被直接使用的最大时长，STALE_WHILE_REVALIDATE模式下包含staleTime窗口
+    private fun maxAge(): Long {
+        val validTime = cacheStrategy.cacheValidTime
+        if (validTime == Long.MAX_VALUE || !cacheModeIs(CacheMode.STALE_WHILE_REVALIDATE)) return validTime
+        val staleTime = cacheStrategy.cacheStaleTime
+        return if (staleTime > Long.MAX_VALUE - validTime) Long.MAX_VALUE else validTime + staleTime
+    }
+
+    private fun isValid(cacheResponse: Response): Boolean {
+        val validTime = cacheStrategy.cacheValidTime
+        return validTime == Long.MAX_VALUE || age(cacheResponse) <= validTime
+    }
+
+    //STALE_WHILE_REVALIDATE模式下，缓存是否过期但仍在staleTime窗口内
+    private fun isStale(cacheResponse: Response): Boolean {
+        if (!cacheModeIs(CacheMode.STALE_WHILE_REVALIDATE)) return false
+        val staleTime = cacheStrategy.cacheStaleTime
+        return staleTime == Long.MAX_VALUE || age(cacheResponse) - cacheStrategy.cacheValidTime <= staleTime
+    }
+
+    private fun age(cacheResponse: Response): Long =
+        System.currentTimeMillis() - OkHttpCompat.receivedResponseAtMillis(cacheResponse)
+
+    private fun refreshInBackground(call: Call, request: Request) {
+        val key = cacheKey(request)
+        val refreshCall = call.clone()
+        //同一个key同时只允许一个后台刷新请求
+        if (refreshCalls.putIfAbsent(key, refreshCall) != null) return
+        refreshCall.enqueue(object : Callback {
+            override fun onResponse(call: Call, response: Response) {
+                try {
+                    //读完响应体，缓存才会写入完成
+                    OkHttpCompat.consume(response)
+                } finally {
+                    OkHttpCompat.closeQuietly(response)
+                    refreshCalls.remove(key, call)
+                }
             }
-            cacheResponse
-        } else null
+
+            override fun onFailure(call: Call, e: IOException) {
+                refreshCalls.remove(key, call)
+            }
+        })
     }
 
+    private fun isRefreshCall(call: Call, request: Request): Boolean =
+        refreshCalls.isNotEmpty() && refreshCalls[cacheKey(request)] === call
+
+    private fun cacheKey(request: Request): String =
+        cacheStrategy.cacheKey ?: OkHttpCompat.url(request).toString()
+
     private fun cacheModeIs(vararg cacheModes: CacheMode): Boolean {
         val cacheMode = cacheStrategy.cacheMode
         return cacheModes.any { it == cacheMode }
@@ -64,7 +214,7 @@ class CacheInterceptor(
 
     @Throws(IOException::class)
     private fun getCacheResponse(request: Request, validTime: Long): Response? {
-        val cacheResponse = cache[request, cacheStrategy.cacheKey]
+        val cacheResponse = readCache(request, false)
         return if (cacheResponse != null) {
             // Verify cache validity
             val receivedTime = OkHttpCompat.receivedResponseAtMillis(cacheResponse)
@@ -74,4 +224,23 @@ class CacheInterceptor(
                 null //Cache expired, return null
         } else null
     }
+
+    companion object {
+        //cacheKey -> 正在后台刷新缓存的请求
+        private val refreshCalls = ConcurrentHashMap<String, Call>()
+
+        /**
+         * 从请求的tag中读取[CacheStrategy]，没有时直接请求网络；同一个OkHttpClient可用于不同缓存策略的请求，
+         * 见[rxhttp.wrapper.DerivedClients]
+         */
+        @JvmField
+        val TAGGED: Interceptor = object : Interceptor {
+            override fun intercept(chain: Interceptor.Chain): Response {
+                val request = chain.request()
+                val cacheStrategy = request.tag(CacheStrategy::class.java)
+                    ?: return chain.proceed(request)
+                return CacheInterceptor(cacheStrategy).intercept(chain)
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package rxhttp.wrapper.param;
 
+import org.jetbrains.annotations.Nullable;
+
 import okhttp3.RequestBody;
+import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.callback.ProgressCallback;
 import rxhttp.wrapper.callback.ProgressCallbackHelper;
+import rxhttp.wrapper.entity.RequestCompression;
 import rxhttp.wrapper.progress.ProgressRequestBody;
 
 /**
@@ -14,6 +18,7 @@ public abstract class AbstractBodyParam<P extends AbstractBodyParam<P>> extends
 
     //Upload progress callback
     private ProgressCallbackHelper callback;
+    private @Nullable RequestCompression compression;
 
     /**
      * @param url    request url
@@ -21,17 +26,34 @@ public abstract class AbstractBodyParam<P extends AbstractBodyParam<P>> extends
      */
     public AbstractBodyParam(String url, Method method) {
         super(url, method);
+        compression = RxHttpPlugins.getRequestCompression();
     }
 
     @Override
     public final RequestBody buildRequestBody() {
         RequestBody requestBody = getRequestBody();
         //Wrap RequestBody if callback not null
-        return callback != null ? new ProgressRequestBody(requestBody, callback) : requestBody;
+        if (callback != null) requestBody = new ProgressRequestBody(requestBody, callback);
+        //Compress outside of the progress, which counts the uncompressed bytes
+        if (compression != null) requestBody = compression.compress(requestBody, getSimpleUrl());
+        return requestBody;
     }
 
     public final P setProgressCallback(int minPeriod, ProgressCallback callback) {
         this.callback = new ProgressCallbackHelper(minPeriod, callback);
         return self();
     }
+
+    /**
+     * @param compression null to send the body as is, overrides RxHttpPlugins.setRequestCompression
+     */
+    public final P setCompression(@Nullable RequestCompression compression) {
+        this.compression = compression;
+        return self();
+    }
+
+    @Nullable
+    public final RequestCompression getCompression() {
+        return compression;
+    }
 }
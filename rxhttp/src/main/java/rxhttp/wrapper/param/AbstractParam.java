@@ -198,6 +198,34 @@ public abstract class AbstractParam<P extends Param<P>> extends Param<P> {
         return self();
     }
 
+    @Override
+    public final long getNegativeCacheTime() {
+        return cacheStrategy.getNegativeCacheTime();
+    }
+
+    @Override
+    public final P setNegativeCacheTime(long negativeCacheTime) {
+        cacheStrategy.setNegativeCacheTime(negativeCacheTime);
+        return self();
+    }
+
+    @Override
+    public final P addCacheTag(String tag) {
+        cacheStrategy.addCacheTag(tag);
+        return self();
+    }
+
+    @Override
+    public final long getCacheStaleTime() {
+        return cacheStrategy.getCacheStaleTime();
+    }
+
+    @Override
+    public final P setCacheStaleTime(long staleTime) {
+        cacheStrategy.setCacheStaleTime(staleTime);
+        return self();
+    }
+
     @Override
     public final CacheMode getCacheMode() {
         return cacheStrategy.getCacheMode();
@@ -212,6 +240,9 @@ public abstract class AbstractParam<P extends Param<P>> extends Param<P> {
     @Override
     public final Request buildRequest() {
         RxHttpPlugins.onParamAssembly(this);
+        //缓存策略随请求传递，缓存拦截器从tag中读取，见CacheInterceptor.TAGGED
+        boolean cacheEnabled = getCacheMode() != CacheMode.ONLY_NETWORK || getNegativeCacheTime() > 0;
+        requestBuilder.tag(CacheStrategy.class, cacheEnabled ? getCacheStrategy() : null);
         return BuildUtil.buildRequest(this, requestBuilder);
     }
 
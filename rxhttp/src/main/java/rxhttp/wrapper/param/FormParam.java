@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.MultipartBody.Part;
@@ -131,15 +132,13 @@ public class FormParam extends AbstractBodyParam<FormParam> implements IPart<For
 
     @Override
     public String buildCacheKey() {
-        List<KeyValuePair> cachePairs = new ArrayList<>();
-        List<KeyValuePair> queryPairs = getQueryParam();
-        List<KeyValuePair> bodyPairs = bodyParam;
-        if (queryPairs != null)
-            cachePairs.addAll(queryPairs);
-        if (bodyPairs != null)
-            cachePairs.addAll(bodyPairs);
-        List<KeyValuePair> pairs = CacheUtil.excludeCacheKey(cachePairs);
-        return BuildUtil.getHttpUrl(getSimpleUrl(), pairs, getPaths()).toString();
+        List<KeyValuePair> queryPairs = CacheUtil.excludeCacheKey(getQueryParam());
+        HttpUrl httpUrl = BuildUtil.getHttpUrl(getSimpleUrl(), queryPairs, getPaths());
+        if (bodyParam == null || bodyParam.isEmpty()) return httpUrl.toString();
+        //表单参数只以md5参与cacheKey，避免大表单拼出超长的cacheKey
+        return httpUrl.newBuilder()
+            .addQueryParameter("formMd5", CacheUtil.md5Pairs(bodyParam))
+            .toString();
     }
 
     @Override
@@ -14,14 +14,28 @@ public interface ICache<P extends Param<P>> {
 
     P setCacheValidTime(long cacheTime);
 
+    P setCacheStaleTime(long staleTime);
+
     P setCacheMode(CacheMode cacheMode);
 
+    /**
+     * Tag the cache, all caches of a tag can be removed at once with
+     * {@link rxhttp.wrapper.cache.InternalCache#removeTag(String)}
+     */
+    P addCacheTag(String tag);
+
+    P setNegativeCacheTime(long negativeCacheTime);
+
     CacheStrategy getCacheStrategy();
 
     String getCacheKey();
 
     long getCacheValidTime();
 
+    long getCacheStaleTime();
+
+    long getNegativeCacheTime();
+
     CacheMode getCacheMode();
 
 }
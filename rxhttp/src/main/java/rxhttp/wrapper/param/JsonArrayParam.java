@@ -22,7 +22,6 @@ import rxhttp.wrapper.callback.JsonConverter;
 import rxhttp.wrapper.entity.KeyValuePair;
 import rxhttp.wrapper.utils.BuildUtil;
 import rxhttp.wrapper.utils.CacheUtil;
-import rxhttp.wrapper.utils.GsonUtil;
 import rxhttp.wrapper.utils.JsonUtil;
 
 /**
@@ -122,9 +121,8 @@ public class JsonArrayParam extends AbstractBodyParam<JsonArrayParam> {
     public String buildCacheKey() {
         List<KeyValuePair> queryPairs = CacheUtil.excludeCacheKey(getQueryParam());
         HttpUrl httpUrl = BuildUtil.getHttpUrl(getSimpleUrl(), queryPairs, getPaths());
-        List<Object> list = CacheUtil.excludeCacheKey(bodyParam);
-        String json = GsonUtil.toJson(list);
-        Builder builder = httpUrl.newBuilder().addQueryParameter("json", json);
+        //请求体只以md5参与cacheKey，避免为此再序列化一次完整的json
+        Builder builder = httpUrl.newBuilder().addQueryParameter("jsonMd5", CacheUtil.md5Json(bodyParam));
         return builder.toString();
     }
 
@@ -21,7 +21,6 @@ import rxhttp.wrapper.callback.JsonConverter;
 import rxhttp.wrapper.entity.KeyValuePair;
 import rxhttp.wrapper.utils.BuildUtil;
 import rxhttp.wrapper.utils.CacheUtil;
-import rxhttp.wrapper.utils.GsonUtil;
 import rxhttp.wrapper.utils.JsonUtil;
 
 /**
@@ -86,9 +85,8 @@ public class JsonParam extends AbstractBodyParam<JsonParam> {
     public String buildCacheKey() {
         List<KeyValuePair> queryPairs = CacheUtil.excludeCacheKey(getQueryParam());
         HttpUrl httpUrl = BuildUtil.getHttpUrl(getSimpleUrl(), queryPairs, getPaths());
-        Map<?, ?> param = CacheUtil.excludeCacheKey(bodyParam);
-        String json = GsonUtil.toJson(param);
-        Builder builder = httpUrl.newBuilder().addQueryParameter("json", json);
+        //请求体只以md5参与cacheKey，避免为此再序列化一次完整的json
+        Builder builder = httpUrl.newBuilder().addQueryParameter("jsonMd5", CacheUtil.md5Json(bodyParam));
         return builder.toString();
     }
 
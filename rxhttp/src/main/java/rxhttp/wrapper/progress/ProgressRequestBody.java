@@ -47,6 +47,11 @@ public class ProgressRequestBody extends RequestBody {
             || sink.toString().contains(
             "com.android.tools.profiler.support.network.HttpTracker$OutputStreamTracker")) {
             requestBody.writeTo(sink);
+        } else if (requestBody instanceof ProgressWritable) {
+            //Counted by the body itself, without another buffered sink in between
+            callback.onStart(0);
+            long contentLength = contentLength();
+            ((ProgressWritable) requestBody).writeTo(sink, byteCount -> callback.onProgress(byteCount, contentLength));
         } else {
             BufferedSink bufferedSink = Okio.buffer(sink(sink));
             requestBody.writeTo(bufferedSink);
@@ -0,0 +1,31 @@
+package rxhttp.wrapper.progress;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+import okio.BufferedSink;
+
+/**
+ * A RequestBody that reports the bytes it writes itself, so that {@link ProgressRequestBody} writes it
+ * to the sink of the request directly, instead of counting the bytes through another buffered sink.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 04:05
+ */
+public interface ProgressWritable {
+
+    /**
+     * @param listener null to report no progress, as {@code writeTo(BufferedSink)} does
+     */
+    void writeTo(@NotNull BufferedSink sink, @Nullable Listener listener) throws IOException;
+
+    interface Listener {
+        /**
+         * @param byteCount bytes emitted to the sink since the previous call, buffered bytes are reported once emitted
+         */
+        void onWritten(long byteCount);
+    }
+}
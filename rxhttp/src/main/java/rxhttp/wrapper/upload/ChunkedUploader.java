@@ -0,0 +1,309 @@
+package rxhttp.wrapper.upload;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okio.BufferedSink;
+import rxhttp.wrapper.callback.ProgressCallback;
+import rxhttp.wrapper.callback.ProgressCallbackHelper;
+import rxhttp.wrapper.entity.FileRequestBody;
+
+/**
+ * Uploads a large file in fixed-size parts, several parts at the same time, each part is retried on
+ * its own. With a manifest file, an interrupted upload resumes from the parts the server has
+ * acknowledged, see {@link UploadManifest}. The requests themselves are made by an {@link UploadProtocol}.
+ * <pre>
+ * String url = new ChunkedUploader(file, protocol)
+ *     .setManifest(new File(context.getFilesDir(), file.getName() + ".upload"))
+ *     .setProgressCallback(100, (currentSize, totalSize, speed) -&gt; { })
+ *     .upload();
+ * </pre>
+ * upload() blocks, call it on a background thread.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 04:40
+ */
+public final class ChunkedUploader {
+
+    public static final long DEFAULT_PART_SIZE = 5 * 1024 * 1024;
+
+    private final File file;
+    private final UploadProtocol protocol;
+    private long partSize = DEFAULT_PART_SIZE;
+    private int concurrency = 3;
+    private int maxRetries = 2;
+    private long retryDelayMillis = 1000;
+    private @Nullable File manifestFile;
+    private @Nullable MediaType mediaType;
+    private @Nullable Progress progress;
+
+    public ChunkedUploader(@NotNull File file, @NotNull UploadProtocol protocol) {
+        this.file = file;
+        this.protocol = protocol;
+    }
+
+    /**
+     * @param partSize bytes of each part but the last one, 5 MiB by default
+     */
+    public ChunkedUploader setPartSize(long partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("partSize > 0 required but it was " + partSize);
+        }
+        this.partSize = partSize;
+        return this;
+    }
+
+    /**
+     * @param concurrency maximum number of parts uploaded at the same time, 3 by default
+     */
+    public ChunkedUploader setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency > 0 required but it was " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param maxRetries       retries of each part, 2 by default
+     * @param retryDelayMillis delay before the first retry, the n-th retry waits n times as long
+     */
+    public ChunkedUploader setRetry(int maxRetries, long retryDelayMillis) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries >= 0 required but it was " + maxRetries);
+        }
+        if (retryDelayMillis < 0) {
+            throw new IllegalArgumentException("retryDelayMillis >= 0 required but it was " + retryDelayMillis);
+        }
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param manifestFile where the acknowledged parts are recorded, deleted once the upload completes,
+     *                     null to not resume interrupted uploads
+     */
+    public ChunkedUploader setManifest(@Nullable File manifestFile) {
+        this.manifestFile = manifestFile;
+        return this;
+    }
+
+    public ChunkedUploader setMediaType(@Nullable MediaType mediaType) {
+        this.mediaType = mediaType;
+        return this;
+    }
+
+    /**
+     * @param minPeriod minimum period between callbacks in milliseconds, progress of every part is
+     *                  summed up, a resumed upload starts with the bytes of the acknowledged parts
+     */
+    public ChunkedUploader setProgressCallback(int minPeriod, @NotNull ProgressCallback callback) {
+        ProgressCallbackHelper helper = new ProgressCallbackHelper(minPeriod, callback);
+        return setProgress(new Progress() {
+            @Override
+            public void onStart(long acknowledgedBytes) {
+                helper.onStart(acknowledgedBytes);
+            }
+
+            @Override
+            public void onProgress(long byteCount, long contentLength) {
+                helper.onProgress(byteCount, contentLength);
+            }
+        });
+    }
+
+    ChunkedUploader setProgress(@Nullable Progress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * @return the result of {@link UploadProtocol#complete}
+     * @throws IOException the last failure of a part that has no retries left, the other parts are
+     *                     cancelled, the manifest is kept to resume the upload
+     */
+    public String upload() throws IOException {
+        if (!file.isFile()) throw new FileNotFoundException(file.getPath());
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        long count = Math.max(1, (fileLength + partSize - 1) / partSize);
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("partSize " + partSize + " is too small for " + fileLength + " bytes");
+        }
+        int partCount = (int) count;
+
+        UploadManifest manifest = manifestFile != null ? UploadManifest.read(manifestFile) : null;
+        if (manifest != null && !manifest.matches(fileLength, lastModified, partSize)) {
+            //The file has changed, start over
+            manifest.delete();
+            manifest = null;
+        }
+        if (manifest == null) {
+            String uploadId = protocol.create(file, fileLength, partSize);
+            manifest = UploadManifest.create(manifestFile, uploadId, fileLength, lastModified, partSize);
+        }
+        try {
+            uploadParts(manifest, partCount);
+            String[] tags = manifest.tags(partCount);
+            if (tags == null) throw new IllegalStateException("Not every part has been acknowledged");
+            String result = protocol.complete(manifest.uploadId, Arrays.asList(tags));
+            manifest.delete();
+            return result;
+        } finally {
+            manifest.close();
+        }
+    }
+
+    private void uploadParts(UploadManifest manifest, int partCount) throws IOException {
+        List<Integer> pending = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            if (!manifest.isAcknowledged(partNumber)) pending.add(partNumber);
+        }
+        ProgressAggregator progress = null;
+        if (this.progress != null) {
+            this.progress.onStart(manifest.acknowledgedBytes(partCount));
+            progress = new ProgressAggregator(this.progress, manifest.fileLength, partCount);
+        }
+        if (pending.isEmpty()) return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, pending.size()), r -> {
+            Thread thread = new Thread(r, "RxHttp Chunked Upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            final ProgressAggregator finalProgress = progress;
+            for (int partNumber : pending) {
+                completionService.submit(() -> {
+                    uploadPart(manifest, partNumber, partCount, finalProgress);
+                    return null;
+                });
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    throw new IOException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        } finally {
+            executor.shutdownNow();
+            //Parts still in flight must not acknowledge to the manifest once it is closed
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void uploadPart(UploadManifest manifest, int partNumber, int partCount,
+                            @Nullable ProgressAggregator progress) throws IOException {
+        long offset = partSize * (partNumber - 1);
+        long length = manifest.partLength(partNumber, partCount);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                PartRequestBody body = new PartRequestBody(file, offset, length, mediaType, partNumber, progress);
+                String tag = protocol.uploadPart(manifest.uploadId, partNumber, offset, body);
+                manifest.acknowledge(partNumber, tag);
+                return;
+            } catch (IOException e) {
+                if (attempt >= maxRetries || Thread.currentThread().isInterrupted()) throw e;
+            }
+            try {
+                Thread.sleep(retryDelayMillis * (attempt + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+        }
+    }
+
+    //The progress of the whole upload, see ProgressCallbackHelper
+    interface Progress {
+
+        void onStart(long acknowledgedBytes);
+
+        void onProgress(long byteCount, long contentLength);
+    }
+
+    //Sums up the progress of the parts, bytes written again by a retry are only counted once
+    private static final class ProgressAggregator {
+
+        private final Progress callback;
+        private final long contentLength;
+        private final long[] reported; //by part index
+
+        ProgressAggregator(Progress callback, long contentLength, int partCount) {
+            this.callback = callback;
+            this.contentLength = contentLength;
+            this.reported = new long[partCount];
+        }
+
+        synchronized void onWritten(int partNumber, long written) {
+            long delta = written - reported[partNumber - 1];
+            if (delta <= 0) return;
+            reported[partNumber - 1] = written;
+            callback.onProgress(delta, contentLength);
+        }
+    }
+
+    //A FileRequestBody range, reporting its progress to the aggregator
+    private static final class PartRequestBody extends FileRequestBody {
+
+        private final int partNumber;
+        private final @Nullable ProgressAggregator progress;
+
+        PartRequestBody(File file, long offset, long length, @Nullable MediaType mediaType,
+                        int partNumber, @Nullable ProgressAggregator progress) {
+            super(file, offset, length, mediaType);
+            this.partNumber = partNumber;
+            this.progress = progress;
+        }
+
+        //writeTo(BufferedSink) comes here too, the listener is given when a ProgressRequestBody wraps the part
+        @Override
+        public void writeTo(@NotNull BufferedSink sink, @Nullable Listener listener) throws IOException {
+            if (progress == null) {
+                super.writeTo(sink, listener);
+                return;
+            }
+            long[] written = {0};
+            super.writeTo(sink, byteCount -> {
+                progress.onWritten(partNumber, written[0] += byteCount);
+                if (listener != null) listener.onWritten(byteCount);
+            });
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package rxhttp.wrapper.upload;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * Append-only record of a chunked upload, so that an interrupted upload resumes from the parts the
+ * server has acknowledged.
+ * <p>
+ * The manifest starts with {@link #MAGIC} and a version byte, then the upload: the upload id, length
+ * and last modified time of the file, and the part size. Each acknowledged part appends a record, its
+ * part number and its tag, and is flushed before the part counts as done. A record truncated by a
+ * crash ends the replay, that part is uploaded again, and the manifest is rewritten without it.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 04:40
+ */
+final class UploadManifest {
+
+    private static final ByteString MAGIC = ByteString.encodeUtf8("\u0000RXU");
+    private static final int VERSION = 1;
+
+    private final @Nullable File file; //null if the upload can't be resumed
+    final String uploadId;
+    final long fileLength;
+    final long lastModified;
+    final long partSize;
+    //part number -> tag, guarded by this
+    private final Map<Integer, String> parts;
+    private @Nullable BufferedSink sink;
+    private boolean closed;
+
+    private UploadManifest(@Nullable File file, String uploadId, long fileLength, long lastModified, long partSize,
+                           Map<Integer, String> parts) {
+        this.file = file;
+        this.uploadId = uploadId;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.partSize = partSize;
+        this.parts = parts;
+    }
+
+    /**
+     * @return null if there is no manifest, or it can't be read
+     */
+    @Nullable
+    static UploadManifest read(File file) {
+        UploadManifest manifest;
+        boolean truncated = false;
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            if (!source.rangeEquals(0, MAGIC)) return null;
+            source.skip(MAGIC.size());
+            if (source.readByte() != VERSION) return null;
+            String uploadId = readString(source);
+            long fileLength = source.readLong();
+            long lastModified = source.readLong();
+            long partSize = source.readLong();
+            Map<Integer, String> parts = new TreeMap<>();
+            try {
+                while (!source.exhausted()) {
+                    int partNumber = source.readInt();
+                    parts.put(partNumber, readString(source));
+                }
+            } catch (EOFException | IllegalArgumentException e) {
+                truncated = true; //By a crash, or corrupt, the part is uploaded again
+            }
+            manifest = new UploadManifest(file, uploadId, fileLength, lastModified, partSize, parts);
+        } catch (FileNotFoundException ignored) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+        //Records appended after a partial one couldn't be read
+        if (truncated) {
+            try {
+                manifest.rewrite();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @param file null to keep the manifest in memory only
+     */
+    static UploadManifest create(@Nullable File file, String uploadId, long fileLength, long lastModified,
+                                 long partSize) throws IOException {
+        UploadManifest manifest = new UploadManifest(file, uploadId, fileLength, lastModified, partSize, new TreeMap<>());
+        manifest.rewrite();
+        return manifest;
+    }
+
+    //Writes the whole manifest to a temporary file, then replaces the manifest with it
+    private void rewrite() throws IOException {
+        File file = this.file;
+        if (file == null) return;
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmpFile))) {
+            sink.write(MAGIC).writeByte(VERSION);
+            writeString(sink, uploadId);
+            sink.writeLong(fileLength).writeLong(lastModified).writeLong(partSize);
+            for (Map.Entry<Integer, String> entry : parts.entrySet()) {
+                sink.writeInt(entry.getKey());
+                writeString(sink, entry.getValue());
+            }
+        }
+        if (!tmpFile.renameTo(file)) {
+            //renameTo doesn't replace an existing file on every platform
+            if (!file.delete() || !tmpFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tmpFile + " to " + file);
+            }
+        }
+    }
+
+    //Whether the manifest was written for this version of the file
+    boolean matches(long fileLength, long lastModified, long partSize) {
+        return this.fileLength == fileLength && this.lastModified == lastModified && this.partSize == partSize;
+    }
+
+    synchronized boolean isAcknowledged(int partNumber) {
+        return parts.containsKey(partNumber);
+    }
+
+    synchronized long acknowledgedBytes(int partCount) {
+        long bytes = 0;
+        for (int partNumber : parts.keySet()) {
+            //A part the file doesn't have, e.g. from a damaged record
+            if (partNumber < 1 || partNumber > partCount) continue;
+            bytes += partLength(partNumber, partCount);
+        }
+        return bytes;
+    }
+
+    long partLength(int partNumber, int partCount) {
+        return partNumber < partCount ? partSize : fileLength - partSize * (partCount - 1);
+    }
+
+    synchronized void acknowledge(int partNumber, String tag) throws IOException {
+        if (closed) throw new IOException("manifest closed");
+        if (file != null) {
+            if (sink == null) sink = Okio.buffer(Okio.appendingSink(file));
+            sink.writeInt(partNumber);
+            writeString(sink, tag);
+            sink.flush();
+        }
+        parts.put(partNumber, tag);
+    }
+
+    //@return tags by part number, null if a part isn't acknowledged
+    @Nullable
+    synchronized String[] tags(int partCount) {
+        String[] tags = new String[partCount];
+        for (int i = 0; i < partCount; i++) {
+            String tag = parts.get(i + 1);
+            if (tag == null) return null;
+            tags[i] = tag;
+        }
+        return tags;
+    }
+
+    synchronized void close() {
+        closed = true;
+        OkHttpCompat.closeQuietly(sink);
+        sink = null;
+    }
+
+    void delete() {
+        close();
+        //noinspection ResultOfMethodCallIgnored
+        if (file != null) file.delete();
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        int length = source.readInt();
+        if (length < 0) throw new IllegalArgumentException("length < 0: " + length);
+        return source.readUtf8(length);
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeInt(bytes.size()).write(bytes);
+    }
+}
@@ -0,0 +1,48 @@
+package rxhttp.wrapper.upload;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.RequestBody;
+
+/**
+ * The server side of a {@link ChunkedUploader}, e.g. S3 style multipart uploads, or a custom api.
+ * Each method is usually one request, executed synchronously, e.g. with RxHttp's execute methods.
+ * {@link #uploadPart} is called from several threads at the same time.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 04:40
+ */
+public interface UploadProtocol {
+
+    /**
+     * Starts a new upload
+     *
+     * @return id of the upload on the server, saved in the manifest to resume the upload later
+     */
+    @NotNull
+    String create(@NotNull File file, long fileLength, long partSize) throws IOException;
+
+    /**
+     * Uploads one part, throwing an IOException makes the part be retried
+     *
+     * @param partNumber 1-based index of the part
+     * @param offset     position of the part in the file
+     * @param body       the bytes of the part, a {@link rxhttp.wrapper.entity.FileRequestBody} range
+     * @return acknowledgement of the part, e.g. its ETag, passed to {@link #complete}
+     */
+    @NotNull
+    String uploadPart(@NotNull String uploadId, int partNumber, long offset, @NotNull RequestBody body) throws IOException;
+
+    /**
+     * Called once every part has been acknowledged
+     *
+     * @param partTags acknowledgements of every part, by part number
+     * @return the response of the server, e.g. the url of the file
+     */
+    String complete(@NotNull String uploadId, @NotNull List<String> partTags) throws IOException;
+}
@@ -9,7 +9,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.net.URLConnection;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import okhttp3.FormBody;
 import okhttp3.Headers;
@@ -19,6 +18,7 @@ import okhttp3.MultipartBody;
 import okhttp3.MultipartBody.Part;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import rxhttp.wrapper.entity.CompressedRequestBody;
 import rxhttp.wrapper.entity.KeyValuePair;
 import rxhttp.wrapper.param.IRequest;
 
@@ -29,16 +29,19 @@ import rxhttp.wrapper.param.IRequest;
  */
 public class BuildUtil {
 
-    private static final Pattern PATH_TRAVERSAL = Pattern.compile("(.*/)?(\\.|%2e|%2E){1,2}(/.*)?");
-
     // Build Request
     public static Request buildRequest(@NotNull IRequest r, @NotNull Request.Builder builder) {
-        builder.url(r.getHttpUrl())
-            .method(r.getMethod().name(), r.buildRequestBody());
+        //The url is set first, getConverter() builds the request to read its tag
+        builder.url(r.getHttpUrl());
+        RequestBody body = r.buildRequestBody();
+        builder.method(r.getMethod().name(), body);
         Headers headers = r.getHeaders();
         if (headers != null) {
             builder.headers(headers);
         }
+        if (body instanceof CompressedRequestBody) {
+            builder.header("Content-Encoding", ((CompressedRequestBody) body).getEncoding());
+        }
         return builder.build();
     }
 
@@ -80,26 +83,17 @@ public class BuildUtil {
         return builder.build();
     }
 
-    //Build HttpUrl
+    //Build HttpUrl, url模版只解析一次，并按url缓存，见UrlTemplate
     public static HttpUrl getHttpUrl(@NotNull String url, @Nullable List<KeyValuePair> queryList,
                                      @Nullable List<KeyValuePair> paths) {
         if (paths != null) {
             for (KeyValuePair path : paths) {
-                String name = path.getKey();
-                Object value = path.getValue();
-                if (value == null) {
-                    throw new IllegalArgumentException("Path parameter \"" + name + "\" value must not be null.");
-                }
-                String replacement = PathEncoderKt.canonicalizeForPath(value.toString(), path.isEncoded());
-                String newUrl = url.replace("{" + name + "}", replacement);
-                if (PATH_TRAVERSAL.matcher(newUrl).matches()) {
-                    throw new IllegalArgumentException(
-                        "Path parameters shouldn't perform path traversal ('.' or '..'): " + name + " is " + value);
+                if (path.getValue() == null) {
+                    throw new IllegalArgumentException("Path parameter \"" + path.getKey() + "\" value must not be null.");
                 }
-                url = newUrl;
             }
         }
-        HttpUrl httpUrl = HttpUrl.get(url);
+        HttpUrl httpUrl = UrlTemplate.get(url).resolve(paths);
         if (queryList == null || queryList.size() == 0) return httpUrl;
         HttpUrl.Builder builder = httpUrl.newBuilder();
         for (KeyValuePair pair : queryList) {
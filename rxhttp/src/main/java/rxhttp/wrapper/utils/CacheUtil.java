@@ -1,13 +1,23 @@
 package rxhttp.wrapper.utils;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import okio.BufferedSink;
+import okio.HashingSink;
+import okio.Okio;
 import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.entity.KeyValuePair;
 
@@ -68,4 +78,115 @@ public class CacheUtil {
         }
         return newParam;
     }
+
+    /**
+     * 以流的方式计算请求体的md5，与Gson序列化出的json一致，但不生成完整的json字符串，
+     * 顶层及List中Map/JsonObject元素的key会按excludeCacheKeys剔除
+     *
+     * @param body Map、List或任意可被Gson序列化的对象
+     * @return md5 hex
+     */
+    public static String md5Json(@Nullable Object body) {
+        List<String> excludeCacheKeys = RxHttpPlugins.getExcludeCacheKeys();
+        HashingSink hashingSink = HashingSink.md5(Okio.blackhole());
+        BufferedSink sink = Okio.buffer(hashingSink);
+        Gson gson = GsonUtil.buildGson();
+        try {
+            JsonWriter writer = gson.newJsonWriter(
+                new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+            if (body instanceof List) {
+                writer.beginArray();
+                for (Object element : (List<?>) body) {
+                    if (element instanceof KeyValuePair) {
+                        if (excludeCacheKeys.contains(((KeyValuePair) element).getKey())) continue;
+                    } else if (element instanceof Map) {
+                        if (isExcluded(((Map<?, ?>) element).keySet(), excludeCacheKeys)) continue;
+                    } else if (element instanceof JsonObject) {
+                        if (isExcluded(((JsonObject) element).keySet(), excludeCacheKeys)) continue;
+                    }
+                    writeJson(gson, writer, element, excludeCacheKeys);
+                }
+                writer.endArray();
+            } else {
+                writeJson(gson, writer, body, excludeCacheKeys);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); //Never happens, the sink is in memory
+        }
+        return hashingSink.hash().hex();
+    }
+
+    /**
+     * 以流的方式计算表单参数的md5，key会按excludeCacheKeys剔除，value为null的参数不会被提交，也不参与计算
+     *
+     * @return md5 hex
+     */
+    public static String md5Pairs(@Nullable List<KeyValuePair> pairs) {
+        List<String> excludeCacheKeys = RxHttpPlugins.getExcludeCacheKeys();
+        HashingSink hashingSink = HashingSink.md5(Okio.blackhole());
+        BufferedSink sink = Okio.buffer(hashingSink);
+        try {
+            if (pairs != null) {
+                for (KeyValuePair pair : pairs) {
+                    Object value = pair.getValue();
+                    String key = pair.getKey();
+                    if (value == null || excludeCacheKeys.contains(key)) continue;
+                    //长度前缀，避免不同的参数拼接出相同的字节
+                    writeField(sink, key);
+                    writeField(sink, value.toString());
+                    sink.writeByte(pair.isEncoded() ? 1 : 0);
+                }
+            }
+            sink.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return hashingSink.hash().hex();
+    }
+
+    private static void writeField(BufferedSink sink, String field) throws IOException {
+        sink.writeDecimalLong(field.length()).writeByte(':').writeUtf8(field);
+    }
+
+    //Map及JsonObject只剔除第一层的key，与excludeCacheKey(Map)一致
+    private static void writeJson(Gson gson, JsonWriter writer, @Nullable Object value,
+                                  List<String> excludeCacheKeys) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                if (excludeCacheKeys.contains(key)) continue;
+                writer.name(key);
+                Object fieldValue = entry.getValue();
+                if (fieldValue == null) {
+                    writer.nullValue();
+                } else {
+                    gson.toJson(fieldValue, fieldValue.getClass(), writer);
+                }
+            }
+            writer.endObject();
+        } else if (value instanceof JsonObject) {
+            writer.beginObject();
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) value).entrySet()) {
+                if (excludeCacheKeys.contains(entry.getKey())) continue;
+                writer.name(entry.getKey());
+                gson.toJson(entry.getValue(), writer);
+            }
+            writer.endObject();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
+
+    //剔除后为空的元素不参与计算，与excludeCacheKey(List)一致
+    private static boolean isExcluded(Iterable<?> keys, List<String> excludeCacheKeys) {
+        if (excludeCacheKeys.isEmpty()) return false;
+        for (Object key : keys) {
+            if (!excludeCacheKeys.contains(String.valueOf(key))) return false;
+        }
+        return true;
+    }
 }
@@ -6,10 +6,15 @@ import android.graphics.BitmapFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 
+import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import rxhttp.Platform;
+import rxhttp.RxHttpPlugins;
 import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.cache.CacheHit;
+import rxhttp.wrapper.cache.ParsedCache;
+import rxhttp.wrapper.callback.Function;
 import rxhttp.wrapper.callback.IConverter;
 import rxhttp.wrapper.entity.ParameterizedTypeImpl;
 
@@ -41,8 +46,24 @@ public class Converter {
             return (T) BitmapFactory.decodeStream(body.byteStream());
         } else {
             boolean needDecodeResult = OkHttpCompat.needDecodeResult(response);
-            IConverter converter = OkHttpCompat.request(response).tag(IConverter.class);
-            return converter.convert(body, type, needDecodeResult);
+            Request request = OkHttpCompat.request(response);
+            IConverter converter = request.tag(IConverter.class);
+            CacheHit cacheHit = request.tag(CacheHit.class);
+            ParsedCache parsedCache = RxHttpPlugins.getParsedCache();
+            if (cacheHit == null || parsedCache == null) {
+                return converter.convert(body, type, needDecodeResult);
+            }
+            //同一解析器、同一解码器解析过的对象才可复用
+            Function<String, String> decoder = needDecodeResult ? RxHttpPlugins.getResultDecoder() : null;
+            //缓存命中，且缓存未变化，直接返回上次解析的对象
+            Object parsed = parsedCache.get(cacheHit, type, converter, decoder);
+            if (parsed != null) {
+                body.close();
+                return (T) parsed;
+            }
+            T t = converter.convert(body, type, needDecodeResult);
+            parsedCache.put(cacheHit, type, converter, decoder, t);
+            return t;
         }
     }
 }
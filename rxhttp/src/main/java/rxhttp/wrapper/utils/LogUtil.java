@@ -31,6 +31,7 @@ import rxhttp.Platform;
 import rxhttp.RxHttpPlugins;
 import rxhttp.internal.RxHttpVersion;
 import rxhttp.wrapper.OkHttpCompat;
+import rxhttp.wrapper.entity.CompressedRequestBody;
 import rxhttp.wrapper.entity.FileRequestBody;
 import rxhttp.wrapper.entity.UriRequestBody;
 import rxhttp.wrapper.exception.ProxyException;
@@ -155,7 +156,8 @@ public class LogUtil {
             builder.append("\n").append(readHeaders(requestBuilder.build().headers()));
             if (body != null) {
                 builder.append("\n");
-                if (bodyHasUnknownEncoding(userRequest.headers())) {
+                //The body is printed before it is compressed
+                if (!(body instanceof CompressedRequestBody) && bodyHasUnknownEncoding(userRequest.headers())) {
                     builder.append("(binary ")
                         .append(body.contentLength())
                         .append("-byte encoded body omitted)");
@@ -206,6 +208,9 @@ public class LogUtil {
     }
 
     private static String requestBody2Str(@NotNull RequestBody body) throws IOException {
+        if (body instanceof CompressedRequestBody) {
+            body = ((CompressedRequestBody) body).getRequestBody();
+        }
         if (body instanceof ProgressRequestBody) {
             body = ((ProgressRequestBody) body).getRequestBody();
         }
@@ -0,0 +1,155 @@
+package rxhttp.wrapper.utils;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.HttpUrl;
+import rxhttp.wrapper.entity.KeyValuePair;
+
+/**
+ * A url split once into literal chunks and {@code {name}} placeholders, cached by the url string.
+ * A url without placeholders is also parsed once, {@link HttpUrl} being immutable.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 01:10
+ */
+final class UrlTemplate {
+
+    //The cache is cleared when full, urls are usually constants of a few dozen apis
+    private static final int MAX_CACHED = 256;
+    private static final ConcurrentHashMap<String, UrlTemplate> cache = new ConcurrentHashMap<>();
+
+    private final String url;
+    //Literal chunks, chunks[i] precedes names[i], the last chunk follows the last placeholder
+    private final String[] chunks;
+    private final String[] names;
+    private volatile @Nullable HttpUrl httpUrl; //Parsed url, only when there is no placeholder
+
+    private UrlTemplate(String url, String[] chunks, String[] names) {
+        this.url = url;
+        this.chunks = chunks;
+        this.names = names;
+    }
+
+    static UrlTemplate get(String url) {
+        UrlTemplate template = cache.get(url);
+        if (template == null) {
+            if (cache.size() >= MAX_CACHED) cache.clear();
+            template = compile(url);
+            cache.put(url, template);
+        }
+        return template;
+    }
+
+    private static UrlTemplate compile(String url) {
+        List<String> chunks = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = url.indexOf('{', start)) >= 0) {
+            int close = url.indexOf('}', open + 1);
+            if (close < 0) break;
+            int nested = url.lastIndexOf('{', close);
+            //"{a{b}" 仅把{b}当作占位符，与String.replace("{b}")一致
+            chunks.add(url.substring(start, nested));
+            names.add(url.substring(nested + 1, close));
+            start = close + 1;
+        }
+        chunks.add(url.substring(start));
+        return new UrlTemplate(url, chunks.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    /**
+     * @param paths path parameters, their values are not null
+     * @return the url with every placeholder replaced by the value of the first path parameter
+     * of the same name, placeholders without a parameter are kept as is
+     */
+    HttpUrl resolve(@Nullable List<KeyValuePair> paths) {
+        if (names.length == 0 || paths == null || paths.isEmpty()) {
+            HttpUrl httpUrl = this.httpUrl;
+            if (httpUrl == null) {
+                httpUrl = HttpUrl.get(url);
+                if (names.length == 0) this.httpUrl = httpUrl;
+            }
+            return httpUrl;
+        }
+        StringBuilder builder = new StringBuilder(url.length() + 16 * names.length);
+        int[] ranges = null; //start, end of each substituted value
+        KeyValuePair[] substituted = null;
+        for (int i = 0; i < names.length; i++) {
+            builder.append(chunks[i]);
+            KeyValuePair path = find(paths, names[i]);
+            if (path == null) {
+                builder.append('{').append(names[i]).append('}');
+                continue;
+            }
+            if (ranges == null) {
+                ranges = new int[names.length * 2];
+                substituted = new KeyValuePair[names.length];
+            }
+            ranges[i * 2] = builder.length();
+            builder.append(PathEncoderKt.canonicalizeForPath(path.getValue().toString(), path.isEncoded()));
+            ranges[i * 2 + 1] = builder.length();
+            substituted[i] = path;
+        }
+        builder.append(chunks[chunks.length - 1]);
+        if (substituted != null) {
+            for (int i = 0; i < names.length; i++) {
+                KeyValuePair path = substituted[i];
+                if (path != null) checkTraversal(builder, ranges[i * 2], ranges[i * 2 + 1], path);
+            }
+        }
+        return HttpUrl.get(builder.toString());
+    }
+
+    @Nullable
+    private static KeyValuePair find(List<KeyValuePair> paths, String name) {
+        for (int i = 0, size = paths.size(); i < size; i++) {
+            KeyValuePair path = paths.get(i);
+            if (path.getKey().equals(name)) return path;
+        }
+        return null;
+    }
+
+    //Only the segments a value is part of are checked, instead of the whole url
+    private static void checkTraversal(StringBuilder url, int start, int end, KeyValuePair path) {
+        int segmentStart = start;
+        while (segmentStart > 0 && !isDelimiter(url.charAt(segmentStart - 1))) segmentStart--;
+        int length = url.length();
+        for (int i = segmentStart; i <= length; i++) {
+            if (i < length && !isDelimiter(url.charAt(i))) continue;
+            if (isDots(url, segmentStart, i)) {
+                throw new IllegalArgumentException("Path parameters shouldn't perform path traversal ('.' or '..'): "
+                    + path.getKey() + " is " + path.getValue());
+            }
+            if (i >= end) break; //The segment the value ends in has been checked
+            segmentStart = i + 1;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '/' || c == '?' || c == '#';
+    }
+
+    //Whether the segment is ".", "..", or their percent-encoded forms
+    private static boolean isDots(CharSequence s, int start, int end) {
+        int dots = 0;
+        int i = start;
+        while (i < end) {
+            if (s.charAt(i) == '.') {
+                i++;
+            } else if (i + 2 < end && s.charAt(i) == '%' && s.charAt(i + 1) == '2'
+                && (s.charAt(i + 2) == 'e' || s.charAt(i + 2) == 'E')) {
+                i += 3;
+            } else {
+                return false;
+            }
+            if (++dots > 2) return false;
+        }
+        return dots > 0;
+    }
+}
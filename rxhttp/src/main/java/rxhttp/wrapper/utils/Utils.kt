@@ -8,6 +8,7 @@ import okhttp3.Response
 import okio.Buffer
 import okio.Source
 import rxhttp.wrapper.OkHttpCompat
+import rxhttp.wrapper.cache.NegativeCache
 import rxhttp.wrapper.entity.ParameterizedTypeImpl
 import rxhttp.wrapper.parse.Parser
 import java.io.Closeable
@@ -38,7 +39,7 @@ internal suspend fun <T> Call.await(parser: Parser<T>): T {
 
             override fun onResponse(call: Call, response: Response) {
                 try {
-                    continuation.resume(parser.onParse(response))
+                    continuation.resume(NegativeCache.parse(parser, response))
                 } catch (t: Throwable) {
                     continuation.resumeWithException(t)
                 }
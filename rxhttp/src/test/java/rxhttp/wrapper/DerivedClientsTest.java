@@ -0,0 +1,28 @@
+package rxhttp.wrapper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 02:10
+ */
+public class DerivedClientsTest {
+
+    @Test
+    public void testClientsAreShared() {
+        OkHttpClient base = new OkHttpClient();
+        OkHttpClient client = DerivedClients.get(base, 0, 5000, 0, true, true);
+        Assert.assertNotSame(base, client);
+        Assert.assertSame(client, DerivedClients.get(base, 0, 5000, 0, true, true));
+        Assert.assertEquals(5000, client.readTimeoutMillis());
+        Assert.assertEquals(base.interceptors().size() + 2, client.interceptors().size());
+
+        Assert.assertNotSame(client, DerivedClients.get(base, 0, 5000, 0, false, true));
+        Assert.assertNotSame(client, DerivedClients.get(new OkHttpClient(), 0, 5000, 0, true, true));
+        Assert.assertSame(base, DerivedClients.get(base, 0, 0, 0, false, false));
+    }
+}
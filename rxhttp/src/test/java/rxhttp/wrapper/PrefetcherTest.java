@@ -0,0 +1,137 @@
+package rxhttp.wrapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.Timeout;
+
+public class PrefetcherTest {
+
+    @Test
+    public void testQueuedPrefetchIsCancelledByForegroundRequest() throws Exception {
+        Prefetcher prefetcher = new Prefetcher(1);
+        LaneCall blocking = new LaneCall("https://example.com/a", false);
+        LaneCall queued = new LaneCall("https://example.com/b", false);
+        prefetcher.prefetch(Collections.singletonList(() -> blocking));
+        prefetcher.prefetch(Collections.singletonList(() -> queued));
+        Assert.assertTrue(blocking.started.await(5, TimeUnit.SECONDS));
+
+        Prefetcher.onRequest("https://example.com/b", new LaneCall("https://example.com/b", false));
+        blocking.release.countDown();
+        Assert.assertTrue(queued.finished.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(queued.canceled);
+        Assert.assertFalse(queued.fetched);
+    }
+
+    @Test
+    public void testPrefetchInterceptedOnAnotherThread() throws Exception {
+        Prefetcher prefetcher = new Prefetcher(1);
+        //Like SingleFlight, the interceptor runs on a dispatcher thread
+        LaneCall prefetch = new LaneCall("https://example.com/c", true);
+        prefetcher.prefetch(Collections.singletonList(() -> prefetch));
+        Assert.assertTrue(prefetch.started.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse("a prefetch isn't a foreground request", prefetch.canceled);
+
+        Prefetcher.onRequest("https://example.com/c", new LaneCall("https://example.com/c", false));
+        Assert.assertTrue(prefetch.canceled);
+        prefetch.release.countDown();
+        Assert.assertTrue(prefetch.finished.await(5, TimeUnit.SECONDS));
+    }
+
+    //Reports itself to the Prefetcher like CacheInterceptor does, then waits until released
+    private static final class LaneCall implements Call {
+
+        private final Request request;
+        private final boolean interceptOnAnotherThread;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean canceled;
+        volatile boolean fetched;
+
+        LaneCall(String url, boolean interceptOnAnotherThread) {
+            this.request = new Request.Builder().url(url).build();
+            this.interceptOnAnotherThread = interceptOnAnotherThread;
+        }
+
+        @NotNull
+        @Override
+        public Response execute() throws IOException {
+            try {
+                if (interceptOnAnotherThread) {
+                    Thread thread = new Thread(() -> Prefetcher.onRequest(request.url().toString(), this));
+                    thread.start();
+                    thread.join();
+                } else {
+                    Prefetcher.onRequest(request.url().toString(), this);
+                }
+                if (canceled) throw new IOException("Canceled");
+                started.countDown();
+                release.await();
+                fetched = true;
+                return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(OkHttpCompat.create(MediaType.get("text/plain"), 0, new Buffer()))
+                    .build();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        @NotNull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public void enqueue(@NotNull Callback responseCallback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return started.getCount() == 0;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @NotNull
+        @Override
+        public Call clone() {
+            return new LaneCall(request.url().toString(), interceptOnAnotherThread);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package rxhttp.wrapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.Timeout;
+
+public class SingleFlightCallTest {
+
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Test
+    public void testIdenticalRequestsShareOneCall() throws Exception {
+        FakeCall first = new FakeCall(request("a"));
+        FakeCall second = new FakeCall(request("a"));
+        Results results = new Results(3);
+        new SingleFlightCall(client, "key", first).enqueue(results);
+        new SingleFlightCall(client, "key", second).enqueue(results);
+        new SingleFlightCall(client, "key", new FakeCall(request("a"))).enqueue(results);
+
+        first.respond("hello");
+        results.await();
+        Assert.assertEquals(1, first.enqueued.get());
+        Assert.assertEquals(0, second.enqueued.get());
+        Assert.assertEquals(3, results.bodies.size());
+        for (String body : results.bodies) Assert.assertEquals("hello", body);
+    }
+
+    @Test
+    public void testDifferentHeadersOrClientsAreNotCoalesced() throws Exception {
+        FakeCall first = new FakeCall(request("a"));
+        FakeCall otherHeaders = new FakeCall(request("b"));
+        FakeCall otherClient = new FakeCall(request("a"));
+        Results results = new Results(3);
+        new SingleFlightCall(client, "key", first).enqueue(results);
+        new SingleFlightCall(client, "key", otherHeaders).enqueue(results);
+        new SingleFlightCall(new OkHttpClient(), "key", otherClient).enqueue(results);
+
+        Assert.assertEquals(1, first.enqueued.get());
+        Assert.assertEquals(1, otherHeaders.enqueued.get());
+        Assert.assertEquals(1, otherClient.enqueued.get());
+        first.respond("a");
+        otherHeaders.respond("b");
+        otherClient.respond("c");
+        results.await();
+    }
+
+    @Test
+    public void testDifferentBodiesAreNotCoalesced() throws Exception {
+        FakeCall first = new FakeCall(post("{\"page\":1}"));
+        FakeCall sameBody = new FakeCall(post("{\"page\":1}"));
+        FakeCall otherBody = new FakeCall(post("{\"page\":2}"));
+        Results results = new Results(3);
+        //A custom cache key, the same for both pages
+        new SingleFlightCall(client, "feed", first).enqueue(results);
+        new SingleFlightCall(client, "feed", sameBody).enqueue(results);
+        new SingleFlightCall(client, "feed", otherBody).enqueue(results);
+
+        Assert.assertEquals(1, first.enqueued.get());
+        Assert.assertEquals(0, sameBody.enqueued.get());
+        Assert.assertEquals(1, otherBody.enqueued.get());
+        first.respond("page 1");
+        otherBody.respond("page 2");
+        results.await();
+        Assert.assertEquals(2, Collections.frequency(results.bodies, "page 1"));
+        Assert.assertEquals(1, Collections.frequency(results.bodies, "page 2"));
+    }
+
+    @Test
+    public void testFailureAndThrowingCallbacksReachEveryCaller() throws Exception {
+        FakeCall first = new FakeCall(request("a"));
+        Results results = new Results(3);
+        Callback throwing = new Callback() {
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                throw new IllegalStateException("parse error");
+            }
+
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                results.onFailure(call, e);
+            }
+        };
+        new SingleFlightCall(client, "key", first).enqueue(throwing);
+        new SingleFlightCall(client, "key", new FakeCall(request("a"))).enqueue(results);
+        new SingleFlightCall(client, "key", new FakeCall(request("a"))).enqueue(throwing);
+
+        first.respond("hello");
+        results.await();
+        Assert.assertEquals(1, results.bodies.size());
+        Assert.assertEquals(2, results.failures.size());
+
+        FakeCall failing = new FakeCall(request("a"));
+        Results failures = new Results(2);
+        new SingleFlightCall(client, "key", failing).enqueue(failures);
+        new SingleFlightCall(client, "key", new FakeCall(request("a"))).enqueue(failures);
+        failing.callback.onFailure(failing, new IOException("boom"));
+        failures.await();
+        Assert.assertEquals(2, failures.failures.size());
+    }
+
+    @Test
+    public void testCancelDetachesCaller() throws Exception {
+        FakeCall first = new FakeCall(request("a"));
+        Results results = new Results(2);
+        SingleFlightCall canceled = new SingleFlightCall(client, "key", first);
+        canceled.enqueue(results);
+        new SingleFlightCall(client, "key", new FakeCall(request("a"))).enqueue(results);
+
+        canceled.cancel();
+        Assert.assertFalse("the flight is still awaited", first.canceled);
+        first.respond("hello");
+        results.await();
+        Assert.assertEquals(1, results.bodies.size());
+        Assert.assertEquals(1, results.failures.size());
+
+        FakeCall alone = new FakeCall(request("a"));
+        SingleFlightCall call = new SingleFlightCall(client, "key", alone);
+        call.enqueue(new Results(1));
+        call.cancel();
+        Assert.assertTrue("nobody awaits the flight", alone.canceled);
+    }
+
+    private static Request post(String json) {
+        return new Request.Builder()
+            .url("https://example.com/feed")
+            .post(RequestBody.create(json, MediaType.get("application/json")))
+            .build();
+    }
+
+    private static Request request(String token) {
+        return new Request.Builder()
+            .url("https://example.com/user")
+            .header("Authorization", token)
+            .build();
+    }
+
+    private static final class Results implements Callback {
+
+        final List<String> bodies = new ArrayList<>();
+        final List<IOException> failures = new ArrayList<>();
+        private final CountDownLatch latch;
+
+        Results(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+            String body = response.body().string();
+            synchronized (this) {
+                bodies.add(body);
+            }
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            synchronized (this) {
+                failures.add(e);
+            }
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    //Responds only when the test says so
+    private static final class FakeCall implements Call {
+
+        final AtomicInteger enqueued = new AtomicInteger();
+        private final Request request;
+        volatile Callback callback;
+        volatile boolean canceled;
+
+        FakeCall(Request request) {
+            this.request = request;
+        }
+
+        void respond(String body) throws IOException {
+            Response response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(OkHttpCompat.create(MediaType.get("text/plain"), body.length(), new Buffer().writeUtf8(body)))
+                .build();
+            callback.onResponse(this, response);
+        }
+
+        @NotNull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @NotNull
+        @Override
+        public Response execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(@NotNull Callback responseCallback) {
+            enqueued.incrementAndGet();
+            callback = responseCallback;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return enqueued.get() > 0;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @NotNull
+        @Override
+        public Call clone() {
+            return new FakeCall(request);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import okhttp3.CipherSuite;
+import okhttp3.Handshake;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.TlsVersion;
+import okhttp3.internal.cache.DiskLruCache;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 17:20
+ */
+public class CacheManagerTest {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CacheManager cacheManager;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheManager = new CacheManager(folder.newFolder(), 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        cacheManager.setCompression(CacheCompression.GZIP, 512);
+        InternalCache cache = cacheManager.internalCache;
+        String json = repeat("{\"name\":\"rxhttp\"},", 500);
+        Request request = request("http://example.com/list");
+        //Unknown length, the codec is picked once the threshold is reached
+        cache.put(response(request, json, JSON, -1), null).body().string();
+        long compressedSize = cacheManager.size();
+        Assert.assertTrue(compressedSize < json.length() / 4);
+
+        Response cacheResponse = cache.get(request, null);
+        Assert.assertNotNull(cacheResponse);
+        Assert.assertEquals(json, cacheResponse.body().string());
+    }
+
+    @Test
+    public void testSmallAndBinaryBodiesAreStoredAsIs() throws IOException {
+        cacheManager.setCompression(CacheCompression.DEFLATE, 512);
+        InternalCache cache = cacheManager.internalCache;
+        Request small = request("http://example.com/small");
+        cache.put(response(small, "{\"a\":1}", JSON, -1), null).body().string();
+        Assert.assertEquals("{\"a\":1}", cache.get(small, null).body().string());
+
+        String image = repeat("x", 4096);
+        Request binary = request("http://example.com/image");
+        cache.put(response(binary, image, MediaType.get("image/png"), image.length()), null).body().string();
+        Assert.assertEquals(image, cache.get(binary, null).body().string());
+    }
+
+    @Test
+    public void testUpdateKeepsCodec() throws IOException {
+        cacheManager.setCompression(CacheCompression.DEFLATE, 0);
+        InternalCache cache = cacheManager.internalCache;
+        String json = repeat("{\"id\":1}", 100);
+        Request request = request("http://example.com/etag");
+        cache.put(response(request, json, JSON, json.length()), null).body().string();
+
+        Response cacheResponse = cache.get(request, null);
+        Response updated = cacheResponse.newBuilder()
+            .header("ETag", "\"v2\"")
+            .networkResponse(networkResponse(request))
+            .build();
+        cache.update(updated, null).close();
+
+        Response again = cache.get(request, null);
+        Assert.assertEquals("\"v2\"", again.header("ETag"));
+        Assert.assertEquals(json, again.body().string());
+    }
+
+    @Test
+    public void testStatsCountWritesAndAborts() throws IOException {
+        InternalCache cache = cacheManager.internalCache;
+        Request complete = request("http://example.com/complete");
+        Response writing = cache.put(response(complete, "{\"a\":1}", JSON, -1), null);
+        //The write latency is recorded once the body has been written
+        Assert.assertEquals(0, cacheManager.stats().writeLatency().count());
+        writing.body().string();
+
+        //The entry is being written, a second write of the same key is given up
+        Request same = request("http://example.com/same");
+        Response first = cache.put(response(same, "1", JSON, -1), null);
+        cache.put(response(same, "2", JSON, -1), null).body().string();
+        first.body().string();
+
+        CacheStats stats = cacheManager.stats();
+        Assert.assertEquals(2, stats.writeCount());
+        Assert.assertEquals(1, stats.writeAbortCount());
+        Assert.assertEquals(2, stats.writeLatency().count());
+        cacheManager.statsRecorder.reset();
+        Assert.assertEquals(0, cacheManager.stats().writeCount());
+    }
+
+    @Test
+    public void testSweepAndExpiredIndex() throws IOException {
+        InternalCache cache = cacheManager.internalCache;
+        long now = System.currentTimeMillis();
+        Request old = request("http://example.com/old");
+        Response oldResponse = response(old, "old", JSON, -1).newBuilder()
+            .receivedResponseAtMillis(now - 60_000)
+            .build();
+        cache.put(oldResponse, null).body().string();
+        Request fresh = request("http://example.com/fresh");
+        Response freshResponse = response(fresh, "fresh", JSON, -1).newBuilder()
+            .receivedResponseAtMillis(now)
+            .build();
+        cache.put(freshResponse, null).body().string();
+
+        //Known from memory, without reading the disk
+        Assert.assertTrue(cache.isExpired(old, null, now - 30_000, true));
+        Assert.assertFalse(cache.isExpired(fresh, null, now - 30_000, true));
+        Assert.assertFalse(cache.isExpired(request("http://example.com/unknown"), null, now, false));
+
+        Assert.assertEquals(1, cacheManager.sweep(30_000));
+        Assert.assertNull(cache.get(old, null));
+        Assert.assertEquals("fresh", cache.get(fresh, null).body().string());
+    }
+
+    @Test
+    public void testSharded() throws IOException {
+        CacheManager sharded = new CacheManager(folder.newFolder(), 1024 * 1024, 4);
+        try {
+            InternalCache cache = sharded.internalCache;
+            for (int i = 0; i < 32; i++) {
+                Request request = request("http://example.com/shard/" + i);
+                cache.put(response(request, "body" + i, JSON, -1), null).body().string();
+            }
+            for (int i = 0; i < 32; i++) {
+                Request request = request("http://example.com/shard/" + i);
+                Assert.assertEquals("body" + i, cache.get(request, null).body().string());
+            }
+            int count = 0;
+            for (Iterator<String> urls = sharded.urls(); urls.hasNext(); urls.next()) count++;
+            Assert.assertEquals(32, count);
+            Assert.assertEquals(1024 * 1024, sharded.maxSize());
+
+            cache.removeAll();
+            Assert.assertEquals(0, sharded.size());
+        } finally {
+            sharded.close();
+        }
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        cacheManager.setWriteBehind(1024);
+        InternalCache cache = cacheManager.internalCache;
+        Request small = request("http://example.com/behind");
+        cache.put(response(small, "{\"a\":1}", JSON, -1), null).body().string();
+        //Over the budget, dropped without blocking the read
+        Request large = request("http://example.com/large");
+        String body = repeat("l", 64 * 1024);
+        Assert.assertEquals(body, cache.put(response(large, body, JSON, -1), null).body().string());
+
+        Response cacheResponse = null;
+        for (int i = 0; i < 100 && cacheResponse == null; i++) {
+            cacheResponse = cache.get(small, null);
+            if (cacheResponse == null) Thread.sleep(20);
+        }
+        Assert.assertNotNull(cacheResponse);
+        Assert.assertEquals("{\"a\":1}", cacheResponse.body().string());
+        Assert.assertNull(cache.get(large, null));
+        Assert.assertEquals(1, cacheManager.stats().writeDropCount());
+    }
+
+    @Test
+    public void testFailedCloseReleasesTheEditor() throws IOException {
+        DiskLruCache diskLruCache = OkHttpCompat.newDiskLruCache(folder.newFolder(), 1, 2, 1024 * 1024);
+        try {
+            DiskLruCache.Editor editor = diskLruCache.edit("key");
+            Sink throwing = new ForwardingSink(Okio.blackhole()) {
+                @Override
+                public void close() throws IOException {
+                    throw new IOException("disk full");
+                }
+            };
+            CacheManager.CacheRequestImpl cacheRequest =
+                cacheManager.new CacheRequestImpl(editor, editor.newSink(1), throwing, () -> Assert.fail());
+            BufferedSink body = Okio.buffer(cacheRequest.body());
+            body.writeUtf8("body");
+            try {
+                body.close();
+                Assert.fail();
+            } catch (IOException expected) {
+            }
+            Assert.assertEquals(1, cacheManager.stats().writeAbortCount());
+            //The key can be written again
+            DiskLruCache.Editor again = diskLruCache.edit("key");
+            Assert.assertNotNull(again);
+            again.abort();
+        } finally {
+            diskLruCache.close();
+        }
+    }
+
+    @Test
+    public void testRemoveTagIsPersistent() throws IOException {
+        File directory = folder.newFolder();
+        CacheManager tagged = new CacheManager(directory, 1024 * 1024);
+        for (int page = 1; page <= 3; page++) {
+            String key = "http://example.com/articles?page=" + page;
+            tagged.internalCache.put(response(request(key), "page" + page, JSON, -1), key).body().string();
+            tagged.internalCache.tag(key, Collections.singleton("articles"));
+        }
+        String user = "http://example.com/user";
+        tagged.internalCache.put(response(request(user), "user", JSON, -1), user).body().string();
+        tagged.internalCache.tag(user, Arrays.asList("user", "articles"));
+        tagged.internalCache.removeTag("user");
+        tagged.close();
+        //The journal is kept in a subdirectory the cache owns
+        Assert.assertTrue(new File(directory, "rxhttp-tags/tags.journal").isFile());
+        Assert.assertFalse(new File(directory, "tags").exists());
+
+        //The index is read back from the journal
+        tagged = new CacheManager(directory, 1024 * 1024);
+        try {
+            Assert.assertNull(tagged.internalCache.get(request(user), user));
+            //The user cache left its other group when it was removed
+            Assert.assertEquals(3, tagged.removeTag("articles").size());
+            for (int page = 1; page <= 3; page++) {
+                String key = "http://example.com/articles?page=" + page;
+                Assert.assertNull(tagged.internalCache.get(request(key), key));
+            }
+            Assert.assertTrue(tagged.removeTag("articles").isEmpty());
+        } finally {
+            tagged.close();
+        }
+    }
+
+    @Test
+    public void testLegacyTagJournalIsMoved() throws IOException {
+        File directory = folder.newFolder();
+        String key = "http://example.com/user";
+        try (BufferedSink sink = Okio.buffer(Okio.sink(new File(directory, "tags")))) {
+            sink.writeUtf8("rxhttp.TagIndex\n1\n+ ")
+                .writeUtf8(ByteString.encodeUtf8("user").base64Url()).writeUtf8(" ")
+                .writeUtf8(ByteString.encodeUtf8(key).base64Url()).writeUtf8("\n");
+        }
+        CacheManager tagged = new CacheManager(directory, 1024 * 1024);
+        try {
+            Assert.assertEquals(Collections.singleton(key), tagged.removeTag("user"));
+            Assert.assertFalse(new File(directory, "tags").exists());
+        } finally {
+            tagged.close();
+        }
+    }
+
+    @Test
+    public void testExportAndImport() throws IOException {
+        cacheManager.setCompression(CacheCompression.GZIP, 0);
+        InternalCache cache = cacheManager.internalCache;
+        String key = "http://example.com/bootstrap";
+        Response network = response(request(key), repeat("{\"id\":1}", 100), JSON, -1).newBuilder()
+            .receivedResponseAtMillis(1_000)
+            .build();
+        cache.put(network, key).body().string();
+        cache.tag(key, Collections.singleton("bootstrap"));
+        Buffer snapshot = new Buffer();
+        Assert.assertEquals(1, cacheManager.exportTo(snapshot));
+
+        CacheManager imported = new CacheManager(folder.newFolder(), 1024 * 1024, 2);
+        try {
+            Assert.assertEquals(1, imported.importFrom(snapshot.clone()));
+            Response cacheResponse = imported.internalCache.get(request(key), key);
+            Assert.assertEquals(repeat("{\"id\":1}", 100), cacheResponse.body().string());
+            //The received time is kept, so the entry is as old as it was
+            Assert.assertEquals(1_000, cacheResponse.receivedResponseAtMillis());
+            //Existing entries are kept
+            Assert.assertEquals(0, imported.importFrom(snapshot));
+            Assert.assertEquals(1, imported.removeTag("bootstrap").size());
+            Assert.assertNull(imported.internalCache.get(request(key), key));
+        } finally {
+            imported.close();
+        }
+    }
+
+    @Test
+    public void testLegacyMetadataIsMigrated() throws IOException {
+        File directory = folder.newFolder();
+        CacheManager legacy = new CacheManager(directory, 1024 * 1024);
+        try {
+            String key = "http://example.com/legacy";
+            legacy.internalCache.put(response(request(key), "{\"a\":1}", JSON, -1), key).body().string();
+            //Overwrite the metadata with the text format written before the binary format
+            File metadata = find(directory, ".0");
+            Assert.assertNotNull(metadata);
+            try (BufferedSink sink = Okio.buffer(Okio.sink(metadata))) {
+                sink.writeUtf8(key + "\nGET\n0\nHTTP/1.1 200 OK\n3\n"
+                    + "Content-Type: application/json\n"
+                    + "OkHttp-Sent-Millis: 1000\n"
+                    + "OkHttp-Received-Millis: 2000\n");
+            }
+            Response cacheResponse = legacy.internalCache.get(request(key), key);
+            Assert.assertEquals(2000, cacheResponse.receivedResponseAtMillis());
+            Assert.assertEquals("{\"a\":1}", cacheResponse.body().string());
+            //Rewritten in the binary format on the hit
+            try (BufferedSource source = Okio.buffer(Okio.source(metadata))) {
+                Assert.assertEquals(0, source.readByte());
+            }
+            Assert.assertEquals(2000, legacy.internalCache.get(request(key), key).receivedResponseAtMillis());
+        } finally {
+            legacy.close();
+        }
+    }
+
+    @Test
+    public void testCorruptMetadataIsAMiss() throws IOException {
+        File directory = folder.newFolder();
+        CacheManager corrupt = new CacheManager(directory, 1024 * 1024);
+        try {
+            String key = "http://example.com/corrupt";
+            corrupt.internalCache.put(response(request(key), "{\"a\":1}", JSON, -1), key).body().string();
+            File metadata = find(directory, ".0");
+            Assert.assertNotNull(metadata);
+            //The binary format with a negative URL length
+            try (BufferedSink sink = Okio.buffer(Okio.sink(metadata))) {
+                sink.writeByte(0).writeUtf8("RXC").writeByte(1).writeInt(-1);
+            }
+            Assert.assertNull(corrupt.internalCache.get(request(key), key));
+        } finally {
+            corrupt.close();
+        }
+    }
+
+    @Test
+    public void testHandshakeRoundTrip() throws IOException {
+        InternalCache cache = cacheManager.internalCache;
+        Request request = request("https://example.com/secure");
+        Handshake handshake = Handshake.get(TlsVersion.TLS_1_2,
+            CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,
+            Collections.<Certificate>emptyList(), Collections.<Certificate>emptyList());
+        cache.put(response(request, "secure", JSON, -1).newBuilder().handshake(handshake).build(), null)
+            .body().string();
+
+        Handshake cached = cache.get(request, null).handshake();
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(TlsVersion.TLS_1_2, cached.tlsVersion());
+        Assert.assertEquals(CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256, cached.cipherSuite());
+        Assert.assertTrue(cached.peerCertificates().isEmpty());
+    }
+
+    private static File find(File directory, String suffix) {
+        File[] files = directory.listFiles();
+        if (files == null) return null;
+        for (File file : files) {
+            File found = file.isDirectory() ? find(file, suffix) : file.getName().endsWith(suffix) ? file : null;
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static Request request(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    private static Response response(Request request, String body, MediaType mediaType, long contentLength) {
+        Buffer buffer = new Buffer().writeUtf8(body);
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .header("Content-Type", mediaType != null ? mediaType.toString() : "text/plain")
+            .networkResponse(networkResponse(request))
+            .body(ResponseBody.create(mediaType, contentLength, buffer))
+            .build();
+    }
+
+    private static Response networkResponse(Request request) {
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .build();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder builder = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) builder.append(s);
+        return builder.toString();
+    }
+}
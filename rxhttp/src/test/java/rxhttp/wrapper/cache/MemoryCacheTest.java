@@ -0,0 +1,125 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 11:05
+ */
+public class MemoryCacheTest {
+
+    private static final InternalCache NONE = new InternalCache() {
+        @Override
+        public Response get(Request request, String key) {
+            return null;
+        }
+
+        @Override
+        public Response put(Response response, String key) {
+            return response;
+        }
+
+        @Override
+        public Response update(Response response, String key) {
+            return response;
+        }
+
+        @Override
+        public void remove(String key) {
+        }
+
+        @Override
+        public void removeAll() {
+        }
+
+        @Override
+        public void tag(String key, Collection<String> tags) {
+        }
+
+        @Override
+        public Set<String> removeTag(String tag) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+    };
+
+    @Test
+    public void testWriteThroughAndHit() throws IOException {
+        MemoryCache cache = new MemoryCache(NONE, 1024 * 1024);
+        Request request = request("https://example.com/config");
+        Assert.assertNull(cache.get(request, null));
+
+        Response response = cache.put(response(request, "{\"a\":1}"), null);
+        Assert.assertEquals("{\"a\":1}", response.body().string());
+
+        Response cacheResponse = cache.get(request, null);
+        Assert.assertNotNull(cacheResponse);
+        Assert.assertEquals("{\"a\":1}", cacheResponse.body().string());
+
+        cache.remove(request.url().toString());
+        Assert.assertNull(cache.get(request, null));
+        Assert.assertEquals(0, cache.memorySize());
+    }
+
+    @Test
+    public void testPartialReadIsNotCached() throws IOException {
+        MemoryCache cache = new MemoryCache(NONE, 1024 * 1024);
+        Request request = request("https://example.com/partial");
+        Response response = cache.put(response(request, "0123456789"), null);
+        response.body().source().readByte();
+        response.close();
+        Assert.assertNull(cache.get(request, null));
+    }
+
+    @Test
+    public void testProtectedEntrySurvivesScan() throws IOException {
+        MemoryCache cache = new MemoryCache(NONE, 4 * 1024);
+        Request hot = request("https://example.com/hot");
+        cache.put(response(hot, repeat('h', 200)), null).body().string();
+        cache.get(hot, null).body().string(); //Promote to the protected segment
+
+        for (int i = 0; i < 50; i++) {
+            Request request = request("https://example.com/cold/" + i);
+            cache.put(response(request, repeat('c', 200)), null).body().string();
+        }
+        Assert.assertNotNull(cache.get(hot, null));
+        Assert.assertTrue(cache.memorySize() <= cache.maxMemorySize());
+    }
+
+    private static Request request(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    private static Response response(Request request, String body) {
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(body, MediaType.get("application/json")))
+            .build();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rxhttp.wrapper.exception.ParseException;
+import rxhttp.wrapper.parse.Parser;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 23:20
+ */
+public class NegativeCacheTest {
+
+    private static final String KEY = "http://example.com/missing";
+
+    @After
+    public void tearDown() {
+        NegativeCache.clear();
+    }
+
+    @Test
+    public void testErrorResponseIsReplayed() throws IOException {
+        Request request = new Request.Builder().url(KEY).build();
+        Response network = NegativeCache.put(response(request, 404, "{\"msg\":\"not found\"}"), KEY, 60_000);
+        //The caller still reads the whole body
+        Assert.assertEquals("{\"msg\":\"not found\"}", network.body().string());
+
+        Response replay = NegativeCache.get(request, KEY);
+        Assert.assertNotNull(replay);
+        Assert.assertEquals(404, replay.code());
+        Assert.assertEquals("{\"msg\":\"not found\"}", replay.body().string());
+
+        //A success forgets the failure
+        NegativeCache.put(response(request, 200, "{}"), KEY, 60_000);
+        Assert.assertNull(NegativeCache.get(request, KEY));
+    }
+
+    @Test
+    public void testParseExceptionIsReplayedUntilExpired() throws Exception {
+        Request request = new Request.Builder().url(KEY).build();
+        Response network = NegativeCache.put(response(request, 200, "{\"code\":-1}"), KEY, 50);
+        Parser<String> parser = new Parser<String>() {
+            @Override
+            public String onParse(Response response) throws IOException {
+                throw new ParseException("-1", "server error", response);
+            }
+        };
+        try {
+            NegativeCache.parse(parser, network);
+            Assert.fail();
+        } catch (ParseException expected) {
+        }
+        try {
+            NegativeCache.get(request, KEY);
+            Assert.fail();
+        } catch (ParseException e) {
+            Assert.assertEquals("-1", e.getErrorCode());
+            Assert.assertEquals("server error", e.getMessage());
+        }
+        Thread.sleep(60);
+        Assert.assertNull(NegativeCache.get(request, KEY));
+    }
+
+    private static Response response(Request request, int code, String body) {
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("")
+            .body(ResponseBody.create(body, MediaType.get("application/json")))
+            .build();
+    }
+}
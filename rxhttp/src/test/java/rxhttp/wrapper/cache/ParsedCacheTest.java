@@ -0,0 +1,63 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import rxhttp.wrapper.callback.Function;
+import rxhttp.wrapper.callback.IConverter;
+import rxhttp.wrapper.converter.GsonConverter;
+import rxhttp.wrapper.entity.ParameterizedTypeImpl;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 20:40
+ */
+public class ParsedCacheTest {
+
+    private final IConverter converter = GsonConverter.create();
+
+    @Test
+    public void testReuseUntilEntryChanges() {
+        ParsedCache cache = new ParsedCache(8);
+        List<String> parsed = Collections.singletonList("rxhttp");
+        CacheHit hit = new CacheHit("http://example.com/list", 1000);
+        cache.put(hit, ParameterizedTypeImpl.getParameterized(List.class, String.class), converter, null, parsed);
+
+        //An equal Type built elsewhere matches
+        Assert.assertSame(parsed, cache.get(hit, ParameterizedTypeImpl.getParameterized(List.class, String.class), converter, null));
+        Assert.assertNull(cache.get(hit, String.class, converter, null));
+        //The cached entry was rewritten
+        Assert.assertNull(cache.get(new CacheHit("http://example.com/list", 2000),
+            ParameterizedTypeImpl.getParameterized(List.class, String.class), converter, null));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        ParsedCache cache = new ParsedCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.put(new CacheHit("key" + i, 0), String.class, converter, null, "value" + i);
+        }
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("value4", cache.get(new CacheHit("key4", 0), String.class, converter, null));
+        Assert.assertNull(cache.get(new CacheHit("key0", 0), String.class, converter, null));
+    }
+
+    @Test
+    public void testConverterAndDecoderArePartOfTheKey() {
+        ParsedCache cache = new ParsedCache(8);
+        CacheHit hit = new CacheHit("http://example.com/user", 1000);
+        Function<String, String> decoder = value -> value;
+        cache.put(hit, String.class, converter, decoder, "decoded");
+
+        Assert.assertEquals("decoded", cache.get(hit, String.class, converter, decoder));
+        //The same bytes, not decoded, or read by another converter
+        Assert.assertNull(cache.get(hit, String.class, converter, null));
+        Assert.assertNull(cache.get(hit, String.class, GsonConverter.create(), decoder));
+        Assert.assertNull(cache.get(hit, String.class, converter, value -> value));
+    }
+}
@@ -0,0 +1,110 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 11:20
+ */
+public class TagIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRewriteInterruptedByCrash() throws IOException {
+        File directory = folder.newFolder();
+        TagIndex index = new TagIndex(directory, null);
+        index.add("http://example.com/user", Collections.singleton("user"));
+        index.close();
+
+        //The crash came after the journal was renamed to its backup, before the new one replaced it
+        File journal = new File(directory, TagIndex.DIRECTORY_NAME + "/tags.journal");
+        File backup = new File(journal.getPath() + ".bkp");
+        File tmp = new File(journal.getPath() + ".tmp");
+        Assert.assertTrue(journal.renameTo(backup));
+        Assert.assertTrue(tmp.createNewFile());
+
+        index = new TagIndex(directory, null);
+        Assert.assertEquals(Collections.singleton("http://example.com/user"), index.remove("user"));
+        index.close();
+        Assert.assertTrue(journal.isFile());
+        Assert.assertFalse(backup.exists());
+        Assert.assertFalse(tmp.exists());
+    }
+
+    @Test
+    public void testRemovedKeysLeaveTheirGroups() throws IOException {
+        File directory = folder.newFolder();
+        TagIndex index = new TagIndex(directory, null);
+        index.add("http://example.com/user", Arrays.asList("user", "home"));
+        index.add("http://example.com/feed", Collections.singleton("home"));
+        index.removeKey(CacheManager.md5("http://example.com/user"));
+        Assert.assertEquals(Collections.singletonMap("home", Collections.singleton("http://example.com/feed")),
+            index.groups());
+        index.close();
+
+        //Replayed from the journal
+        index = new TagIndex(directory, null);
+        Assert.assertEquals(Collections.singletonMap("home", Collections.singleton("http://example.com/feed")),
+            index.groups());
+        index.removeKey(CacheManager.md5("http://example.com/feed"));
+        Assert.assertTrue(index.groups().isEmpty());
+        index.close();
+    }
+
+    @Test
+    public void testSweptEntriesLeaveTheirGroups() throws IOException {
+        CacheManager cacheManager = new CacheManager(folder.newFolder(), 1024 * 1024);
+        try {
+            String key = "http://example.com/user";
+            Request request = new Request.Builder().url(key).build();
+            Response network = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .receivedResponseAtMillis(1_000)
+                .build();
+            Response response = network.newBuilder()
+                .networkResponse(network)
+                .body(ResponseBody.create("user", MediaType.get("application/json")))
+                .build();
+            cacheManager.internalCache.put(response, key).body().string();
+            cacheManager.internalCache.tag(key, Collections.singleton("user"));
+
+            Assert.assertEquals(1, cacheManager.sweep(60_000));
+            Assert.assertTrue(cacheManager.removeTag("user").isEmpty());
+        } finally {
+            cacheManager.close();
+        }
+    }
+
+    @Test
+    public void testDeletedWithTheCache() throws IOException {
+        File directory = folder.newFolder();
+        TagIndex index = new TagIndex(directory, null);
+        index.add("http://example.com/user", Collections.singleton("user"));
+        index.close();
+        Assert.assertTrue(new File(directory, TagIndex.DIRECTORY_NAME).isDirectory());
+
+        index.delete();
+        Assert.assertFalse(new File(directory, TagIndex.DIRECTORY_NAME).exists());
+        Assert.assertTrue(new TagIndex(directory, null).groups().isEmpty());
+    }
+}
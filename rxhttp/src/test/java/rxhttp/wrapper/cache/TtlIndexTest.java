@@ -0,0 +1,39 @@
+package rxhttp.wrapper.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 19:40
+ */
+public class TtlIndexTest {
+
+    @Test
+    public void testPutRemoveWithCollisions() {
+        TtlIndex index = new TtlIndex();
+        //Hashes sharing the low bits collide on the same home slot
+        for (long i = 1; i <= 1000; i++) {
+            index.put(i << 40, i, i % 2 == 0);
+        }
+        Assert.assertEquals(1000, index.size());
+        for (long i = 1; i <= 1000; i += 3) {
+            index.remove(i << 40);
+        }
+        for (long i = 1; i <= 1000; i++) {
+            long expected = (i - 1) % 3 == 0 ? TtlIndex.ABSENT : i;
+            Assert.assertEquals(expected, index.receivedMillis(i << 40));
+            if (expected != TtlIndex.ABSENT) {
+                Assert.assertEquals(i % 2 == 0, index.hasValidators(i << 40));
+            }
+        }
+    }
+
+    @Test
+    public void testHash() {
+        String md5Key = CacheManager.md5("http://example.com");
+        Assert.assertEquals(TtlIndex.hash(md5Key), TtlIndex.hash(md5Key));
+        Assert.assertNotEquals(0, TtlIndex.hash("0000000000000000ffffffffffffffff"));
+    }
+}
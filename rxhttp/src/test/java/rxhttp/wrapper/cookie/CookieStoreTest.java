@@ -0,0 +1,213 @@
+package rxhttp.wrapper.cookie;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import okhttp3.internal.cache.DiskLruCache;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import rxhttp.wrapper.OkHttpCompat;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 23:55
+ */
+public class CookieStoreTest {
+
+    private static final HttpUrl WWW = HttpUrl.get("https://www.example.com/");
+    private static final HttpUrl API = HttpUrl.get("https://api.example.com/v1/user");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParentDomainCookies() {
+        CookieStore store = new CookieStore();
+        store.saveCookie(WWW, Arrays.asList(
+            Cookie.parse(WWW, "session=1; Domain=example.com; Path=/"),
+            Cookie.parse(WWW, "local=2; Path=/")));
+
+        List<Cookie> cookies = store.loadCookie(API);
+        Assert.assertEquals(1, cookies.size());
+        Assert.assertEquals("session", cookies.get(0).name());
+        Assert.assertEquals(2, store.loadCookie(WWW).size());
+        Assert.assertTrue(store.loadCookie(HttpUrl.get("https://example.org/")).isEmpty());
+    }
+
+    @Test
+    public void testMatchesAreCachedUntilChanged() throws InterruptedException {
+        CookieStore store = new CookieStore();
+        store.saveCookie(WWW, Cookie.parse(WWW, "a=1; Domain=example.com; Path=/"));
+        List<Cookie> cookies = store.loadCookie(API);
+        Assert.assertSame(cookies, store.loadCookie(API));
+        Assert.assertEquals("a=1", header(store.loadCookie(API)));
+
+        store.saveCookie(API, Cookie.parse(API, "b=2; Path=/v1; Max-Age=1"));
+        Assert.assertNotSame(cookies, store.loadCookie(API));
+        Assert.assertEquals("a=1; b=2", sorted(header(store.loadCookie(API))));
+
+        //Recomputed once the earliest cookie has expired
+        Thread.sleep(1100);
+        Assert.assertEquals("a=1", header(store.loadCookie(API)));
+
+        //Deleted by an expired cookie
+        store.saveCookie(WWW, Cookie.parse(WWW, "a=; Domain=example.com; Path=/; Max-Age=0"));
+        Assert.assertTrue(store.loadCookie(API).isEmpty());
+    }
+
+    @Test
+    public void testDiskOnly() throws IOException {
+        CookieStore store = new CookieStore(folder.newFolder(), false);
+        store.saveCookie(WWW, Cookie.parse(WWW, "a=1; Domain=example.com; Path=/"));
+        store.saveCookie(API, Cookie.parse(API, "b=2; Domain=example.com; Path=/"));
+        Assert.assertEquals("a=1; b=2", sorted(header(store.loadCookie(API))));
+    }
+
+    @Test
+    public void testJournalReplayedAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        CookieStore store = new CookieStore(directory);
+        store.saveCookie(WWW, Cookie.parse(WWW, "a=1; Domain=example.com; Path=/; Secure; HttpOnly"));
+        store.saveCookie(WWW, Cookie.parse(WWW, "b=2; Path=/; Max-Age=3600"));
+        store.saveCookie(WWW, Cookie.parse(WWW, "b=; Path=/; Max-Age=0"));
+        store.saveCookie(WWW, Cookie.parse(WWW, "c=3; Path=/; Max-Age=1"));
+        store.flush();
+
+        //A record truncated by a crash, the records before it are kept
+        try (BufferedSink sink = Okio.buffer(Okio.appendingSink(new File(directory, CookieJournal.FILE_NAME)))) {
+            sink.writeByte(1).writeInt(11).writeUtf8("exam");
+        }
+        Thread.sleep(1100);
+        CookieStore restarted = new CookieStore(directory).warmUp();
+        //c has expired and is dropped while loading
+        Assert.assertEquals("a=1", header(restarted.loadCookie(WWW)));
+        Cookie cookie = restarted.loadCookie(API).get(0);
+        Assert.assertTrue(cookie.secure() && cookie.httpOnly() && !cookie.hostOnly() && !cookie.persistent());
+    }
+
+    @Test
+    public void testRewriteInterruptedByCrash() throws Exception {
+        File directory = folder.newFolder();
+        CookieStore store = new CookieStore(directory);
+        store.saveCookie(WWW, Cookie.parse(WWW, "a=1; Domain=example.com; Path=/; Max-Age=3600"));
+        store.flush();
+
+        //Crashed after the journal was moved to the backup, before the new one replaced it
+        File journal = new File(directory, CookieJournal.FILE_NAME);
+        Assert.assertTrue(journal.renameTo(new File(directory, CookieJournal.FILE_NAME + ".bkp")));
+        try (BufferedSink sink = Okio.buffer(Okio.sink(new File(directory, CookieJournal.FILE_NAME + ".tmp")))) {
+            sink.writeUtf8("partial");
+        }
+        CookieStore restarted = new CookieStore(directory);
+        Assert.assertEquals("a=1", header(restarted.loadCookie(API)));
+        Assert.assertTrue(journal.exists());
+        Assert.assertFalse(new File(directory, CookieJournal.FILE_NAME + ".tmp").exists());
+    }
+
+    @Test
+    public void testTextJournalIsRewritten() throws IOException {
+        File directory = folder.newFolder();
+        File journal = new File(directory, CookieJournal.FILE_NAME);
+        Cookie cookie = Cookie.parse(WWW, "a=1; Domain=example.com; Path=/; Max-Age=3600");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(journal))) {
+            sink.writeUtf8("rxhttp.CookieJournal\n1\n+ ")
+                .writeUtf8(ByteString.encodeUtf8("example.com").base64Url()).writeUtf8(" ")
+                .writeUtf8(ByteString.encodeUtf8(cookie.toString()).base64Url()).writeUtf8("\n");
+        }
+        CookieStore store = new CookieStore(directory);
+        Assert.assertEquals("a=1", header(store.loadCookie(API)));
+        store.flush();
+        try (BufferedSource source = Okio.buffer(Okio.source(journal))) {
+            Assert.assertEquals(0, source.readByte());
+        }
+        Assert.assertEquals("a=1", header(new CookieStore(directory).loadCookie(API)));
+    }
+
+    @Test
+    public void testLegacyCookiesAreMigrated() throws IOException {
+        File directory = folder.newFolder();
+        //Written by the previous version: keyed by md5(host), a count and one cookie per line
+        DiskLruCache legacy = OkHttpCompat.newDiskLruCache(directory, 1, 1, Integer.MAX_VALUE);
+        DiskLruCache.Editor editor = legacy.edit(ByteString.encodeUtf8("www.example.com").md5().hex());
+        try (BufferedSink sink = Okio.buffer(editor.newSink(0))) {
+            sink.writeInt(2)
+                .writeUtf8(Cookie.parse(WWW, "a=1; Domain=example.com; Path=/; Max-Age=3600") + "\n")
+                .writeUtf8(Cookie.parse(WWW, "b=2; Path=/; Max-Age=3600") + "\n");
+        }
+        editor.commit();
+        legacy.close();
+
+        CookieStore store = new CookieStore(directory);
+        Assert.assertEquals("a=1; b=2", sorted(header(store.loadCookie(WWW))));
+        Assert.assertEquals("a=1", header(store.loadCookie(API)));
+        store.flush();
+        Assert.assertEquals("a=1; b=2", sorted(header(new CookieStore(directory).loadCookie(WWW))));
+    }
+
+    @Test
+    public void testLegacyCookiesDoNotOverwriteNewerOnes() throws IOException {
+        File directory = folder.newFolder();
+        DiskLruCache legacy = OkHttpCompat.newDiskLruCache(directory, 1, 1, Integer.MAX_VALUE);
+        DiskLruCache.Editor editor = legacy.edit(ByteString.encodeUtf8("www.example.com").md5().hex());
+        try (BufferedSink sink = Okio.buffer(editor.newSink(0))) {
+            sink.writeInt(1).writeUtf8(Cookie.parse(WWW, "session=old; Domain=example.com; Path=/; Max-Age=3600") + "\n");
+        }
+        editor.commit();
+        legacy.close();
+
+        CookieStore store = new CookieStore(directory);
+        store.saveCookie(API, Cookie.parse(API, "session=new; Domain=example.com; Path=/; Max-Age=3600"));
+        Assert.assertEquals("session=new", header(store.loadCookie(WWW)));
+        store.flush();
+        Assert.assertEquals("session=new", header(new CookieStore(directory).loadCookie(WWW)));
+    }
+
+    @Test
+    public void testRemoveCookieOfHost() {
+        CookieStore store = new CookieStore();
+        HttpUrl root = HttpUrl.get("https://example.com/");
+        store.saveCookie(WWW, Arrays.asList(
+            Cookie.parse(WWW, "a=1; Domain=example.com; Path=/"),
+            Cookie.parse(WWW, "b=2; Path=/")));
+        store.saveCookie(root, Cookie.parse(root, "c=3; Path=/"));
+
+        store.removeCookie(WWW);
+        Assert.assertTrue(store.loadCookie(WWW).isEmpty());
+        Assert.assertTrue(store.loadCookie(API).isEmpty());
+        //Host-only cookies of the parent domain don't apply to www.example.com
+        Assert.assertEquals("c=3", header(store.loadCookie(root)));
+    }
+
+    //Cookie request header, as BridgeInterceptor builds it
+    private static String header(List<Cookie> cookies) {
+        StringBuilder builder = new StringBuilder();
+        for (Cookie cookie : cookies) {
+            if (builder.length() > 0) builder.append("; ");
+            builder.append(cookie.name()).append('=').append(cookie.value());
+        }
+        return builder.toString();
+    }
+
+    private static String sorted(String header) {
+        String[] cookies = header.split("; ");
+        Arrays.sort(cookies);
+        StringBuilder builder = new StringBuilder();
+        for (String cookie : cookies) {
+            if (builder.length() > 0) builder.append("; ");
+            builder.append(cookie);
+        }
+        return builder.toString();
+    }
+}
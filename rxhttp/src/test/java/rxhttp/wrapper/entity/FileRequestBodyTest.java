@@ -0,0 +1,72 @@
+package rxhttp.wrapper.entity;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 04:20
+ */
+public class FileRequestBodyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSkipAndProgress() throws IOException {
+        File file = folder.newFile();
+        byte[] bytes = new byte[100_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(bytes);
+        }
+        FileRequestBody body = new FileRequestBody(file, 1000, null);
+        Assert.assertEquals(99_000, body.contentLength());
+
+        Buffer buffer = new Buffer();
+        AtomicLong written = new AtomicLong();
+        BufferedSink sink = Okio.buffer((Sink) buffer);
+        //Reported once the bytes reached the underlying sink
+        body.writeTo(sink, byteCount -> Assert.assertEquals(buffer.size(), written.addAndGet(byteCount)));
+        Assert.assertEquals(0, sink.getBuffer().size());
+        Assert.assertEquals(99_000, written.get());
+        Assert.assertEquals(99_000, buffer.size());
+        Assert.assertEquals((byte) 1000, buffer.getByte(0));
+        Assert.assertEquals((byte) 99_999, buffer.getByte(98_999));
+    }
+
+    @Test
+    public void testFileAppendedDuringUpload() throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[10]);
+        }
+        FileRequestBody body = new FileRequestBody(file, 0, null);
+        long contentLength = body.contentLength();
+        //Content-Length was sent before the file grew
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(new byte[10]);
+        }
+        Buffer buffer = new Buffer();
+        try (FileInputStream input = new FileInputStream(file)) {
+            FileRequestBody.write(input, contentLength, buffer, null);
+        }
+        Assert.assertEquals(10, buffer.size());
+    }
+}
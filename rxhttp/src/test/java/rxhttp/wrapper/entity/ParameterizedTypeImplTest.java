@@ -16,6 +16,21 @@ import java.util.Map;
  */
 public class ParameterizedTypeImplTest {
 
+    @Test
+    public void testEquals() throws NoSuchFieldException {
+        Type mapType = Holder.class.getDeclaredField("map").getGenericType();
+        ParameterizedType impl = ParameterizedTypeImpl.getParameterized(Map.class, String.class, Integer.class);
+        Assert.assertEquals(mapType, impl);
+        Assert.assertEquals(impl, mapType);
+        Assert.assertEquals(mapType.hashCode(), impl.hashCode());
+        Assert.assertNotEquals(mapType, ParameterizedTypeImpl.getParameterized(Map.class, String.class, Long.class));
+    }
+
+    @SuppressWarnings("unused")
+    private static class Holder {
+        Map<String, Integer> map;
+    }
+
     @Test
     public void testGet() {
         //boolean.class
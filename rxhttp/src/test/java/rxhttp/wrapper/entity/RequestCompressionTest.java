@@ -0,0 +1,134 @@
+package rxhttp.wrapper.entity;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import rxhttp.RxHttpPlugins;
+import rxhttp.wrapper.callback.IConverter;
+import rxhttp.wrapper.converter.GsonConverter;
+import rxhttp.wrapper.param.FormParam;
+import rxhttp.wrapper.param.JsonParam;
+import rxhttp.wrapper.param.Method;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 03:40
+ */
+public class RequestCompressionTest {
+
+    private static final String TEXT = repeat("{\"event\":\"click\"},", 200);
+
+    @After
+    public void tearDown() {
+        RxHttpPlugins.init(null).setRequestCompression(null).setCompressionListener(null);
+    }
+
+    @Test
+    public void testGzipFormBody() throws IOException {
+        AtomicLong raw = new AtomicLong();
+        AtomicLong compressed = new AtomicLong();
+        RxHttpPlugins.init(null)
+            .setRequestCompression(RequestCompression.gzip())
+            .setCompressionListener((url, encoding, rawBytes, compressedBytes) -> {
+                raw.set(rawBytes);
+                compressed.set(compressedBytes);
+            });
+        Request request = new FormParam("https://example.com/events", Method.POST)
+            .add("events", TEXT)
+            .buildRequest();
+        Assert.assertEquals("gzip", request.header("Content-Encoding"));
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        Assert.assertEquals(compressed.get(), buffer.size());
+        Assert.assertTrue(compressed.get() < raw.get() / 10);
+
+        String form = Okio.buffer(new GzipSource(buffer)).readUtf8();
+        Assert.assertEquals(raw.get(), form.length());
+        Assert.assertTrue(form.startsWith("events="));
+
+        //Disabled per request
+        request = new FormParam("https://example.com/events", Method.POST)
+            .add("events", TEXT)
+            .setCompression(null)
+            .buildRequest();
+        Assert.assertNull(request.header("Content-Encoding"));
+    }
+
+    @Test
+    public void testGzipJsonBody() throws IOException {
+        Request request = new JsonParam("https://example.com/events", Method.POST)
+            .add("events", TEXT)
+            .tag(IConverter.class, GsonConverter.create())
+            .setCompression(RequestCompression.gzip())
+            .buildRequest();
+        Assert.assertEquals("gzip", request.header("Content-Encoding"));
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        Assert.assertTrue(Okio.buffer(new GzipSource(buffer)).readUtf8().startsWith("{\"events\":"));
+    }
+
+    @Test
+    public void testSmallJsonBodyIsNotCompressed() throws IOException {
+        Request request = new JsonParam("https://example.com/events", Method.POST)
+            .add("event", "click")
+            .tag(IConverter.class, GsonConverter.create())
+            .setCompression(RequestCompression.gzip())
+            .buildRequest();
+        Assert.assertNull(request.header("Content-Encoding"));
+        Assert.assertEquals(17, request.body().contentLength());
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        Assert.assertEquals("{\"event\":\"click\"}", buffer.readUtf8());
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        RequestBody body = RequestCompression.deflate()
+            .compress(RequestBody.create(MediaType.get("text/plain"), TEXT), null);
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        Assert.assertEquals(TEXT, Okio.buffer(new InflaterSource(buffer, new Inflater())).readUtf8());
+    }
+
+    @Test
+    public void testSkipped() throws IOException {
+        RequestCompression compression = new RequestCompression(RequestCompression.Encoding.GZIP, 100);
+        RequestBody small = RequestBody.create(MediaType.get("text/plain"), "small");
+        Assert.assertSame(small, compression.compress(small, null));
+        RequestBody image = RequestBody.create(MediaType.get("image/jpeg"), new byte[1000]);
+        Assert.assertSame(image, compression.compress(image, null));
+        RequestBody svg = RequestBody.create(MediaType.get("image/svg+xml"), TEXT);
+        Assert.assertTrue(compression.compress(svg, null) instanceof CompressedRequestBody);
+
+        //Serialized once to tell its length, the bytes are kept for the request
+        AtomicLong writes = new AtomicLong();
+        RequestBody json = StreamingRequestBody.create(MediaType.get("application/json"), sink -> {
+            writes.incrementAndGet();
+            sink.writeUtf8("{}");
+        });
+        Assert.assertSame(json, compression.compress(json, null));
+        json.writeTo(new Buffer());
+        Assert.assertEquals(1, writes.get());
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
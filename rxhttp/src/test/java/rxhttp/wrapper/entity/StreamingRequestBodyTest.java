@@ -0,0 +1,101 @@
+package rxhttp.wrapper.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import rxhttp.wrapper.callback.IConverter;
+import rxhttp.wrapper.callback.JsonConverter;
+import rxhttp.wrapper.converter.GsonConverter;
+import rxhttp.wrapper.param.JsonParam;
+import rxhttp.wrapper.param.Method;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 02:45
+ */
+public class StreamingRequestBodyTest {
+
+    @Test
+    public void testSmallBodyHasContentLength() throws IOException {
+        AtomicInteger writes = new AtomicInteger();
+        StreamingRequestBody body = StreamingRequestBody.create(JsonConverter.MEDIA_TYPE, sink -> {
+            writes.incrementAndGet();
+            sink.writeUtf8("{\"a\":1}");
+        });
+        Assert.assertEquals(7, body.contentLength());
+        Assert.assertEquals("{\"a\":1}", write(body));
+        Assert.assertEquals("{\"a\":1}", write(body));
+        Assert.assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void testLargeBodyIsStreamed() throws IOException {
+        List<String> events = new ArrayList<>(Collections.nCopies(10000, "event"));
+        RequestBody body = GsonConverter.create().convert(events);
+        Assert.assertEquals(-1, body.contentLength());
+        String json = write(body);
+        Assert.assertEquals(10000 * 8 + 1, json.length());
+        Assert.assertEquals(json, write(body));
+
+        body = GsonConverter.create().convert(Collections.singletonMap("a", "b"));
+        Assert.assertEquals("{\"a\":\"b\"}", write(body));
+        Assert.assertEquals(9, body.contentLength());
+    }
+
+    @Test
+    public void testKnownLength() throws IOException {
+        StreamingRequestBody body = new StreamingRequestBody(null, 3, true, 0, sink -> sink.writeUtf8("abc"));
+        Assert.assertEquals(3, body.contentLength());
+        Assert.assertTrue(body.isOneShot());
+        Assert.assertEquals("abc", write(body));
+    }
+
+    @Test
+    public void testJsonParamIsSerializedWhenSent() throws IOException {
+        JsonParam param = new JsonParam("https://example.com/user", Method.POST)
+            .tag(IConverter.class, GsonConverter.create())
+            .add("a", 1);
+        RequestBody body = param.buildRequest().body();
+        param.add("b", 2);
+        //OkHttp asks for the length before sending, a small body is serialized then and kept
+        Assert.assertEquals("{\"a\":1,\"b\":2}".length(), body.contentLength());
+        param.add("c", 3);
+        Assert.assertEquals("{\"a\":1,\"b\":2}", write(body));
+    }
+
+    @Test
+    public void testSerializerFailureIsIOException() {
+        //Gson rejects NaN with an IllegalArgumentException
+        RequestBody body = new JsonParam("https://example.com/user", Method.POST)
+            .tag(IConverter.class, GsonConverter.create())
+            .add("a", Double.NaN)
+            .buildRequest().body();
+        try {
+            body.contentLength();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        try {
+            write(body);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static String write(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readUtf8();
+    }
+}
@@ -0,0 +1,211 @@
+package rxhttp.wrapper.intercept;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rxhttp.RxHttpPlugins;
+import rxhttp.wrapper.cache.CacheManager;
+import rxhttp.wrapper.cache.CacheMode;
+import rxhttp.wrapper.cache.CacheStrategy;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 10:30
+ */
+public class CacheInterceptorTest {
+
+    private static final String URL = "http://example.com/swr";
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger networkCount = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile long receivedAgo; //Age of the responses of the network
+    private volatile @Nullable Interceptor network; //Replaces the versioned responses
+    private CacheManager cacheManager;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheManager = new CacheManager(folder.newFolder(), 1024 * 1024);
+        CacheStrategy strategy = new CacheStrategy(CacheMode.STALE_WHILE_REVALIDATE, 100);
+        strategy.setCacheStaleTime(60_000);
+        client = client(strategy);
+    }
+
+    private OkHttpClient client(CacheStrategy strategy) {
+        OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(new CacheInterceptor(strategy))
+            //Stands in for the network, each response carries a new version by default
+            .addInterceptor(chain -> {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                int version = networkCount.incrementAndGet();
+                Interceptor network = this.network;
+                return network != null ? network.intercept(chain)
+                    : response(chain.request(), 200, "v" + version, System.currentTimeMillis() - receivedAgo);
+            })
+            .build();
+        RxHttpPlugins.init(client).setCache(cacheManager, 0, CacheMode.ONLY_NETWORK, Long.MAX_VALUE);
+        return client;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testStaleCacheIsReturnedAndRefreshedInBackground() throws Exception {
+        Assert.assertEquals("v1", get());
+        Assert.assertEquals("v1", get()); //Valid, served from the cache
+        Assert.assertEquals(1, networkCount.get());
+
+        Thread.sleep(150);
+        //Stale but within the stale window, returned at once while the cache is refreshed
+        Assert.assertEquals("v1", get());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (networkCount.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, networkCount.get());
+
+        String body = get();
+        deadline = System.currentTimeMillis() + 5000;
+        //The refreshed entry is committed once the background call has read its body
+        while (!"v2".equals(body) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            body = get();
+        }
+        Assert.assertEquals("v2", body);
+        Assert.assertEquals(2, networkCount.get());
+    }
+
+    @Test
+    public void testOneBackgroundRefreshPerKey() throws Exception {
+        Assert.assertEquals("v1", get());
+        Thread.sleep(150);
+        gate = new CountDownLatch(1); //Holds the background refresh
+        Assert.assertEquals("v1", get());
+        Assert.assertEquals("v1", get());
+        gate.countDown();
+        Thread.sleep(500);
+        Assert.assertEquals(2, networkCount.get());
+    }
+
+    @Test
+    public void testDefaultStaleWindowIsBounded() throws Exception {
+        client = client(new CacheStrategy(CacheMode.STALE_WHILE_REVALIDATE, 100));
+        receivedAgo = CacheStrategy.DEFAULT_CACHE_STALE_TIME + 1000;
+        Assert.assertEquals("v1", get());
+        receivedAgo = 0;
+        //Too old to be returned, requested again at once
+        Assert.assertEquals("v2", get());
+        Assert.assertEquals(2, networkCount.get());
+    }
+
+    @Test
+    public void testNotModifiedReturnsTheCacheWithMergedHeaders() throws Exception {
+        client = client(new CacheStrategy(CacheMode.READ_CACHE_FAILED_REQUEST_NETWORK, 100));
+        network = chain -> response(chain.request(), 200, "v1", System.currentTimeMillis()).newBuilder()
+            .header("ETag", "\"v1\"")
+            .header("Last-Modified", LAST_MODIFIED)
+            .header("X-Version", "1")
+            .build();
+        Assert.assertEquals("v1", get());
+
+        Thread.sleep(150);
+        Request[] conditional = new Request[1];
+        network = chain -> {
+            conditional[0] = chain.request();
+            return response(chain.request(), 304, "", System.currentTimeMillis()).newBuilder()
+                .header("X-Version", "2")
+                .build();
+        };
+        long startMillis = System.currentTimeMillis();
+        try (Response response = execute()) {
+            Assert.assertEquals("\"v1\"", conditional[0].header("If-None-Match"));
+            Assert.assertEquals(LAST_MODIFIED, conditional[0].header("If-Modified-Since"));
+            Assert.assertEquals(200, response.code());
+            Assert.assertEquals("v1", response.body().string());
+            //Headers of the 304 replace the cached ones, the others are kept
+            Assert.assertEquals("2", response.header("X-Version"));
+            Assert.assertEquals("\"v1\"", response.header("ETag"));
+            Assert.assertTrue(response.receivedResponseAtMillis() >= startMillis);
+        }
+        //The received time is refreshed, the cache is valid again
+        Assert.assertEquals("v1", get());
+        Assert.assertEquals(2, networkCount.get());
+    }
+
+    @Test
+    public void testModifiedResponseReplacesTheCache() throws Exception {
+        client = client(new CacheStrategy(CacheMode.READ_CACHE_FAILED_REQUEST_NETWORK, 100));
+        network = chain -> response(chain.request(), 200, "v1", System.currentTimeMillis()).newBuilder()
+            .header("ETag", "\"v1\"")
+            .build();
+        Assert.assertEquals("v1", get());
+
+        Thread.sleep(150);
+        network = chain -> {
+            Assert.assertEquals("\"v1\"", chain.request().header("If-None-Match"));
+            return response(chain.request(), 200, "v2", System.currentTimeMillis()).newBuilder()
+                .header("ETag", "\"v2\"")
+                .build();
+        };
+        Assert.assertEquals("v2", get());
+        try (Response response = execute()) {
+            Assert.assertEquals("v2", response.body().string());
+            Assert.assertEquals("\"v2\"", response.header("ETag"));
+        }
+        Assert.assertEquals(2, networkCount.get());
+    }
+
+    private String get() throws IOException {
+        try (Response response = execute()) {
+            return response.body().string();
+        }
+    }
+
+    private Response execute() throws IOException {
+        return client.newCall(new Request.Builder().url(URL).build()).execute();
+    }
+
+    private static Response response(Request request, int code, String body, long receivedMillis) {
+        Response network = new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message(code == 200 ? "OK" : "Not Modified")
+            .sentRequestAtMillis(receivedMillis)
+            .receivedResponseAtMillis(receivedMillis)
+            .build();
+        return network.newBuilder()
+            .networkResponse(network)
+            .body(ResponseBody.create(body, MediaType.get("text/plain")))
+            .build();
+    }
+}
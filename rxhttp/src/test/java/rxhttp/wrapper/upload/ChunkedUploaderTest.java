@@ -0,0 +1,203 @@
+package rxhttp.wrapper.upload;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 05:00
+ */
+public class ChunkedUploaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPartsAreRetried() throws IOException {
+        File file = newFile(10_500);
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.failTimes(2, 2);
+        String result = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setConcurrency(3)
+            .setRetry(2, 0)
+            .upload();
+        Assert.assertEquals(11 + 2, protocol.partUploads.get());
+        Assert.assertEquals(read(file), read(new File(result)));
+    }
+
+    @Test
+    public void testInterruptedUploadResumes() throws IOException {
+        File file = newFile(10_000);
+        File manifest = new File(folder.getRoot(), "upload.manifest");
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.failTimes(7, 1);
+        ChunkedUploader uploader = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setConcurrency(1)
+            .setRetry(0, 0)
+            .setManifest(manifest);
+        try {
+            uploader.upload();
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        Assert.assertTrue(manifest.exists());
+        Assert.assertFalse(protocol.uploadedParts.contains(7));
+        int acknowledged = protocol.uploadedParts.size();
+
+        //The last record truncated by a crash, that part is uploaded again
+        try (RandomAccessFile raf = new RandomAccessFile(manifest, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+        protocol.partUploads.set(0);
+        String result = uploader.upload();
+        Assert.assertEquals(10 - acknowledged + 1, protocol.partUploads.get());
+        Assert.assertEquals(read(file), read(new File(result)));
+        Assert.assertFalse(manifest.exists());
+    }
+
+    @Test
+    public void testChangedFileStartsOver() throws IOException {
+        File file = newFile(3000);
+        File manifest = new File(folder.getRoot(), "upload.manifest");
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.failTimes(3, 1);
+        ChunkedUploader uploader = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setConcurrency(1)
+            .setRetry(0, 0)
+            .setManifest(manifest);
+        try {
+            uploader.upload();
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        try (BufferedSink sink = Okio.buffer(Okio.appendingSink(file))) {
+            sink.writeUtf8("appended");
+        }
+        protocol.partUploads.set(0);
+        String result = uploader.upload();
+        Assert.assertEquals(4, protocol.partUploads.get());
+        Assert.assertEquals(read(file), read(new File(result)));
+    }
+
+    @Test
+    public void testProgressIsAggregated() throws IOException {
+        File file = newFile(10_500);
+        File manifest = new File(folder.getRoot(), "upload.manifest");
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.failTimes(11, 2);
+        RecordingProgress progress = new RecordingProgress();
+        ChunkedUploader uploader = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setConcurrency(1)
+            .setRetry(0, 0)
+            .setManifest(manifest)
+            .setProgress(progress);
+        //The last part fails after it has been written
+        try {
+            uploader.upload();
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(0, progress.started);
+        Assert.assertEquals(10_500, progress.written.get());
+
+        //A record with a corrupt length, read as a truncated one
+        try (BufferedSink sink = Okio.buffer(Okio.appendingSink(manifest))) {
+            sink.writeInt(5).writeInt(-1);
+        }
+        //The last part is written twice, counted once
+        progress = new RecordingProgress();
+        uploader.setRetry(1, 0).setProgress(progress).upload();
+        Assert.assertEquals(10_000, progress.started);
+        Assert.assertEquals(500, progress.written.get());
+    }
+
+    @Test
+    public void testProgressOfPartsWrittenWithListener() throws IOException {
+        File file = newFile(10_500);
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.writesWithListener = true;
+        RecordingProgress progress = new RecordingProgress();
+        String result = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setProgress(progress)
+            .upload();
+        Assert.assertEquals(read(file), read(new File(result)));
+        Assert.assertEquals(10_500, progress.written.get());
+        Assert.assertEquals(10_500, protocol.listenedBytes.get());
+    }
+
+    @Test
+    public void testUnknownPartsAreNotCounted() throws IOException {
+        File file = newFile(10_500);
+        File manifest = new File(folder.getRoot(), "upload.manifest");
+        LocalUploadProtocol protocol = new LocalUploadProtocol(folder.newFolder());
+        protocol.failTimes(11, 1);
+        ChunkedUploader uploader = new ChunkedUploader(file, protocol)
+            .setPartSize(1000)
+            .setConcurrency(1)
+            .setRetry(0, 0)
+            .setManifest(manifest);
+        try {
+            uploader.upload();
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        //A part number past the last part of the file
+        try (BufferedSink sink = Okio.buffer(Okio.appendingSink(manifest))) {
+            sink.writeInt(99).writeInt(7).writeUtf8("etag-99");
+        }
+        RecordingProgress progress = new RecordingProgress();
+        String result = uploader.setProgress(progress).upload();
+        Assert.assertEquals(10_000, progress.started);
+        Assert.assertEquals(500, progress.written.get());
+        Assert.assertEquals(read(file), read(new File(result)));
+    }
+
+    private static final class RecordingProgress implements ChunkedUploader.Progress {
+
+        long started = -1;
+        final AtomicLong written = new AtomicLong();
+
+        @Override
+        public void onStart(long acknowledgedBytes) {
+            started = acknowledgedBytes;
+        }
+
+        @Override
+        public void onProgress(long byteCount, long contentLength) {
+            Assert.assertEquals(10_500, contentLength);
+            written.addAndGet(byteCount);
+        }
+    }
+
+    private File newFile(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        File file = folder.newFile();
+        try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+            sink.write(bytes);
+        }
+        return file;
+    }
+
+    private static ByteString read(File file) throws IOException {
+        return Okio.buffer(Okio.source(file)).readByteString();
+    }
+}
@@ -0,0 +1,87 @@
+package rxhttp.wrapper.upload;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import rxhttp.wrapper.progress.ProgressWritable;
+
+/**
+ * Reference UploadProtocol for tests, the "server" keeps every part in a file of a directory, and
+ * concatenates them on completion. Parts listed in failures fail once for every time they are listed.
+ * <p>
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 05:00
+ */
+class LocalUploadProtocol implements UploadProtocol {
+
+    private final File directory;
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    final AtomicInteger partUploads = new AtomicInteger();
+    final ConcurrentHashMap<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+    final Set<Integer> uploadedParts = ConcurrentHashMap.newKeySet();
+    final AtomicLong listenedBytes = new AtomicLong();
+    volatile boolean writesWithListener; //As ProgressRequestBody writes a ProgressWritable body
+
+    LocalUploadProtocol(File directory) {
+        this.directory = directory;
+    }
+
+    void failTimes(int partNumber, int times) {
+        failures.put(partNumber, new AtomicInteger(times));
+    }
+
+    @NotNull
+    @Override
+    public String create(@NotNull File file, long fileLength, long partSize) {
+        String uploadId = "upload-" + uploadIds.incrementAndGet();
+        new File(directory, uploadId).mkdirs();
+        return uploadId;
+    }
+
+    @NotNull
+    @Override
+    public String uploadPart(@NotNull String uploadId, int partNumber, long offset,
+                             @NotNull RequestBody body) throws IOException {
+        partUploads.incrementAndGet();
+        Buffer buffer = new Buffer();
+        if (writesWithListener) {
+            ((ProgressWritable) body).writeTo(buffer, listenedBytes::addAndGet);
+        } else {
+            body.writeTo(buffer);
+        }
+        if (buffer.size() != body.contentLength()) throw new IllegalStateException("Unexpected part length");
+        AtomicInteger failure = failures.get(partNumber);
+        if (failure != null && failure.getAndDecrement() > 0) {
+            throw new IOException("part " + partNumber + " failed");
+        }
+        try (BufferedSink sink = Okio.buffer(Okio.sink(new File(new File(directory, uploadId), String.valueOf(partNumber))))) {
+            sink.writeAll(buffer);
+        }
+        uploadedParts.add(partNumber);
+        return "etag-" + partNumber;
+    }
+
+    @Override
+    public String complete(@NotNull String uploadId, @NotNull List<String> partTags) throws IOException {
+        File result = new File(directory, uploadId + ".bin");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(result))) {
+            for (int i = 0; i < partTags.size(); i++) {
+                if (!partTags.get(i).equals("etag-" + (i + 1))) throw new IllegalStateException("Unexpected tag");
+                sink.writeAll(Okio.source(new File(new File(directory, uploadId), String.valueOf(i + 1))));
+            }
+        }
+        return result.getPath();
+    }
+}
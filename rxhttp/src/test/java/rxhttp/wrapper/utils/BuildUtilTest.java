@@ -0,0 +1,55 @@
+package rxhttp.wrapper.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import rxhttp.wrapper.entity.KeyValuePair;
+
+/**
+ * User: ljx
+ * Date: 2026/10/19
+ * Time: 01:30
+ */
+public class BuildUtilTest {
+
+    @Test
+    public void testPathParameters() {
+        List<KeyValuePair> paths = new ArrayList<>();
+        paths.add(new KeyValuePair("id", "a/b c"));
+        paths.add(new KeyValuePair("type", "x/y", true));
+        List<KeyValuePair> query = Collections.singletonList(new KeyValuePair("q", "1 2"));
+        HttpUrl url = BuildUtil.getHttpUrl("https://example.com/{type}/{id}/{id}/{missing}", query, paths);
+        Assert.assertEquals("https://example.com/x/y/a%2Fb%20c/a%2Fb%20c/%7Bmissing%7D?q=1%202", url.toString());
+    }
+
+    @Test
+    public void testUrlWithoutPlaceholderIsParsedOnce() {
+        HttpUrl url = BuildUtil.getHttpUrl("https://example.com/user", null, null);
+        Assert.assertSame(url, BuildUtil.getHttpUrl("https://example.com/user", null, null));
+    }
+
+    @Test
+    public void testPathTraversal() {
+        assertTraversal("https://example.com/{a}/b", "..", false);
+        assertTraversal("https://example.com/{a}/b", "%2E", true);
+        assertTraversal("https://example.com/{a}./b", ".", false);
+        assertTraversal("https://example.com/{a}", "x/../y", true);
+        //Not a whole segment
+        HttpUrl url = BuildUtil.getHttpUrl("https://example.com/{a}x",
+            null, Collections.singletonList(new KeyValuePair("a", "..")));
+        Assert.assertEquals("/..x", url.encodedPath());
+    }
+
+    private static void assertTraversal(String template, String value, boolean encoded) {
+        try {
+            BuildUtil.getHttpUrl(template, null, Collections.singletonList(new KeyValuePair("a", value, encoded)));
+            Assert.fail(template + " " + value);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
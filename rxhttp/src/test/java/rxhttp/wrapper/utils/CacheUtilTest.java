@@ -0,0 +1,71 @@
+package rxhttp.wrapper.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okio.ByteString;
+import rxhttp.RxHttpPlugins;
+import rxhttp.wrapper.entity.KeyValuePair;
+
+/**
+ * User: ljx
+ * Date: 2026/10/18
+ * Time: 21:40
+ */
+public class CacheUtilTest {
+
+    @After
+    public void tearDown() {
+        RxHttpPlugins.init(new OkHttpClient()).setExcludeCacheKeys();
+    }
+
+    @Test
+    public void testMd5JsonMatchesGson() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "rxhttp");
+        body.put("tags", Arrays.asList("a", "b"));
+        body.put("empty", null);
+        Assert.assertEquals(md5(GsonUtil.toJson(body)), CacheUtil.md5Json(body));
+
+        List<Object> list = new ArrayList<>();
+        list.add(body);
+        list.add(1);
+        Assert.assertEquals(md5(GsonUtil.toJson(list)), CacheUtil.md5Json(list));
+        Assert.assertEquals(md5("null"), CacheUtil.md5Json(null));
+    }
+
+    @Test
+    public void testExcludeCacheKeys() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "rxhttp");
+        body.put("timestamp", System.nanoTime());
+        String withTimestamp = CacheUtil.md5Json(body);
+        List<KeyValuePair> pairs = new ArrayList<>();
+        pairs.add(new KeyValuePair("name", "rxhttp"));
+        pairs.add(new KeyValuePair("timestamp", System.nanoTime()));
+        String pairsWithTimestamp = CacheUtil.md5Pairs(pairs);
+
+        RxHttpPlugins.init(new OkHttpClient()).setExcludeCacheKeys("timestamp");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("name", "rxhttp");
+        Assert.assertEquals(md5(GsonUtil.toJson(expected)), CacheUtil.md5Json(body));
+        Assert.assertNotEquals(withTimestamp, CacheUtil.md5Json(body));
+
+        String excluded = CacheUtil.md5Pairs(pairs);
+        Assert.assertNotEquals(pairsWithTimestamp, excluded);
+        pairs.set(1, new KeyValuePair("timestamp", System.nanoTime()));
+        Assert.assertEquals(excluded, CacheUtil.md5Pairs(pairs));
+    }
+
+    private static String md5(String json) {
+        return ByteString.encodeUtf8(json).md5().hex();
+    }
+}